@@ -0,0 +1,135 @@
+package uk.ac.ebi.eva.submission.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pooled, keep-alive HTTP client per upstream service, so that connections (and TLS sessions) are reused across
+ * calls and a slow upstream cannot exhaust the connections or threads used for the others.
+ * Timeouts and pool size can be set per upstream with http.client.{upstream}.connectTimeoutMs, .readTimeoutMs and
+ * .maxConnections. Pool usage is published as httpcomponents.httpclient.pool.* metrics tagged with the upstream name.
+ */
+@Configuration
+public class HttpClientConfiguration implements DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(HttpClientConfiguration.class);
+
+    public static final String WEBIN = "webin";
+    public static final String LSRI = "lsri";
+    public static final String GLOBUS = "globus";
+    public static final String ENA = "ena";
+    public static final String BIOSAMPLES = "biosamples";
+    public static final String GITHUB = "github";
+
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+    private static final int DEFAULT_MAX_CONNECTIONS = 20;
+    private static final long IDLE_CONNECTION_TIMEOUT_SECONDS = 30;
+
+    private final Environment environment;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final List<CloseableHttpClient> httpClients = new CopyOnWriteArrayList<>();
+
+    public HttpClientConfiguration(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public RestTemplate webinRestTemplate() {
+        return createRestTemplate(WEBIN, 10000);
+    }
+
+    @Bean
+    public RestTemplate lsriRestTemplate() {
+        return createRestTemplate(LSRI, 10000);
+    }
+
+    @Bean
+    public RestTemplate globusRestTemplate() {
+        return createRestTemplate(GLOBUS, 30000);
+    }
+
+    @Bean
+    public RestTemplate enaRestTemplate() {
+        return createRestTemplate(ENA, 30000);
+    }
+
+    @Bean
+    public RestTemplate bioSamplesRestTemplate() {
+        return createRestTemplate(BIOSAMPLES, 30000);
+    }
+
+    @Bean
+    public RestTemplate githubRestTemplate() {
+        return createRestTemplate(GITHUB, 30000);
+    }
+
+    private RestTemplate createRestTemplate(String upstream, int defaultReadTimeoutMs) {
+        int connectTimeoutMs = getProperty(upstream, "connectTimeoutMs", DEFAULT_CONNECT_TIMEOUT_MS);
+        int readTimeoutMs = getProperty(upstream, "readTimeoutMs", defaultReadTimeoutMs);
+        int maxConnections = getProperty(upstream, "maxConnections", DEFAULT_MAX_CONNECTIONS);
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        // each upstream is a single host (or a couple of them for Globus), let every route use the whole pool
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .setConnectionRequestTimeout(connectTimeoutMs)
+                .build();
+
+        CloseableHttpClient httpClient = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .useSystemProperties()
+                .build();
+        httpClients.add(httpClient);
+
+        meterRegistry.ifAvailable(registry ->
+                new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, upstream).bindTo(registry));
+
+        logger.info("Created HTTP client for {} (connect timeout {}ms, read timeout {}ms, max connections {})",
+                upstream, connectTimeoutMs, readTimeoutMs, maxConnections);
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    private int getProperty(String upstream, String name, int defaultValue) {
+        return environment.getProperty("http.client." + upstream + "." + name, Integer.class, defaultValue);
+    }
+
+    @Override
+    public void destroy() {
+        for (CloseableHttpClient httpClient : httpClients) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                logger.warn("Could not close HTTP client: {}", e.getMessage());
+            }
+        }
+    }
+}
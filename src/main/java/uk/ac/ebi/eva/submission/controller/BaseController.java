@@ -1,5 +1,6 @@
 package uk.ac.ebi.eva.submission.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -7,9 +8,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import uk.ac.ebi.eva.submission.entity.Submission;
 import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.exception.GlobusUnavailableException;
 import uk.ac.ebi.eva.submission.exception.SubmissionDoesNotExistException;
+import uk.ac.ebi.eva.submission.exception.UpstreamUnavailableException;
 import uk.ac.ebi.eva.submission.service.LsriTokenService;
+import uk.ac.ebi.eva.submission.service.SubmissionAccountCache;
 import uk.ac.ebi.eva.submission.service.WebinTokenService;
+import uk.ac.ebi.eva.submission.util.JwtUtils;
 
 import java.util.List;
 import java.util.Objects;
@@ -20,10 +25,13 @@ public class BaseController {
 
     private final WebinTokenService webinTokenService;
     private final LsriTokenService lsriTokenService;
+    private final SubmissionAccountCache submissionAccountCache;
 
-    public BaseController(WebinTokenService webinTokenService, LsriTokenService lsriTokenService) {
+    public BaseController(WebinTokenService webinTokenService, LsriTokenService lsriTokenService,
+                          SubmissionAccountCache submissionAccountCache) {
         this.webinTokenService = webinTokenService;
         this.lsriTokenService = lsriTokenService;
+        this.submissionAccountCache = submissionAccountCache;
     }
 
     @ExceptionHandler(SubmissionDoesNotExistException.class)
@@ -31,15 +39,55 @@ public class BaseController {
         return new ResponseEntity<>(submissionDoesNotExistException.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(GlobusUnavailableException.class)
+    public ResponseEntity<?> handleException(GlobusUnavailableException globusUnavailableException) {
+        logger.warn("Globus unavailable: {}", globusUnavailableException.getMessage());
+        return new ResponseEntity<>(globusUnavailableException.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<?> handleException(UpstreamUnavailableException upstreamUnavailableException) {
+        logger.warn("Upstream service unavailable: {}", upstreamUnavailableException.getMessage());
+        return new ResponseEntity<>("Service temporarily unavailable, please try again later",
+                HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     public SubmissionAccount getSubmissionAccount(String bearerToken) {
         logger.debug("Attempting to authenticate user from bearer token");
         String userToken = bearerToken.replace("Bearer ", "");
-        //TODO: Probably need to cache the token/UserId map
-        SubmissionAccount submissionAccount = this.webinTokenService.getWebinUserAccountFromToken(userToken);
+        return submissionAccountCache.getOrAuthenticate(userToken, this::authenticateUserToken);
+    }
+
+    private SubmissionAccount authenticateUserToken(String userToken) {
+        // Send JWTs straight to the provider that issued them
+        JsonNode claims = JwtUtils.decodeClaimsIfJwt(userToken);
+        if (claims != null) {
+            if (this.lsriTokenService.isLsriToken(claims)) {
+                logger.debug("Token issued by LSRI, attempting LSRI authentication");
+                return this.lsriTokenService.getLsriUserAccountFromToken(userToken);
+            }
+            if (this.webinTokenService.isWebinToken(claims)) {
+                logger.debug("Token issued by Webin, attempting Webin authentication");
+                return this.webinTokenService.getWebinUserAccountFromToken(userToken);
+            }
+        }
+
+        // Opaque token or unknown issuer: try each provider in turn
+        SubmissionAccount submissionAccount = null;
+        UpstreamUnavailableException webinUnavailableException = null;
+        try {
+            submissionAccount = this.webinTokenService.getWebinUserAccountFromToken(userToken);
+        } catch (UpstreamUnavailableException e) {
+            webinUnavailableException = e;
+        }
         if (Objects.isNull(submissionAccount)) {
             logger.debug("Webin authentication failed, attempting LSRI authentication");
             submissionAccount = this.lsriTokenService.getLsriUserAccountFromToken(userToken);
         }
+        // The token is only rejected if both providers rejected it
+        if (Objects.isNull(submissionAccount) && webinUnavailableException != null) {
+            throw webinUnavailableException;
+        }
         return submissionAccount;
     }
 
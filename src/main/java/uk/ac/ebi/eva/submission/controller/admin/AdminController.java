@@ -32,6 +32,7 @@ import uk.ac.ebi.eva.submission.model.SubmissionStatus;
 import uk.ac.ebi.eva.submission.model.SubmissionSummaryDto;
 import uk.ac.ebi.eva.submission.model.SubmissionTrackingDetailsDto;
 import uk.ac.ebi.eva.submission.service.LsriTokenService;
+import uk.ac.ebi.eva.submission.service.SubmissionAccountCache;
 import uk.ac.ebi.eva.submission.service.SubmissionService;
 import uk.ac.ebi.eva.submission.service.WebinTokenService;
 
@@ -45,8 +46,8 @@ public class AdminController extends BaseController {
     private final SubmissionService submissionService;
 
     public AdminController(SubmissionService submissionService, WebinTokenService webinTokenService,
-                           LsriTokenService lsriTokenService) {
-        super(webinTokenService, lsriTokenService);
+                           LsriTokenService lsriTokenService, SubmissionAccountCache submissionAccountCache) {
+        super(webinTokenService, lsriTokenService, submissionAccountCache);
         this.submissionService = submissionService;
     }
 
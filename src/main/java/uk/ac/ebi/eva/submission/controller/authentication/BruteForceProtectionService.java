@@ -5,43 +5,193 @@ import org.springframework.security.authentication.event.AbstractAuthenticationF
 import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
 
+/**
+ * Locks out IPs with too many failed admin logins in the recent past.
+ * IPs are tracked in a fixed-size, lock-free table of sliding-window counters, so memory use does not grow with the
+ * number of IPs seen and old failures age out on their own. When the table is full, the IP with the fewest recent
+ * failures among the candidate slots is evicted, so a scan from many addresses cannot push out a persistent attacker
+ * and can never lock out an IP that has not failed itself.
+ */
 @Component
 public class BruteForceProtectionService implements ApplicationListener<AbstractAuthenticationFailureEvent> {
 
     private static final int MAX_ATTEMPTS = 10;
     private static final long LOCKOUT_DURATION_MS = 15 * 60_000L;
 
-    private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
-    private final Map<String, Long> lockouts = new ConcurrentHashMap<>();
+    // Failures are counted over the last BUCKETS * BUCKET_DURATION_MS, i.e. the lockout duration
+    private static final int BUCKETS = 6;
+    private static final long BUCKET_DURATION_MS = LOCKOUT_DURATION_MS / BUCKETS;
+
+    private static final int SLOTS = 8192;
+    private static final int PROBES = 8;
+
+    // Each counter holds the bucket number in the high bits and the count in the low 16 bits
+    private static final int COUNT_BITS = 16;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private static final long EMPTY = 0;
+
+    // Seeded so that the slots an IP maps to can't be predicted from outside
+    private final long seed = new SecureRandom().nextLong();
+
+    private final AtomicLongArray keys = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray attempts = new AtomicLongArray(SLOTS * BUCKETS);
+    private final AtomicLongArray lockouts = new AtomicLongArray(SLOTS);
+
+    private final LongSupplier clock;
+
+    public BruteForceProtectionService() {
+        this(System::currentTimeMillis);
+    }
+
+    public BruteForceProtectionService(LongSupplier clock) {
+        this.clock = clock;
+    }
 
     @Override
     public void onApplicationEvent(AbstractAuthenticationFailureEvent event) {
         if (event.getAuthentication().getDetails() instanceof WebAuthenticationDetails) {
             String ip = ((WebAuthenticationDetails) event.getAuthentication().getDetails()).getRemoteAddress();
-            int count = attempts.computeIfAbsent(ip, k -> new AtomicInteger()).incrementAndGet();
-            if (count >= MAX_ATTEMPTS) {
-                lockouts.put(ip, System.currentTimeMillis() + LOCKOUT_DURATION_MS);
-            }
+            recordFailedAttempt(ip);
+        }
+    }
+
+    public void recordFailedAttempt(String ip) {
+        long now = clock.getAsLong();
+        long bucket = now / BUCKET_DURATION_MS;
+        int slot = acquireSlot(fingerprint(ip), now);
+        if (slot < 0) {
+            // every candidate slot holds a locked out IP, nothing more to track
+            return;
+        }
+        incrementCounter(slot * BUCKETS + (int) (bucket % BUCKETS), bucket);
+        if (countInWindow(slot, bucket) >= MAX_ATTEMPTS) {
+            lockouts.accumulateAndGet(slot, now + LOCKOUT_DURATION_MS, Math::max);
+            // Start counting afresh once the lockout is over
+            clearAttempts(slot);
         }
     }
 
     public void onAuthenticationSuccess(String ip) {
-        attempts.remove(ip);
-        lockouts.remove(ip);
+        long fingerprint = fingerprint(ip);
+        int slot = findSlot(fingerprint);
+        if (slot >= 0 && lockouts.get(slot) <= clock.getAsLong()) {
+            clearAttempts(slot);
+            keys.compareAndSet(slot, fingerprint, EMPTY);
+        }
     }
 
     public boolean isBlocked(String ip) {
-        Long until = lockouts.get(ip);
-        if (until == null) return false;
-        if (System.currentTimeMillis() > until) {
-            lockouts.remove(ip);
-            attempts.remove(ip);
-            return false;
-        }
-        return true;
+        int slot = findSlot(fingerprint(ip));
+        return slot >= 0 && lockouts.get(slot) > clock.getAsLong();
+    }
+
+    public void reset() {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            keys.set(slot, EMPTY);
+            lockouts.set(slot, 0);
+            clearAttempts(slot);
+        }
+    }
+
+    private int findSlot(long fingerprint) {
+        int start = (int) fingerprint & (SLOTS - 1);
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (start + probe) & (SLOTS - 1);
+            if (keys.get(slot) == fingerprint) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int acquireSlot(long fingerprint, long now) {
+        while (true) {
+            int slot = findSlot(fingerprint);
+            if (slot >= 0) {
+                return slot;
+            }
+            int victim = findVictim(fingerprint, now);
+            if (victim < 0) {
+                return -1;
+            }
+            long victimKey = keys.get(victim);
+            if (keys.compareAndSet(victim, victimKey, fingerprint)) {
+                lockouts.set(victim, 0);
+                clearAttempts(victim);
+                return victim;
+            }
+            // another thread took the slot in the meantime, look again
+        }
+    }
+
+    private int findVictim(long fingerprint, long now) {
+        long bucket = now / BUCKET_DURATION_MS;
+        int start = (int) fingerprint & (SLOTS - 1);
+        int victim = -1;
+        long victimCount = Long.MAX_VALUE;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (start + probe) & (SLOTS - 1);
+            if (keys.get(slot) == EMPTY) {
+                return slot;
+            }
+            if (lockouts.get(slot) > now) {
+                continue;
+            }
+            long count = countInWindow(slot, bucket);
+            if (count < victimCount) {
+                victim = slot;
+                victimCount = count;
+            }
+        }
+        return victim;
+    }
+
+    private void incrementCounter(int index, long bucket) {
+        while (true) {
+            long current = attempts.get(index);
+            long count = (current >>> COUNT_BITS) == bucket ? current & COUNT_MASK : 0;
+            if (count == COUNT_MASK) {
+                return;
+            }
+            if (attempts.compareAndSet(index, current, (bucket << COUNT_BITS) | (count + 1))) {
+                return;
+            }
+        }
+    }
+
+    private long countInWindow(int slot, long currentBucket) {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long counter = attempts.get(slot * BUCKETS + i);
+            long age = currentBucket - (counter >>> COUNT_BITS);
+            if (age >= 0 && age < BUCKETS) {
+                count += counter & COUNT_MASK;
+            }
+        }
+        return count;
+    }
+
+    private void clearAttempts(int slot) {
+        for (int i = 0; i < BUCKETS; i++) {
+            attempts.set(slot * BUCKETS + i, 0);
+        }
+    }
+
+    private long fingerprint(String ip) {
+        // seeded FNV-1a followed by a final mix so that every bit of the seed affects the slot
+        long hash = seed;
+        for (int i = 0; i < ip.length(); i++) {
+            hash ^= ip.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
     }
 }
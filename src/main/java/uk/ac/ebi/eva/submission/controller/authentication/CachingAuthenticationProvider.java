@@ -0,0 +1,113 @@
+package uk.ac.ebi.eva.submission.controller.authentication;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import uk.ac.ebi.eva.submission.util.ExpiringLruCache;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Remembers successful username/password verifications for a short time, so that repeated Basic auth requests from
+ * the same client don't pay for a BCrypt check every time.
+ * Credentials are only kept as an HMAC with a key generated at startup. A cached verification is only reused while
+ * the stored password hash of the user is unchanged, otherwise the whole cache is dropped.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final AuthenticationProvider delegate;
+
+    private final UserDetailsService userDetailsService;
+
+    private final long ttlMillis;
+
+    private final ExpiringLruCache<String, String> verifiedCredentials;
+
+    private final SecretKeySpec hmacKey;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, UserDetailsService userDetailsService,
+                                         int maxSize, long ttlSeconds) {
+        this.delegate = delegate;
+        this.userDetailsService = userDetailsService;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.verifiedCredentials = new ExpiringLruCache<>(maxSize);
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.hmacKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+        String cacheKey = hmac(username + '\0' + credentials);
+
+        String verifiedPasswordHash = verifiedCredentials.get(cacheKey);
+        if (verifiedPasswordHash != null) {
+            UserDetails user = loadUser(username);
+            if (user != null && verifiedPasswordHash.equals(user.getPassword()) && isUsable(user)) {
+                UsernamePasswordAuthenticationToken result = new UsernamePasswordAuthenticationToken(user,
+                        credentials, user.getAuthorities());
+                result.setDetails(authentication.getDetails());
+                return result;
+            }
+            // The credentials of the user changed since they were verified
+            clear();
+        }
+
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated() && result.getPrincipal() instanceof UserDetails) {
+            String passwordHash = ((UserDetails) result.getPrincipal()).getPassword();
+            if (passwordHash != null) {
+                verifiedCredentials.put(cacheKey, passwordHash, ttlMillis);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    public void clear() {
+        verifiedCredentials.clear();
+    }
+
+    private UserDetails loadUser(String username) {
+        try {
+            return userDetailsService.loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private boolean isUsable(UserDetails user) {
+        return user.isEnabled() && user.isAccountNonLocked() && user.isAccountNonExpired()
+                && user.isCredentialsNonExpired();
+    }
+
+    private String hmac(String value) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(hmacKey);
+            return Base64.getEncoder().encodeToString(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not available", e);
+        }
+    }
+}
@@ -20,13 +20,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @Configuration
@@ -37,6 +40,8 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private static final String ROLE_ADMIN = "ADMIN";
 
+    private static final int AUTH_CACHE_MAX_SIZE = 100;
+
     private final CustomBasicAuthenticationEntryPoint customBasicAuthenticationEntryPoint;
 
     private final BruteForceProtectionService bruteForceProtectionService;
@@ -47,6 +52,9 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     @Value("${controller.auth.admin.password}")
     private String PASSWORD_ADMIN;
 
+    @Value("${controller.auth.cache.ttlSeconds:300}")
+    private long authCacheTtlSeconds;
+
     @Autowired
     public SecurityConfiguration(CustomBasicAuthenticationEntryPoint customBasicAuthenticationEntryPoint,
                                   BruteForceProtectionService bruteForceProtectionService) {
@@ -61,10 +69,17 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.inMemoryAuthentication()
-                .withUser(USERNAME_ADMIN)
-                .password(passwordEncoder().encode(PASSWORD_ADMIN))
-                .roles(ROLE_ADMIN);
+        InMemoryUserDetailsManager userDetailsService = new InMemoryUserDetailsManager(
+                User.withUsername(USERNAME_ADMIN)
+                        .password(passwordEncoder().encode(PASSWORD_ADMIN))
+                        .roles(ROLE_ADMIN)
+                        .build());
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(userDetailsService);
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder());
+        // Verifying the password with BCrypt on every admin request is expensive, remember recent successful logins
+        auth.authenticationProvider(new CachingAuthenticationProvider(daoAuthenticationProvider, userDetailsService,
+                AUTH_CACHE_MAX_SIZE, authCacheTtlSeconds));
     }
 
     @Override
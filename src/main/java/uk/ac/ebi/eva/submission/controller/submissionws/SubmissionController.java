@@ -1,7 +1,6 @@
 package uk.ac.ebi.eva.submission.controller.submissionws;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
@@ -19,23 +18,29 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import uk.ac.ebi.eva.submission.controller.BaseController;
 import uk.ac.ebi.eva.submission.entity.Submission;
 import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.exception.GlobusUnavailableException;
 import uk.ac.ebi.eva.submission.exception.MetadataFileInfoMismatchException;
 import uk.ac.ebi.eva.submission.exception.RequiredFieldsMissingException;
 import uk.ac.ebi.eva.submission.exception.SubmissionDoesNotExistException;
 import uk.ac.ebi.eva.submission.exception.UnsupportedVersionException;
 import uk.ac.ebi.eva.submission.model.SubmissionStatus;
+import uk.ac.ebi.eva.submission.model.SubmissionUploadJobDto;
 import uk.ac.ebi.eva.submission.service.LsriTokenService;
+import uk.ac.ebi.eva.submission.service.SubmissionAccountCache;
 import uk.ac.ebi.eva.submission.service.SubmissionService;
+import uk.ac.ebi.eva.submission.service.SubmissionUploadJobService;
+import uk.ac.ebi.eva.submission.service.UploadProgressService;
 import uk.ac.ebi.eva.submission.service.WebinTokenService;
 import uk.ac.ebi.eva.submission.util.Utils;
 
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/v1")
@@ -56,16 +61,24 @@ public class SubmissionController extends BaseController {
     public static final String DEPRECATED_VERSION = "v0.5.0";
     public static final String UNSUPPORTED_VERSION = "v0.4.13";
 
+    private static final long LSRI_POLLING_TIMEOUT_MARGIN_MS = 10000;
+
     private final SubmissionService submissionService;
     private final WebinTokenService webinTokenService;
     private final LsriTokenService lsriTokenService;
+    private final UploadProgressService uploadProgressService;
+    private final SubmissionUploadJobService submissionUploadJobService;
 
     public SubmissionController(SubmissionService submissionService, WebinTokenService webinTokenService,
-                                LsriTokenService lsriTokenService) {
-        super(webinTokenService, lsriTokenService);
+                                LsriTokenService lsriTokenService, SubmissionAccountCache submissionAccountCache,
+                                UploadProgressService uploadProgressService,
+                                SubmissionUploadJobService submissionUploadJobService) {
+        super(webinTokenService, lsriTokenService, submissionAccountCache);
         this.submissionService = submissionService;
         this.webinTokenService = webinTokenService;
         this.lsriTokenService = lsriTokenService;
+        this.uploadProgressService = uploadProgressService;
+        this.submissionUploadJobService = submissionUploadJobService;
     }
 
     @Operation(summary = "This endpoint authenticates a user with LSRI")
@@ -76,17 +89,35 @@ public class SubmissionController extends BaseController {
                     required = true, in = ParameterIn.QUERY)
     })
     @PostMapping("submission/auth/lsri")
-    public ResponseEntity<?> authenticateLSRI(@RequestParam("deviceCode") String deviceCode,
-                                              @RequestParam("expiresIn") int codeExpirationTimeInSeconds) {
-        String token = lsriTokenService.pollForToken(deviceCode, codeExpirationTimeInSeconds);
-        if (Objects.nonNull(token)) {
-            return new ResponseEntity<>(token, HttpStatus.OK);
+    public DeferredResult<ResponseEntity<?>> authenticateLSRI(@RequestParam("deviceCode") String deviceCode,
+                                                             @RequestParam("expiresIn") int codeExpirationTimeInSeconds) {
+        // Polling stops once the device code expires, the extra time only covers the last polling round
+        DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(
+                lsriTokenService.getPollingTimeInSeconds(codeExpirationTimeInSeconds) * 1000L
+                        + LSRI_POLLING_TIMEOUT_MARGIN_MS,
+                new ResponseEntity<>("Unauthorized", HttpStatus.UNAUTHORIZED));
+        CompletableFuture<String> lsriToken;
+        try {
+            lsriToken = lsriTokenService.pollForTokenAsync(deviceCode, codeExpirationTimeInSeconds);
+        } catch (RejectedExecutionException e) {
+            logger.warn("LSRI authentication rejected: {}", e.getMessage());
+            deferredResult.setResult(new ResponseEntity<>("Too many authentications in progress, please try again "
+                    + "later", HttpStatus.SERVICE_UNAVAILABLE));
+            return deferredResult;
         }
-        return new ResponseEntity<>("Unauthorized", HttpStatus.UNAUTHORIZED);
+        lsriToken.whenComplete((token, ex) -> {
+            if (Objects.nonNull(token)) {
+                deferredResult.setResult(new ResponseEntity<>(token, HttpStatus.OK));
+            } else {
+                deferredResult.setResult(new ResponseEntity<>("Unauthorized", HttpStatus.UNAUTHORIZED));
+            }
+        });
+        return deferredResult;
     }
 
     @Operation(summary = "This endpoint marks the initiation of a submission. It will do the necessary prep work " +
-            "for receiving the submission files")
+            "for receiving the submission files. If the submission is returned in status PROVISIONING, files can be " +
+            "uploaded once its status is OPEN")
     @Parameters({
             @Parameter(name = "Authorization", description = "Token (bearerToken) for authenticating the user",
                     required = true, in = ParameterIn.HEADER)
@@ -105,16 +136,22 @@ public class SubmissionController extends BaseController {
         return new ResponseEntity<>(stripUserDetails(submission), HttpStatus.OK);
     }
 
-    @Operation(summary = "Given a submission id, this endpoint will mark the submission as uploaded")
+    @Operation(summary = "Given a submission id, this endpoint will mark the submission as uploaded. In async mode, " +
+            "the metadata is accepted with status 202 and checked in the background: the outcome is then retrieved " +
+            "from the upload job returned")
     @Parameters({
             @Parameter(name = "Authorization", description = "Token (bearerToken) for authenticating the user",
                     required = true, in = ParameterIn.HEADER),
             @Parameter(name = "submissionId", description = "Id of the submission whose status needs to be retrieved",
-                    required = true, in = ParameterIn.PATH)
+                    required = true, in = ParameterIn.PATH),
+            @Parameter(name = "async", description = "Whether to check the submission in the background",
+                    in = ParameterIn.QUERY)
     })
     @PutMapping("submission/{submissionId}/uploaded")
     public ResponseEntity<?> markSubmissionUploaded(@RequestHeader("Authorization") String bearerToken,
                                                     @PathVariable("submissionId") String submissionId,
+                                                    @RequestParam(value = "async", required = false,
+                                                            defaultValue = "false") boolean async,
                                                     @RequestBody JsonNode metadataJson) {
         logger.info("Mark submission uploaded endpoint called for submissionId: {}", submissionId);
         SubmissionAccount submissionAccount = this.getSubmissionAccount(bearerToken);
@@ -150,36 +187,23 @@ public class SubmissionController extends BaseController {
                 }
                 throw new UnsupportedVersionException(version);
             }
-            // check if there is a difference between the files uploaded and files mentioned in metadata
-            submissionService.checkMetadataFileInfoMatchesWithUploadedFiles(submissionAccount, submissionId, metadataJson);
-
-            // check if all the required parameters are present/provided
-            Map<String, String> projectDetails = submissionService.checkAllRequiredParametersProvided(metadataJson);
-
-            String projectTitle = projectDetails.get(TITLE);
-            String projectDescription = projectDetails.get(DESCRIPTION);
-            String projectTaxonomy = projectDetails.get(TAXONOMY_ID);
-
-            // save submission details along with metadata
-            Submission submission = this.submissionService.uploadMetadataJsonAndMarkUploaded(submissionId,
-                    projectTitle, projectDescription, metadataJson);
-
-            // check if consent statement is required
-            ArrayNode analysisNode = (ArrayNode) metadataJson.get(ANALYSIS);
-            boolean isHuman = submissionService.isHumanDataInSubmission(metadataJson, projectTaxonomy);
-            boolean needConsentStatement = checkConsentStatementIsNeededForTheSubmission(isHuman, analysisNode);
-
-            // send notification to user
-            submissionService.sendMailNotificationToUserForStatusUpdate(submissionAccount, submissionId, projectTitle,
-                    SubmissionStatus.UPLOADED, needConsentStatement, deprecatedVersion, true);
-            // send notification to EVA HelpDesk
-            submissionService.sendMailNotificationToEVAHelpdeskForSubmissionUploaded(submissionAccount, submissionId,
-                    projectTitle);
-
+            if (async) {
+                SubmissionUploadJobDto uploadJob = submissionUploadJobService.submitUploadJob(submissionId,
+                        metadataJson, deprecatedVersion);
+                return ResponseEntity.accepted()
+                        .location(ServletUriComponentsBuilder.fromCurrentRequestUri().path("/{jobId}")
+                                .buildAndExpand(uploadJob.getJobId()).toUri())
+                        .body(uploadJob);
+            }
+            Submission submission = submissionUploadJobService.markSubmissionUploaded(submissionAccount, submissionId,
+                    metadataJson, deprecatedVersion);
             return new ResponseEntity<>(stripUserDetails(submission), HttpStatus.OK);
         } catch (RequiredFieldsMissingException | MetadataFileInfoMismatchException | UnsupportedVersionException ex) {
             logger.error("Error occurred while processing the submission.", ex);
             return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (GlobusUnavailableException ex) {
+            logger.warn("Could not check the files of submission {}: {}", submissionId, ex.getMessage());
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             logger.error("Error occurred while processing the submission.", e);
             return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -201,17 +225,64 @@ public class SubmissionController extends BaseController {
         }
     }
 
-    private boolean checkConsentStatementIsNeededForTheSubmission(boolean isHuman, ArrayNode analysisNode) {
-        if (!isHuman) {
-            return false;
+    @Operation(summary = "Given a submission id, this endpoint retrieves the number and total size of the files " +
+            "uploaded so far, as of the last time the submission directory was checked")
+    @Parameters({
+            @Parameter(name = "Authorization", description = "Token (bearerToken) for authenticating the user",
+                    required = true, in = ParameterIn.HEADER),
+            @Parameter(name = "submissionId", description = "Id of the submission whose upload progress needs to be retrieved",
+                    required = true, in = ParameterIn.PATH)
+    })
+    @GetMapping("submission/{submissionId}/progress")
+    public ResponseEntity<?> getUploadProgress(@RequestHeader("Authorization") String bearerToken,
+                                               @PathVariable("submissionId") String submissionId) {
+        SubmissionAccount submissionAccount = this.getSubmissionAccount(bearerToken);
+        if (Objects.isNull(submissionAccount)) {
+            return new ResponseEntity<>("Unauthorized", HttpStatus.UNAUTHORIZED);
+        }
+        try {
+            if (!submissionService.checkUserHasAccessToSubmission(submissionAccount, submissionId)) {
+                return new ResponseEntity<>("Unauthorized: Account " + submissionAccount.getId() +
+                        " does not have access to submissionId " + submissionId, HttpStatus.UNAUTHORIZED);
+            }
+        } catch (SubmissionDoesNotExistException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        }
+        return uploadProgressService.getUploadProgress(submissionId)
+                .<ResponseEntity<?>>map(progress -> new ResponseEntity<>(progress, HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>("Upload progress of submission " + submissionId +
+                        " has not been checked yet", HttpStatus.NOT_FOUND));
+    }
+
+    @Operation(summary = "Given a submission id and the id of an upload job, this endpoint retrieves the status " +
+            "of the job and, once it has completed, its outcome")
+    @Parameters({
+            @Parameter(name = "Authorization", description = "Token (bearerToken) for authenticating the user",
+                    required = true, in = ParameterIn.HEADER),
+            @Parameter(name = "submissionId", description = "Id of the submission the job belongs to",
+                    required = true, in = ParameterIn.PATH),
+            @Parameter(name = "jobId", description = "Id of the upload job, as returned when the submission was " +
+                    "marked as uploaded in async mode", required = true, in = ParameterIn.PATH)
+    })
+    @GetMapping("submission/{submissionId}/uploaded/{jobId}")
+    public ResponseEntity<?> getUploadJob(@RequestHeader("Authorization") String bearerToken,
+                                          @PathVariable("submissionId") String submissionId,
+                                          @PathVariable("jobId") String jobId) {
+        SubmissionAccount submissionAccount = this.getSubmissionAccount(bearerToken);
+        if (Objects.isNull(submissionAccount)) {
+            return new ResponseEntity<>("Unauthorized", HttpStatus.UNAUTHORIZED);
         }
-        Set<String> evidenceTypes = new HashSet<>();
-        for (JsonNode node : analysisNode) {
-            String evidenceType = node.path("evidenceType").asText(null);
-            if (evidenceType != null) {
-                evidenceTypes.add(evidenceType);
+        try {
+            if (!submissionService.checkUserHasAccessToSubmission(submissionAccount, submissionId)) {
+                return new ResponseEntity<>("Unauthorized: Account " + submissionAccount.getId() +
+                        " does not have access to submissionId " + submissionId, HttpStatus.UNAUTHORIZED);
             }
+        } catch (SubmissionDoesNotExistException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
         }
-        return evidenceTypes.isEmpty() || evidenceTypes.contains("genotype");
+        return submissionUploadJobService.getUploadJob(submissionId, jobId)
+                .<ResponseEntity<?>>map(uploadJob -> new ResponseEntity<>(uploadJob, HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>("Upload job " + jobId + " does not exist for submission " +
+                        submissionId, HttpStatus.NOT_FOUND));
     }
 }
@@ -0,0 +1,64 @@
+package uk.ac.ebi.eva.submission.entity;
+
+import org.springframework.lang.NonNull;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Taxonomy of a BioSamples sample, as last retrieved from BioSamples. An empty taxId records that the sample does
+ * not exist or has no taxonomy.
+ */
+@Entity
+@Table(schema = "eva_submissions", name = "biosample_taxonomy")
+public class BioSampleTaxonomy {
+
+    @Id
+    @NonNull
+    @Column(nullable = false)
+    private String accession;
+
+    @NonNull
+    @Column(nullable = false)
+    private String taxId;
+
+    @NonNull
+    @Column(nullable = false)
+    private LocalDateTime fetchTime;
+
+    public BioSampleTaxonomy() {
+    }
+
+    public BioSampleTaxonomy(String accession, String taxId, LocalDateTime fetchTime) {
+        this.accession = accession;
+        this.taxId = taxId;
+        this.fetchTime = fetchTime;
+    }
+
+    public String getAccession() {
+        return accession;
+    }
+
+    public void setAccession(String accession) {
+        this.accession = accession;
+    }
+
+    public String getTaxId() {
+        return taxId;
+    }
+
+    public void setTaxId(String taxId) {
+        this.taxId = taxId;
+    }
+
+    public LocalDateTime getFetchTime() {
+        return fetchTime;
+    }
+
+    public void setFetchTime(LocalDateTime fetchTime) {
+        this.fetchTime = fetchTime;
+    }
+}
@@ -0,0 +1,91 @@
+package uk.ac.ebi.eva.submission.entity;
+
+import org.springframework.lang.NonNull;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Details of an ENA project, as last retrieved from ENA. Projects that were not found in ENA are stored with empty
+ * details.
+ */
+@Entity
+@Table(schema = "eva_submissions", name = "ena_project_details")
+public class EnaProjectDetails {
+
+    @Id
+    @NonNull
+    @Column(nullable = false)
+    private String projectAccession;
+
+    @NonNull
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String title;
+
+    @NonNull
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String description;
+
+    @NonNull
+    @Column(nullable = false)
+    private String taxId;
+
+    @NonNull
+    @Column(nullable = false)
+    private LocalDateTime fetchTime;
+
+    public EnaProjectDetails() {
+    }
+
+    public EnaProjectDetails(String projectAccession, String title, String description, String taxId,
+                             LocalDateTime fetchTime) {
+        this.projectAccession = projectAccession;
+        this.title = title;
+        this.description = description;
+        this.taxId = taxId;
+        this.fetchTime = fetchTime;
+    }
+
+    public String getProjectAccession() {
+        return projectAccession;
+    }
+
+    public void setProjectAccession(String projectAccession) {
+        this.projectAccession = projectAccession;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getTaxId() {
+        return taxId;
+    }
+
+    public void setTaxId(String taxId) {
+        this.taxId = taxId;
+    }
+
+    public LocalDateTime getFetchTime() {
+        return fetchTime;
+    }
+
+    public void setFetchTime(LocalDateTime fetchTime) {
+        this.fetchTime = fetchTime;
+    }
+}
@@ -0,0 +1,158 @@
+package uk.ac.ebi.eva.submission.entity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.hypersistence.utils.hibernate.type.json.JsonType;
+import org.hibernate.annotations.TypeDef;
+import org.springframework.lang.NonNull;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Email waiting to be sent, or sent already. Emails are written in the same transaction as the change they notify
+ * about and sent in the background.
+ */
+@Entity
+@Table(schema = "eva_submissions", name = "email_outbox")
+@TypeDef(typeClass = JsonType.class, defaultForType = JsonNode.class)
+public class OutboxEmail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NonNull
+    @Column(nullable = false, name = "from_address")
+    private String fromAddress;
+
+    @NonNull
+    @Column(nullable = false, name = "to_address")
+    private String toAddress;
+
+    @Column(columnDefinition = "jsonb", name = "cc_addresses")
+    private JsonNode ccAddresses;
+
+    @NonNull
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String subject;
+
+    @NonNull
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @NonNull
+    @Column(nullable = false)
+    private String status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime createdTime;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptTime;
+
+    @Column
+    private LocalDateTime sentTime;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getFromAddress() {
+        return fromAddress;
+    }
+
+    public void setFromAddress(String fromAddress) {
+        this.fromAddress = fromAddress;
+    }
+
+    public String getToAddress() {
+        return toAddress;
+    }
+
+    public void setToAddress(String toAddress) {
+        this.toAddress = toAddress;
+    }
+
+    public JsonNode getCcAddresses() {
+        return ccAddresses;
+    }
+
+    public void setCcAddresses(JsonNode ccAddresses) {
+        this.ccAddresses = ccAddresses;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+
+    public void setCreatedTime(LocalDateTime createdTime) {
+        this.createdTime = createdTime;
+    }
+
+    public LocalDateTime getNextAttemptTime() {
+        return nextAttemptTime;
+    }
+
+    public void setNextAttemptTime(LocalDateTime nextAttemptTime) {
+        this.nextAttemptTime = nextAttemptTime;
+    }
+
+    public LocalDateTime getSentTime() {
+        return sentTime;
+    }
+
+    public void setSentTime(LocalDateTime sentTime) {
+        this.sentTime = sentTime;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
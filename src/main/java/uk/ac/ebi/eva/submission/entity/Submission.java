@@ -49,6 +49,10 @@ public class Submission {
     @Column
     private String uploadUrl;
 
+    // When an instance of the service last started creating the directory of the submission
+    @Column
+    private LocalDateTime provisioningClaimTime;
+
     public String getSubmissionId() {
         return submissionId;
     }
@@ -103,6 +107,14 @@ public class Submission {
         this.uploadUrl = uploadUrl;
     }
 
+    public LocalDateTime getProvisioningClaimTime() {
+        return provisioningClaimTime;
+    }
+
+    public void setProvisioningClaimTime(LocalDateTime provisioningClaimTime) {
+        this.provisioningClaimTime = provisioningClaimTime;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,138 @@
+package uk.ac.ebi.eva.submission.entity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.hypersistence.utils.hibernate.type.json.JsonType;
+import org.hibernate.annotations.TypeDef;
+import org.springframework.lang.NonNull;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Request to mark a submission as uploaded, checked in the background. Holds the metadata sent by the user until the
+ * checks have run, then the outcome of the checks.
+ */
+@Entity
+@Table(schema = "eva_submissions", name = "submission_upload_job")
+@TypeDef(typeClass = JsonType.class, defaultForType = JsonNode.class)
+public class SubmissionUploadJob {
+
+    public SubmissionUploadJob() {
+
+    }
+
+    public SubmissionUploadJob(String jobId, String submissionId) {
+        this.jobId = jobId;
+        this.submissionId = submissionId;
+    }
+
+    @Id
+    @NonNull
+    @Column(nullable = false, name = "job_id")
+    private String jobId;
+
+    @NonNull
+    @Column(nullable = false, name = "submission_id")
+    private String submissionId;
+
+    @NonNull
+    @Column(nullable = false)
+    private String status;
+
+    @Column(columnDefinition = "jsonb", name = "metadata_json", nullable = false)
+    private JsonNode metadataJson;
+
+    @Column(nullable = false)
+    private boolean deprecatedVersion;
+
+    // HTTP status the request would have been answered with had it been checked straight away
+    @Column
+    private Integer resultCode;
+
+    @Column(columnDefinition = "TEXT")
+    private String resultMessage;
+
+    @Column(nullable = false)
+    private LocalDateTime createdTime;
+
+    @Column
+    private LocalDateTime startedTime;
+
+    @Column
+    private LocalDateTime completedTime;
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public JsonNode getMetadataJson() {
+        return metadataJson;
+    }
+
+    public void setMetadataJson(JsonNode metadataJson) {
+        this.metadataJson = metadataJson;
+    }
+
+    public boolean isDeprecatedVersion() {
+        return deprecatedVersion;
+    }
+
+    public void setDeprecatedVersion(boolean deprecatedVersion) {
+        this.deprecatedVersion = deprecatedVersion;
+    }
+
+    public Integer getResultCode() {
+        return resultCode;
+    }
+
+    public void setResultCode(Integer resultCode) {
+        this.resultCode = resultCode;
+    }
+
+    public String getResultMessage() {
+        return resultMessage;
+    }
+
+    public void setResultMessage(String resultMessage) {
+        this.resultMessage = resultMessage;
+    }
+
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+
+    public void setCreatedTime(LocalDateTime createdTime) {
+        this.createdTime = createdTime;
+    }
+
+    public LocalDateTime getStartedTime() {
+        return startedTime;
+    }
+
+    public void setStartedTime(LocalDateTime startedTime) {
+        this.startedTime = startedTime;
+    }
+
+    public LocalDateTime getCompletedTime() {
+        return completedTime;
+    }
+
+    public void setCompletedTime(LocalDateTime completedTime) {
+        this.completedTime = completedTime;
+    }
+}
@@ -0,0 +1,117 @@
+package uk.ac.ebi.eva.submission.entity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.hypersistence.utils.hibernate.type.json.JsonType;
+import org.hibernate.annotations.TypeDef;
+import org.springframework.lang.NonNull;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Latest snapshot of the files uploaded to the Globus directory of a submission.
+ */
+@Entity
+@Table(schema = "eva_submissions", name = "submission_upload_progress")
+@TypeDef(typeClass = JsonType.class, defaultForType = JsonNode.class)
+public class SubmissionUploadProgress {
+
+    public SubmissionUploadProgress() {
+
+    }
+
+    public SubmissionUploadProgress(String submissionId) {
+        this.submissionId = submissionId;
+    }
+
+    @Id
+    @NonNull
+    @Column(nullable = false, name = "submission_id")
+    private String submissionId;
+
+    @Column(nullable = false)
+    private int fileCount;
+
+    @Column(nullable = false)
+    private long totalBytes;
+
+    // File name to size in bytes
+    @Column(columnDefinition = "jsonb", name = "file_sizes", nullable = false)
+    private JsonNode fileSizes;
+
+    @Column(nullable = false)
+    private LocalDateTime lastCheckedTime;
+
+    // Last time the files were seen to change, i.e. the last sign of upload activity
+    @Column(nullable = false)
+    private LocalDateTime lastChangedTime;
+
+    @Column(nullable = false)
+    private LocalDateTime nextCheckTime;
+
+    @Column(nullable = false)
+    private long checkIntervalSeconds;
+
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public void setFileCount(int fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public JsonNode getFileSizes() {
+        return fileSizes;
+    }
+
+    public void setFileSizes(JsonNode fileSizes) {
+        this.fileSizes = fileSizes;
+    }
+
+    public LocalDateTime getLastCheckedTime() {
+        return lastCheckedTime;
+    }
+
+    public void setLastCheckedTime(LocalDateTime lastCheckedTime) {
+        this.lastCheckedTime = lastCheckedTime;
+    }
+
+    public LocalDateTime getLastChangedTime() {
+        return lastChangedTime;
+    }
+
+    public void setLastChangedTime(LocalDateTime lastChangedTime) {
+        this.lastChangedTime = lastChangedTime;
+    }
+
+    public LocalDateTime getNextCheckTime() {
+        return nextCheckTime;
+    }
+
+    public void setNextCheckTime(LocalDateTime nextCheckTime) {
+        this.nextCheckTime = nextCheckTime;
+    }
+
+    public long getCheckIntervalSeconds() {
+        return checkIntervalSeconds;
+    }
+
+    public void setCheckIntervalSeconds(long checkIntervalSeconds) {
+        this.checkIntervalSeconds = checkIntervalSeconds;
+    }
+}
@@ -0,0 +1,8 @@
+package uk.ac.ebi.eva.submission.exception;
+
+public class GlobusUnavailableException extends RuntimeException {
+
+    public GlobusUnavailableException(String message) {
+        super(message);
+    }
+}
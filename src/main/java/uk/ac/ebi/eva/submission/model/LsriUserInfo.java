@@ -1,13 +1,15 @@
 package uk.ac.ebi.eva.submission.model;
 
-import com.google.gson.annotations.SerializedName;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class LsriUserInfo {
-    @SerializedName("sub")
+    @JsonProperty("sub")
     private String UserId;
-    @SerializedName("given_name")
+    @JsonProperty("given_name")
     private String firstName;
-    @SerializedName("family_name")
+    @JsonProperty("family_name")
     private String lastName;
     private String email;
 
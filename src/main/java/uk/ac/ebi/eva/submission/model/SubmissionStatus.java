@@ -1,6 +1,6 @@
 package uk.ac.ebi.eva.submission.model;
 
 public enum SubmissionStatus {
-    OPEN, UPLOADED, COMPLETED, TIMEOUT, FAILED, CANCELLED, PROCESSING
+    PROVISIONING, OPEN, UPLOADED, COMPLETED, TIMEOUT, FAILED, CANCELLED, PROCESSING
 
 }
@@ -0,0 +1,53 @@
+package uk.ac.ebi.eva.submission.model;
+
+import java.time.LocalDateTime;
+
+public class SubmissionUploadJobDto {
+
+    private String jobId;
+    private String submissionId;
+    private String status;
+    private Integer resultCode;
+    private String resultMessage;
+    private LocalDateTime createdTime;
+    private LocalDateTime completedTime;
+
+    public SubmissionUploadJobDto(String jobId, String submissionId, String status, Integer resultCode,
+                                  String resultMessage, LocalDateTime createdTime, LocalDateTime completedTime) {
+        this.jobId = jobId;
+        this.submissionId = submissionId;
+        this.status = status;
+        this.resultCode = resultCode;
+        this.resultMessage = resultMessage;
+        this.createdTime = createdTime;
+        this.completedTime = completedTime;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Integer getResultCode() {
+        return resultCode;
+    }
+
+    public String getResultMessage() {
+        return resultMessage;
+    }
+
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+
+    public LocalDateTime getCompletedTime() {
+        return completedTime;
+    }
+}
@@ -0,0 +1,41 @@
+package uk.ac.ebi.eva.submission.model;
+
+import java.time.LocalDateTime;
+
+public class SubmissionUploadProgressDto {
+
+    private String submissionId;
+    private int fileCount;
+    private long totalBytes;
+    private LocalDateTime lastCheckedTime;
+    private LocalDateTime lastChangedTime;
+
+    public SubmissionUploadProgressDto(String submissionId, int fileCount, long totalBytes,
+                                       LocalDateTime lastCheckedTime, LocalDateTime lastChangedTime) {
+        this.submissionId = submissionId;
+        this.fileCount = fileCount;
+        this.totalBytes = totalBytes;
+        this.lastCheckedTime = lastCheckedTime;
+        this.lastChangedTime = lastChangedTime;
+    }
+
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public LocalDateTime getLastCheckedTime() {
+        return lastCheckedTime;
+    }
+
+    public LocalDateTime getLastChangedTime() {
+        return lastChangedTime;
+    }
+}
@@ -0,0 +1,22 @@
+package uk.ac.ebi.eva.submission.model;
+
+import java.util.Map;
+
+public class UploadCheckResult {
+
+    private Map<String, String> projectDetails;
+    private boolean humanData;
+
+    public UploadCheckResult(Map<String, String> projectDetails, boolean humanData) {
+        this.projectDetails = projectDetails;
+        this.humanData = humanData;
+    }
+
+    public Map<String, String> getProjectDetails() {
+        return projectDetails;
+    }
+
+    public boolean isHumanData() {
+        return humanData;
+    }
+}
@@ -0,0 +1,5 @@
+package uk.ac.ebi.eva.submission.model;
+
+public enum UploadJobStatus {
+    PENDING, RUNNING, SUCCEEDED, FAILED
+}
@@ -1,5 +1,8 @@
 package uk.ac.ebi.eva.submission.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class WebinSubmissionContact {
     private String consortium;
     private String emailAddress;
@@ -1,7 +1,10 @@
 package uk.ac.ebi.eva.submission.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import java.util.List;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class WebinUserInfo {
     private String submissionAccountId;
     private String centerName;
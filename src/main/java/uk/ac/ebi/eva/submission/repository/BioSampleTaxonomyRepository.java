@@ -0,0 +1,7 @@
+package uk.ac.ebi.eva.submission.repository;
+
+import org.springframework.data.repository.CrudRepository;
+import uk.ac.ebi.eva.submission.entity.BioSampleTaxonomy;
+
+public interface BioSampleTaxonomyRepository extends CrudRepository<BioSampleTaxonomy, String> {
+}
@@ -0,0 +1,27 @@
+package uk.ac.ebi.eva.submission.repository;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import uk.ac.ebi.eva.submission.entity.OutboxEmail;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEmailRepository extends CrudRepository<OutboxEmail, Long> {
+
+    /**
+     * Locks the oldest emails due to be sent. Emails locked by another transaction are skipped, so that several
+     * instances of the service can send emails at the same time without sending any of them twice.
+     * Must be called within a transaction.
+     */
+    @Query(value = "SELECT * FROM eva_submissions.email_outbox " +
+            "WHERE status = :status AND next_attempt_time <= :now " +
+            "ORDER BY id LIMIT :batchSize FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxEmail> lockEmailsDue(@Param("status") String status,
+                                    @Param("now") LocalDateTime now,
+                                    @Param("batchSize") int batchSize);
+
+    long countByStatus(String status);
+}
@@ -1,8 +1,58 @@
 package uk.ac.ebi.eva.submission.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
 
 public interface SubmissionAccountRepository extends CrudRepository<SubmissionAccount, String> {
 
-}
\ No newline at end of file
+    /**
+     * Loads the account with its secondary emails, for use outside of a transaction.
+     */
+    @EntityGraph(attributePaths = "secondaryEmails")
+    SubmissionAccount findWithSecondaryEmailsById(String id);
+
+    /**
+     * Inserts the account or updates it if any of its details changed, in a single statement. Secondary emails are
+     * given as a JSON array and are only rewritten when they differ (ignoring order) from the ones stored.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query(value =
+            "WITH new_emails AS (" +
+                    "    SELECT value AS email FROM json_array_elements_text(CAST(:secondaryEmails AS json))" +
+                    "), upserted_account AS (" +
+                    "    INSERT INTO eva_submissions.submission_account " +
+                    "        (id, user_id, login_type, primary_email, first_name, last_name) " +
+                    "    VALUES (:id, :userId, :loginType, :primaryEmail, :firstName, :lastName) " +
+                    "    ON CONFLICT (id) DO UPDATE SET primary_email = EXCLUDED.primary_email, " +
+                    "        first_name = EXCLUDED.first_name, last_name = EXCLUDED.last_name " +
+                    "    WHERE (submission_account.primary_email, submission_account.first_name, " +
+                    "        submission_account.last_name) IS DISTINCT FROM " +
+                    "        (EXCLUDED.primary_email, EXCLUDED.first_name, EXCLUDED.last_name)" +
+                    "), emails_changed AS (" +
+                    "    SELECT (SELECT COALESCE(string_agg(secondary_emails, chr(10) ORDER BY secondary_emails), '') " +
+                    "            FROM eva_submissions.submission_account_secondary_emails " +
+                    "            WHERE submission_account_id = :id) " +
+                    "        <> (SELECT COALESCE(string_agg(email, chr(10) ORDER BY email), '') FROM new_emails) " +
+                    "        AS changed" +
+                    "), deleted_emails AS (" +
+                    "    DELETE FROM eva_submissions.submission_account_secondary_emails " +
+                    "    WHERE submission_account_id = :id AND (SELECT changed FROM emails_changed)" +
+                    ") " +
+                    "INSERT INTO eva_submissions.submission_account_secondary_emails " +
+                    "    (submission_account_id, secondary_emails) " +
+                    "SELECT :id, email FROM new_emails WHERE (SELECT changed FROM emails_changed)",
+            nativeQuery = true)
+    void upsert(@Param("id") String id,
+                @Param("userId") String userId,
+                @Param("loginType") String loginType,
+                @Param("primaryEmail") String primaryEmail,
+                @Param("firstName") String firstName,
+                @Param("lastName") String lastName,
+                @Param("secondaryEmails") String secondaryEmails);
+}
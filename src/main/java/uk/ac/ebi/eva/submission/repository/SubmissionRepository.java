@@ -2,12 +2,17 @@ package uk.ac.ebi.eva.submission.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import uk.ac.ebi.eva.submission.entity.Submission;
 
+import javax.persistence.LockModeType;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface SubmissionRepository extends CrudRepository<Submission, String> {
@@ -15,6 +20,69 @@ public interface SubmissionRepository extends CrudRepository<Submission, String>
 
     List<Submission> findByStatus(String status);
 
+    /**
+     * Locks the submission until the end of the current transaction, to serialise changes made to it by concurrent
+     * requests.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Submission s WHERE s.submissionId = :submissionId")
+    Submission findAndLockBySubmissionId(@Param("submissionId") String submissionId);
+
+    /**
+     * Changes the status of the submission only if it is still in the expected status.
+     * Returns the number of submissions updated, 0 if the status had already changed.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Submission s SET s.status = :newStatus " +
+            "WHERE s.submissionId = :submissionId AND s.status = :expectedStatus")
+    int updateStatus(@Param("submissionId") String submissionId,
+                     @Param("expectedStatus") String expectedStatus,
+                     @Param("newStatus") String newStatus);
+
+    /**
+     * Returns the open submissions whose uploads are due for a check, the ones never checked first and then the ones
+     * that have waited the longest.
+     */
+    @Query("SELECT s FROM Submission s LEFT JOIN SubmissionUploadProgress p ON p.submissionId = s.submissionId " +
+            "WHERE s.status = 'OPEN' AND (p.nextCheckTime IS NULL OR p.nextCheckTime <= :now) " +
+            "ORDER BY CASE WHEN p.nextCheckTime IS NULL THEN 0 ELSE 1 END, p.nextCheckTime")
+    List<Submission> findOpenDueForUploadCheck(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Returns the submissions still waiting for their directory that were initiated before the given time and that no
+     * instance of the service has started provisioning since then.
+     */
+    @Query("SELECT s FROM Submission s WHERE s.status = 'PROVISIONING' AND s.initiationTime < :staleBefore " +
+            "AND (s.provisioningClaimTime IS NULL OR s.provisioningClaimTime < :staleBefore)")
+    List<Submission> findStaleProvisioning(@Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Records that the directory of the submission is being created, unless the submission is no longer waiting for
+     * its directory or another instance of the service started creating it after the given time.
+     * Returns the number of submissions updated, 0 if the submission could not be claimed.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Submission s SET s.provisioningClaimTime = :claimTime " +
+            "WHERE s.submissionId = :submissionId AND s.status = 'PROVISIONING' " +
+            "AND (s.provisioningClaimTime IS NULL OR s.provisioningClaimTime < :staleBefore)")
+    int claimProvisioning(@Param("submissionId") String submissionId,
+                          @Param("claimTime") LocalDateTime claimTime,
+                          @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Gives up the claim made at the given time on the directory of the submission, so that the sweep picks the
+     * submission up again. Returns the number of submissions updated, 0 if the claim is no longer held.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Submission s SET s.provisioningClaimTime = NULL " +
+            "WHERE s.submissionId = :submissionId AND s.status = 'PROVISIONING' " +
+            "AND s.provisioningClaimTime = :claimTime")
+    int releaseProvisioningClaim(@Param("submissionId") String submissionId,
+                                 @Param("claimTime") LocalDateTime claimTime);
+
     @Query(value =
             "SELECT s.submission_id AS submissionId, s.status as submissionStatus, s.uploaded_time AS uploadedTime, " +
                     "sa.id AS accountId, se.source AS eloadSource, se.eload AS eloadId, " +
@@ -0,0 +1,76 @@
+package uk.ac.ebi.eva.submission.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import uk.ac.ebi.eva.submission.entity.SubmissionUploadJob;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SubmissionUploadJobRepository extends CrudRepository<SubmissionUploadJob, String> {
+
+    SubmissionUploadJob findByJobIdAndSubmissionId(String jobId, String submissionId);
+
+    SubmissionUploadJob findFirstBySubmissionIdAndStatusIn(String submissionId, List<String> statuses);
+
+    List<SubmissionUploadJob> findByStatus(String status);
+
+    List<SubmissionUploadJob> findByStatusAndCreatedTimeBefore(String status, LocalDateTime createdTime);
+
+    /**
+     * Marks the job as running if it is still pending, so that a job is only run once.
+     * Returns the number of jobs updated, 0 if the job had already been claimed.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE SubmissionUploadJob j SET j.status = 'RUNNING', j.startedTime = :startedTime " +
+            "WHERE j.jobId = :jobId AND j.status = 'PENDING'")
+    int claimJob(@Param("jobId") String jobId,
+                 @Param("startedTime") LocalDateTime startedTime);
+
+    /**
+     * Puts back the jobs that started running before the given time, assuming that the instance of the service
+     * running them stopped before completing them.
+     * Returns the number of jobs put back.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE SubmissionUploadJob j SET j.status = 'PENDING' " +
+            "WHERE j.status = 'RUNNING' AND j.startedTime < :staleBefore")
+    int requeueStaleRunningJobs(@Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Records the outcome of the job if it is still held by the claim made at the given time. A job that was put back
+     * while running may have been claimed again, in which case the outcome is left to the run holding the claim.
+     * Returns the number of jobs updated, 0 if the job is no longer held by that claim.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE SubmissionUploadJob j SET j.status = :status, j.resultCode = :resultCode, " +
+            "j.resultMessage = :resultMessage, j.completedTime = :completedTime " +
+            "WHERE j.jobId = :jobId AND j.status = 'RUNNING' AND j.startedTime = :startedTime")
+    int completeJob(@Param("jobId") String jobId,
+                    @Param("startedTime") LocalDateTime startedTime,
+                    @Param("status") String status,
+                    @Param("resultCode") int resultCode,
+                    @Param("resultMessage") String resultMessage,
+                    @Param("completedTime") LocalDateTime completedTime);
+
+    /**
+     * Records the outcome of the job if it is running, whichever claim holds it.
+     * Returns the number of jobs updated, 0 if the job has already completed.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE SubmissionUploadJob j SET j.status = :status, j.resultCode = :resultCode, " +
+            "j.resultMessage = :resultMessage, j.completedTime = :completedTime " +
+            "WHERE j.jobId = :jobId AND j.status = 'RUNNING'")
+    int completeRunningJob(@Param("jobId") String jobId,
+                           @Param("status") String status,
+                           @Param("resultCode") int resultCode,
+                           @Param("resultMessage") String resultMessage,
+                           @Param("completedTime") LocalDateTime completedTime);
+}
@@ -0,0 +1,51 @@
+package uk.ac.ebi.eva.submission.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import uk.ac.ebi.eva.submission.entity.SubmissionUploadProgress;
+
+import java.time.LocalDateTime;
+
+public interface SubmissionUploadProgressRepository extends CrudRepository<SubmissionUploadProgress, String> {
+
+    /**
+     * Moves the next check of the submission to the given time if the check is due, so that a submission is only
+     * checked by one instance of the service at a time.
+     * Returns the number of snapshots updated, 0 if the check is not due anymore.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE SubmissionUploadProgress p SET p.nextCheckTime = :claimedUntil " +
+            "WHERE p.submissionId = :submissionId AND p.nextCheckTime <= :now")
+    int claimCheck(@Param("submissionId") String submissionId,
+                   @Param("now") LocalDateTime now,
+                   @Param("claimedUntil") LocalDateTime claimedUntil);
+
+    /**
+     * Creates an empty snapshot for a submission never checked before, with its next check at the given time, unless
+     * another instance of the service already created one.
+     * Returns the number of snapshots created, 0 if the submission already had one.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO eva_submissions.submission_upload_progress (submission_id, file_count, total_bytes, " +
+            "file_sizes, last_checked_time, last_changed_time, next_check_time, check_interval_seconds) " +
+            "VALUES (:submissionId, 0, 0, CAST('{}' AS jsonb), :now, :now, :claimedUntil, :checkIntervalSeconds) " +
+            "ON CONFLICT (submission_id) DO NOTHING", nativeQuery = true)
+    int claimFirstCheck(@Param("submissionId") String submissionId,
+                        @Param("now") LocalDateTime now,
+                        @Param("claimedUntil") LocalDateTime claimedUntil,
+                        @Param("checkIntervalSeconds") long checkIntervalSeconds);
+
+    /**
+     * Deletes the snapshots of the submissions that are no longer open for uploads.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("DELETE FROM SubmissionUploadProgress p WHERE p.submissionId IN " +
+            "(SELECT s.submissionId FROM Submission s WHERE s.status <> 'OPEN')")
+    int deleteOfClosedSubmissions();
+}
@@ -9,9 +9,11 @@ import com.networknt.schema.SchemaRegistry;
 import com.networknt.schema.SpecificationVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import uk.ac.ebi.eva.submission.entity.CallHomeEventEntity;
 import uk.ac.ebi.eva.submission.repository.CallHomeEventRepository;
+import uk.ac.ebi.eva.submission.util.Deadline;
 import uk.ac.ebi.eva.submission.util.SchemaDownloader;
 
 import java.io.BufferedReader;
@@ -36,6 +38,9 @@ public class CallHomeService {
     private final SchemaRegistry schemaRegistry = SchemaRegistry.withDefaultDialect(SpecificationVersion.DRAFT_2020_12);
     private final SchemaDownloader schemaDownloader;
 
+    @Value("${github.schema.budgetMs:10000}")
+    private long schemaBudgetMillis;
+
     public CallHomeService(CallHomeEventRepository callHomeEventRepository, SchemaDownloader schemaDownloader) {
         this.callHomeEventRepository = callHomeEventRepository;
         this.schemaDownloader = schemaDownloader;
@@ -51,9 +56,11 @@ public class CallHomeService {
     }
 
     public boolean validateJsonUsingSchemaFromGithub(JsonNode jsonPayload) {
-        String latestTag = schemaDownloader.getLatestTag(SchemaDownloader.TAG_URL);
+        // both downloads share the time given to fetch the schema before falling back to the local copy
+        Deadline deadline = Deadline.inMillis(schemaBudgetMillis);
+        String latestTag = schemaDownloader.getLatestTag(SchemaDownloader.TAG_URL, deadline);
         String schemaURLWithLatestTag = schemaDownloader.getCallhomeSchemaURL().replace("{tag}", latestTag);
-        String schemaContent = schemaDownloader.loadSchemaFromGitHub(schemaURLWithLatestTag);
+        String schemaContent = schemaDownloader.loadSchemaFromGitHub(schemaURLWithLatestTag, deadline);
         return validateJsonUsingSchema(schemaContent, jsonPayload);
     }
 
@@ -0,0 +1,219 @@
+package uk.ac.ebi.eva.submission.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.ac.ebi.eva.submission.entity.OutboxEmail;
+import uk.ac.ebi.eva.submission.model.OutboxEmailStatus;
+import uk.ac.ebi.eva.submission.repository.OutboxEmailRepository;
+import uk.ac.ebi.eva.submission.util.MailSender;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbox for the notification emails. Emails are stored in the transaction of the change they notify about, so they
+ * are only sent if the change is committed and are not lost if the mail server is down or the service restarts.
+ * A background dispatcher sends them in batches over a single connection to the mail server, and retries the ones
+ * that fail with an exponential backoff until they have been tried maxAttempts times. Each batch is claimed in a short
+ * transaction before it is sent, so that no lock is held while talking to the mail server; emails claimed by an
+ * instance that stops before recording the outcome are sent again once the claim times out.
+ * Metrics: email.outbox.pending (emails waiting to be sent) and email.outbox.emails (tagged with the result).
+ */
+@Service
+public class EmailOutboxService {
+
+    public static final String PENDING_METRIC = "email.outbox.pending";
+    public static final String EMAILS_METRIC = "email.outbox.emails";
+
+    private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+
+    private final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final OutboxEmailRepository outboxEmailRepository;
+
+    private final MailSender mailSender;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicLong pendingEmails = new AtomicLong();
+
+    private final Counter sentEmails;
+
+    private final Counter retriedEmails;
+
+    private final Counter failedEmails;
+
+    @Value("${eva.email.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${eva.email.outbox.batchSize:50}")
+    private int batchSize;
+
+    @Value("${eva.email.outbox.maxAttempts:10}")
+    private int maxAttempts;
+
+    @Value("${eva.email.outbox.retryDelaySeconds:30}")
+    private long retryDelaySeconds;
+
+    // Claimed emails whose outcome has not been recorded after this long are sent again
+    @Value("${eva.email.outbox.claimTimeoutSeconds:300}")
+    private long claimTimeoutSeconds;
+
+    public EmailOutboxService(OutboxEmailRepository outboxEmailRepository, MailSender mailSender,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.outboxEmailRepository = outboxEmailRepository;
+        this.mailSender = mailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sentEmails = meterRegistry.counter(EMAILS_METRIC, "result", "sent");
+        this.retriedEmails = meterRegistry.counter(EMAILS_METRIC, "result", "retried");
+        this.failedEmails = meterRegistry.counter(EMAILS_METRIC, "result", "failed");
+        meterRegistry.gauge(PENDING_METRIC, Collections.emptyList(), pendingEmails, AtomicLong::get);
+    }
+
+    /**
+     * Stores the email to be sent once the current transaction, if any, is committed.
+     */
+    public void queueEmail(String from, String to, List<String> ccList, String subject, String body) {
+        OutboxEmail email = new OutboxEmail();
+        email.setFromAddress(from);
+        email.setToAddress(to);
+        if (ccList != null && !ccList.isEmpty()) {
+            ArrayNode ccAddresses = objectMapper.createArrayNode();
+            ccList.forEach(ccAddresses::add);
+            email.setCcAddresses(ccAddresses);
+        }
+        email.setSubject(subject);
+        email.setBody(body);
+        email.setStatus(OutboxEmailStatus.PENDING.toString());
+        email.setAttempts(0);
+        email.setCreatedTime(LocalDateTime.now());
+        email.setNextAttemptTime(email.getCreatedTime());
+        outboxEmailRepository.save(email);
+    }
+
+    @Scheduled(initialDelayString = "${eva.email.outbox.dispatchDelayMs:5000}",
+            fixedDelayString = "${eva.email.outbox.dispatchDelayMs:5000}")
+    public void dispatchScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            dispatchPendingEmails();
+        } catch (RuntimeException e) {
+            logger.error("Error while sending queued emails", e);
+        }
+    }
+
+    /**
+     * Sends the emails that are due, one batch after another, until none is left.
+     */
+    public void dispatchPendingEmails() {
+        while (sendBatch(transactionTemplate.execute(status -> claimBatch()))) {
+            logger.debug("Sending the next batch of queued emails");
+        }
+        pendingEmails.set(outboxEmailRepository.countByStatus(OutboxEmailStatus.PENDING.toString()));
+    }
+
+    /**
+     * Claims a batch of the emails that are due by postponing their next attempt, so that other instances skip them
+     * once the transaction is committed.
+     */
+    private List<OutboxEmail> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEmail> emails = outboxEmailRepository.lockEmailsDue(OutboxEmailStatus.PENDING.toString(), now,
+                batchSize);
+        if (!emails.isEmpty()) {
+            emails.forEach(email -> email.setNextAttemptTime(now.plusSeconds(claimTimeoutSeconds)));
+            outboxEmailRepository.saveAll(emails);
+        }
+        return emails;
+    }
+
+    /**
+     * Sends a batch of claimed emails and records the outcome, returning whether more emails may be due.
+     */
+    private boolean sendBatch(List<OutboxEmail> emails) {
+        if (emails == null || emails.isEmpty()) {
+            return false;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<MimeMessage, OutboxEmail> emailsByMessage = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>();
+        for (OutboxEmail email : emails) {
+            try {
+                MimeMessage message = mailSender.createEmail(email.getFromAddress(), email.getToAddress(),
+                        getCcList(email), email.getSubject(), email.getBody());
+                emailsByMessage.put(message, email);
+                messages.add(message);
+            } catch (MessagingException e) {
+                // the email itself is invalid, sending it again would not help
+                markFailed(email, e, now, true);
+            }
+        }
+
+        Map<MimeMessage, Exception> failedMessages = messages.isEmpty()
+                ? Collections.emptyMap() : mailSender.sendEmails(messages);
+        for (MimeMessage message : messages) {
+            OutboxEmail email = emailsByMessage.get(message);
+            Exception failure = failedMessages.get(message);
+            if (failure == null) {
+                email.setStatus(OutboxEmailStatus.SENT.toString());
+                email.setAttempts(email.getAttempts() + 1);
+                email.setSentTime(now);
+                sentEmails.increment();
+            } else {
+                markFailed(email, failure, now, false);
+            }
+        }
+        outboxEmailRepository.saveAll(emails);
+        if (!failedMessages.isEmpty()) {
+            logger.warn("Could not send {} of {} emails, they will be retried", failedMessages.size(), emails.size());
+        }
+        // Stop after a batch with failures, the mail server is likely to be down
+        return emails.size() == batchSize && failedMessages.isEmpty();
+    }
+
+    private void markFailed(OutboxEmail email, Exception failure, LocalDateTime now, boolean permanent) {
+        int attempts = email.getAttempts() + 1;
+        email.setAttempts(attempts);
+        email.setLastError(failure.toString());
+        if (permanent || attempts >= maxAttempts) {
+            logger.error("Giving up on email {} to {} after {} attempts", email.getId(), email.getToAddress(),
+                    attempts, failure);
+            email.setStatus(OutboxEmailStatus.FAILED.toString());
+            failedEmails.increment();
+        } else {
+            long delaySeconds = Math.min(MAX_RETRY_DELAY_SECONDS,
+                    retryDelaySeconds << Math.min(attempts - 1, 20));
+            email.setNextAttemptTime(now.plusSeconds(delaySeconds));
+            retriedEmails.increment();
+        }
+    }
+
+    private List<String> getCcList(OutboxEmail email) {
+        List<String> ccList = new ArrayList<>();
+        if (email.getCcAddresses() != null) {
+            email.getCcAddresses().forEach(ccAddress -> ccList.add(ccAddress.asText()));
+        }
+        return ccList;
+    }
+}
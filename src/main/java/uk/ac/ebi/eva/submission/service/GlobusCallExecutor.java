@@ -0,0 +1,248 @@
+package uk.ac.ebi.eva.submission.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import uk.ac.ebi.eva.submission.exception.GlobusUnavailableException;
+import uk.ac.ebi.eva.submission.util.ThreadPools;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Runs calls to the Globus Transfer API on a dedicated, bounded pool of threads, so that a slow Globus can only hold up
+ * these threads and not the ones serving the rest of the web service.
+ * A circuit breaker stops sending calls after repeated failures: calls then fail straight away with a
+ * {@link GlobusUnavailableException} until a single trial call shows that Globus has recovered.
+ * Metrics: globus.calls (tagged with the result), globus.circuit.transitions (tagged with the new state) and
+ * globus.circuit.state (0 closed, 1 open, 2 half-open).
+ */
+@Service
+public class GlobusCallExecutor implements DisposableBean {
+
+    public static final String CALLS_METRIC = "globus.calls";
+    public static final String TRANSITIONS_METRIC = "globus.circuit.transitions";
+    public static final String STATE_METRIC = "globus.circuit.state";
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(GlobusCallExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+
+    private final long callTimeoutMillis;
+
+    private final int failureThreshold;
+
+    private final long openDurationMillis;
+
+    private final LongSupplier clock;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private final AtomicLong openedAt = new AtomicLong();
+
+    // Only one trial call is let through while half-open
+    private final AtomicBoolean trialCallInProgress = new AtomicBoolean();
+
+    private final Counter successfulCalls;
+
+    private final Counter failedCalls;
+
+    private final Counter rejectedCalls;
+
+    private final Counter openTransitions;
+
+    private final Counter halfOpenTransitions;
+
+    private final Counter closedTransitions;
+
+    public GlobusCallExecutor(@Value("${globus.bulkhead.threads:10}") int threads,
+                              @Value("${globus.bulkhead.queueSize:20}") int queueSize,
+                              @Value("${globus.bulkhead.callTimeoutMs:45000}") long callTimeoutMillis,
+                              @Value("${globus.circuitBreaker.failureThreshold:5}") int failureThreshold,
+                              @Value("${globus.circuitBreaker.openDurationMs:30000}") long openDurationMillis,
+                              MeterRegistry meterRegistry) {
+        this(threads, queueSize, callTimeoutMillis, failureThreshold, openDurationMillis, meterRegistry,
+                System::currentTimeMillis);
+    }
+
+    public GlobusCallExecutor(int threads, int queueSize, long callTimeoutMillis, int failureThreshold,
+                              long openDurationMillis, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.executor = ThreadPools.newBoundedThreadPool("globus-call", threads, queueSize,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.callTimeoutMillis = callTimeoutMillis;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.clock = clock;
+        this.successfulCalls = meterRegistry.counter(CALLS_METRIC, "result", "success");
+        this.failedCalls = meterRegistry.counter(CALLS_METRIC, "result", "failure");
+        this.rejectedCalls = meterRegistry.counter(CALLS_METRIC, "result", "rejected");
+        this.openTransitions = meterRegistry.counter(TRANSITIONS_METRIC, "state", "open");
+        this.halfOpenTransitions = meterRegistry.counter(TRANSITIONS_METRIC, "state", "half_open");
+        this.closedTransitions = meterRegistry.counter(TRANSITIONS_METRIC, "state", "closed");
+        meterRegistry.gauge(STATE_METRIC, Collections.emptyList(), state, s -> s.get().ordinal());
+    }
+
+    /**
+     * Runs the call, waiting for its result. Exceptions thrown by the call are rethrown as they are.
+     * Timeouts, connection errors and 5xx responses not accepted by {@code isExpectedError} count as failures of
+     * Globus.
+     */
+    public <T> T call(Supplier<T> call, Predicate<RuntimeException> isExpectedError) {
+        return call(call, isExpectedError, callTimeoutMillis);
+    }
+
+    /**
+     * Same as {@link #call(Supplier, Predicate)} with a timeout of its own, for calls made of several requests to
+     * Globus that only take one place in the pool.
+     */
+    public <T> T call(Supplier<T> call, Predicate<RuntimeException> isExpectedError, long timeoutMillis) {
+        boolean trialCall = acquirePermission();
+        Future<T> future;
+        try {
+            future = executor.submit(call::get);
+        } catch (RejectedExecutionException e) {
+            releaseTrialCall(trialCall);
+            rejectedCalls.increment();
+            throw new GlobusUnavailableException("Too many requests to Globus in progress, please try again later");
+        }
+        try {
+            T result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            onSuccess(trialCall);
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            onFailure(trialCall);
+            throw new GlobusUnavailableException("Globus did not respond in time, please try again later");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            releaseTrialCall(trialCall);
+            Thread.currentThread().interrupt();
+            throw new GlobusUnavailableException("Interrupted while waiting for Globus");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                RuntimeException exception = (RuntimeException) cause;
+                if (isGlobusFailure(exception) && !isExpectedError.test(exception)) {
+                    onFailure(trialCall);
+                } else {
+                    // Globus answered, even if it was an error
+                    onSuccess(trialCall);
+                }
+                throw exception;
+            }
+            onFailure(trialCall);
+            throw new IllegalStateException("Globus call failed", cause);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    private boolean acquirePermission() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return false;
+        }
+        if (current == State.OPEN) {
+            if (clock.getAsLong() - openedAt.get() < openDurationMillis) {
+                rejectedCalls.increment();
+                throw new GlobusUnavailableException("Globus is currently unavailable, please try again later");
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                logger.info("Sending a trial call to Globus");
+                halfOpenTransitions.increment();
+            }
+        }
+        // Half-open: let a single call through to find out whether Globus has recovered
+        if (!trialCallInProgress.compareAndSet(false, true)) {
+            rejectedCalls.increment();
+            throw new GlobusUnavailableException("Globus is currently unavailable, please try again later");
+        }
+        if (state.get() != State.HALF_OPEN) {
+            // The state changed in the meantime
+            trialCallInProgress.set(false);
+            return acquirePermission();
+        }
+        return true;
+    }
+
+    private void releaseTrialCall(boolean trialCall) {
+        if (trialCall) {
+            trialCallInProgress.set(false);
+        }
+    }
+
+    // Calls let through while the circuit was closed may complete after it opened, only the trial call decides whether
+    // the circuit closes again
+    private void onSuccess(boolean trialCall) {
+        successfulCalls.increment();
+        if (!trialCall) {
+            if (state.get() == State.CLOSED) {
+                consecutiveFailures.set(0);
+            }
+            return;
+        }
+        consecutiveFailures.set(0);
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            closedTransitions.increment();
+            logger.info("Globus calls succeed again, circuit closed");
+        }
+        trialCallInProgress.set(false);
+    }
+
+    private void onFailure(boolean trialCall) {
+        failedCalls.increment();
+        if (trialCall) {
+            open(State.HALF_OPEN);
+            trialCallInProgress.set(false);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State expectedState) {
+        if (state.get() != expectedState) {
+            return;
+        }
+        // Set first, so that no call finds the circuit open with the time it was last opened
+        openedAt.set(clock.getAsLong());
+        if (state.compareAndSet(expectedState, State.OPEN)) {
+            openTransitions.increment();
+            logger.warn("Globus calls keep failing, circuit opened for {} ms", openDurationMillis);
+        }
+    }
+
+    private boolean isGlobusFailure(RuntimeException exception) {
+        return exception instanceof ResourceAccessException || exception instanceof HttpServerErrorException;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
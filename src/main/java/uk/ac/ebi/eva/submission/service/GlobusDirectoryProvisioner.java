@@ -1,20 +1,42 @@
 package uk.ac.ebi.eva.submission.service;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
+import uk.ac.ebi.eva.submission.exception.GlobusUnavailableException;
+import uk.ac.ebi.eva.submission.util.ThreadPools;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 
 @Service
-public class GlobusDirectoryProvisioner {
+public class GlobusDirectoryProvisioner implements DisposableBean {
 
     private final Logger logger = LoggerFactory.getLogger(GlobusDirectoryProvisioner.class);
 
@@ -22,6 +44,26 @@ public class GlobusDirectoryProvisioner {
 
     private final RestTemplate restTemplate;
 
+    private final GlobusCallExecutor globusCallExecutor;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String GLOBUS_FILES_TAG = "DATA";
+    private static final String GLOBUS_FILE_NAME = "name";
+    private static final String GLOBUS_FILE_SIZE = "size";
+    private static final String GLOBUS_FILE_TYPE = "type";
+    private static final String GLOBUS_DIRECTORY_TYPE = "dir";
+    private static final String GLOBUS_HAS_NEXT_PAGE = "has_next_page";
+
+    // Maximum number of entries requested per ls call
+    private static final int LISTING_PAGE_SIZE = 1000;
+
+    // Used to list the subdirectories of a submission in parallel, null when they are listed one after the other
+    private final ExecutorService listingExecutor;
+
+    // A listing takes a single place in the pool of Globus calls, however many pages and directories it reads
+    private final long listingTimeoutMillis;
+
     @Value("${globus.submission.endpointId}")
     private String endpointId;
 
@@ -29,11 +71,27 @@ public class GlobusDirectoryProvisioner {
     private String transferApiBaseUrl;
 
 
-    public GlobusDirectoryProvisioner(GlobusTokenRefreshService globusTokenRefreshService, RestTemplate restTemplate) {
+    public GlobusDirectoryProvisioner(GlobusTokenRefreshService globusTokenRefreshService,
+                                      @Qualifier("globusRestTemplate") RestTemplate restTemplate,
+                                      GlobusCallExecutor globusCallExecutor,
+                                      @Value("${globus.listing.parallelism:4}") int listingParallelism,
+                                      @Value("${globus.listing.timeoutMs:300000}") long listingTimeoutMillis) {
         this.globusTokenRefreshService = globusTokenRefreshService;
         this.restTemplate = restTemplate;
+        this.globusCallExecutor = globusCallExecutor;
+        if (listingParallelism > 1) {
+            this.listingExecutor = Executors.newFixedThreadPool(listingParallelism,
+                    ThreadPools.daemonThreadFactory("globus-listing"));
+        } else {
+            this.listingExecutor = null;
+        }
+        this.listingTimeoutMillis = listingTimeoutMillis;
     }
 
+    /**
+     * Creates the given directory on the Globus endpoint, along with its parents. Each directory is created with a
+     * single mkdir call, directories that already exist are left as they are.
+     */
     public void createSubmissionDirectory(String directoryToCreate) {
         String fileSeparator = System.getProperty("file.separator");
         String[] directoriesToCreate = directoryToCreate.split(Pattern.quote(fileSeparator));
@@ -46,20 +104,21 @@ public class GlobusDirectoryProvisioner {
     }
 
     private void createDirectory(String directoryToCreate) {
-        HttpHeaders headers = getGlobusAccessHeaders();
-
-        if (this.alreadyExists(headers, directoryToCreate)) {
-            return;
-        }
-
         String transferApiUrl = String.format("%s/%s/mkdir", transferApiBaseUrl, endpointId);
         // Create the request body with the endpoint ID and the path for the new directory
         String requestBody = String.format("{\"DATA_TYPE\": \"mkdir\", \"path\": \"/%s\"}", directoryToCreate);
 
-        HttpEntity<String> requestEntity = new HttpEntity<>(requestBody, headers);
-
-        ResponseEntity<String> response = restTemplate.exchange(transferApiUrl, HttpMethod.POST, requestEntity,
-                                                                String.class);
+        ResponseEntity<String> response;
+        try {
+            response = execute(transferApiUrl, HttpMethod.POST, requestBody,
+                    restTemplate.responseEntityExtractor(String.class));
+        } catch (HttpStatusCodeException e) {
+            if (isAlreadyExistsError(e)) {
+                logger.debug("Directory '{}' already exists", directoryToCreate);
+                return;
+            }
+            throw e;
+        }
 
         // Check the response status and handle errors if necessary
         if (response.getStatusCode().is2xxSuccessful()) {
@@ -69,34 +128,185 @@ public class GlobusDirectoryProvisioner {
         }
     }
 
-    private boolean alreadyExists(HttpHeaders headers, String directoryName) {
-        HttpEntity<String> entity = new HttpEntity<>("", headers);
+    private boolean isAlreadyExistsError(HttpStatusCodeException e) {
+        // Globus reports existing directories with a 502 and the code ExternalError.MkdirFailed.Exists
         try {
-            restTemplate.exchange(
-                    transferApiBaseUrl + "/" + endpointId + "/ls?path=" + directoryName,
-                    HttpMethod.GET, entity, String.class);
-            return true;
-        } catch (HttpClientErrorException ex) {
+            String code = new ObjectMapper().readTree(e.getResponseBodyAsString()).path("code").asText();
+            return code.endsWith(".Exists");
+        } catch (JsonProcessingException ex) {
             return false;
         }
     }
 
-    public String listSubmittedFiles(String submissionDirPath) {
-        HttpEntity<String> requestEntity = new HttpEntity<>(getGlobusAccessHeaders());
-        String transferApiUrl = String.format("%s/%s/ls?path=%s", transferApiBaseUrl, endpointId, submissionDirPath);
-        ResponseEntity<String> response = restTemplate.exchange(transferApiUrl, HttpMethod.GET, requestEntity, String.class);
+    /**
+     * Lists the files uploaded to a submission directory, including the files in its subdirectories, as a map from
+     * file name to size in bytes. Files are listed by name only, as that is how eva-sub-cli refers to them.
+     * Every page of the listing is read, and the responses are parsed as they are received rather than held in memory.
+     * Returns null if Globus rejected the listing, e.g. because the directory does not exist. Server errors are
+     * rethrown, and an {@link UncheckedIOException} is thrown if a listing can't be parsed.
+     */
+    public Map<String, Long> listSubmittedFileSizes(String submissionDirPath) {
+        return globusCallExecutor.call(() -> listFileSizes(submissionDirPath), e -> false, listingTimeoutMillis);
+    }
 
-        if (response.getStatusCode().is2xxSuccessful()) {
-            logger.info("Directory {} listed successfully", submissionDirPath);
-            return response.getBody();
+    private Map<String, Long> listFileSizes(String submissionDirPath) {
+        Map<String, Long> fileSizes = new HashMap<>();
+        List<String> directoriesToList = new ArrayList<>();
+        directoriesToList.add(submissionDirPath);
+        while (!directoriesToList.isEmpty()) {
+            // Directories of the same depth are listed together, results are merged in order so that a file in a
+            // directory closer to the submission directory takes precedence over one with the same name further down
+            List<DirectoryListing> listings = listDirectories(directoriesToList);
+            directoriesToList = new ArrayList<>();
+            for (DirectoryListing listing : listings) {
+                if (listing == null) {
+                    return null;
+                }
+                listing.fileSizes.forEach(fileSizes::putIfAbsent);
+                directoriesToList.addAll(listing.subdirectories);
+            }
+        }
+        logger.info("Directory {} listed successfully, {} files found", submissionDirPath, fileSizes.size());
+        return fileSizes;
+    }
+
+    private List<DirectoryListing> listDirectories(List<String> directories) {
+        List<DirectoryListing> listings = new ArrayList<>();
+        if (listingExecutor == null || directories.size() == 1) {
+            for (String directory : directories) {
+                listings.add(listDirectory(directory));
+            }
+            return listings;
+        }
+        List<CompletableFuture<DirectoryListing>> futures = new ArrayList<>();
+        for (String directory : directories) {
+            futures.add(CompletableFuture.supplyAsync(() -> listDirectory(directory), listingExecutor));
+        }
+        try {
+            for (CompletableFuture<DirectoryListing> future : futures) {
+                listings.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            // The listing timed out
+            futures.forEach(future -> future.cancel(false));
+            Thread.currentThread().interrupt();
+            throw new GlobusUnavailableException("Interrupted while listing directories on Globus");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Could not list directories on Globus", e.getCause());
+        }
+        return listings;
+    }
+
+    private DirectoryListing listDirectory(String directory) {
+        DirectoryListing listing = new DirectoryListing();
+        int offset = 0;
+        boolean hasNextPage = true;
+        while (hasNextPage) {
+            String transferApiUrl = String.format("%s/%s/ls?path=%s&offset=%d&limit=%d", transferApiBaseUrl,
+                    endpointId, directory, offset, LISTING_PAGE_SIZE);
+            int pageOffset = offset;
+            int entriesRead;
+            try {
+                entriesRead = exchange(transferApiUrl, HttpMethod.GET, null,
+                        response -> readListingPage(response, directory, pageOffset, listing));
+            } catch (HttpClientErrorException e) {
+                logger.error("Failed to retrieve directory '{}': {}", directory, e.getStatusCode());
+                return null;
+            }
+            // Globus sets has_next_page on the listing, stop on an empty page in case it is missing
+            hasNextPage = listing.hasNextPage && entriesRead > 0;
+            offset += entriesRead;
+        }
+        return listing;
+    }
+
+    private Integer readListingPage(ClientHttpResponse response, String directory, int offset,
+                                    DirectoryListing listing) throws IOException {
+        listing.hasNextPage = false;
+        int entriesRead = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(response.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new UncheckedIOException(new IOException("Listing of directory " + directory + " at offset "
+                        + offset + " is not a JSON object"));
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (GLOBUS_FILES_TAG.equals(fieldName) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readListingEntry(parser, directory, listing);
+                        entriesRead++;
+                    }
+                } else if (GLOBUS_HAS_NEXT_PAGE.equals(fieldName)) {
+                    listing.hasNextPage = parser.getValueAsBoolean();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return entriesRead;
+    }
+
+    private void readListingEntry(JsonParser parser, String directory, DirectoryListing listing) throws IOException {
+        String name = null;
+        String type = null;
+        long size = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case GLOBUS_FILE_NAME:
+                    name = parser.getValueAsString();
+                    break;
+                case GLOBUS_FILE_TYPE:
+                    type = parser.getValueAsString();
+                    break;
+                case GLOBUS_FILE_SIZE:
+                    size = parser.getValueAsLong();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (name == null) {
+            return;
+        }
+        if (GLOBUS_DIRECTORY_TYPE.equals(type)) {
+            listing.subdirectories.add(directory + "/" + name);
         } else {
-            logger.error("Failed to retrieve directory '{}': {}", submissionDirPath, response.getStatusCode());
-            return "";
+            listing.fileSizes.putIfAbsent(name, size);
         }
     }
 
-    private HttpHeaders getGlobusAccessHeaders() {
+    private <T> T execute(String url, HttpMethod method, String requestBody, ResponseExtractor<T> responseExtractor) {
+        return globusCallExecutor.call(() -> exchange(url, method, requestBody, responseExtractor),
+                e -> e instanceof HttpStatusCodeException && isAlreadyExistsError((HttpStatusCodeException) e));
+    }
+
+    private <T> T exchange(String url, HttpMethod method, String requestBody, ResponseExtractor<T> responseExtractor) {
         String accessToken = globusTokenRefreshService.getAccessToken();
+        try {
+            return exchange(url, method, requestBody, accessToken, responseExtractor);
+        } catch (HttpClientErrorException.Unauthorized e) {
+            // The token was revoked before it expired, try once more with a new one
+            globusTokenRefreshService.invalidateAccessToken(accessToken);
+            return exchange(url, method, requestBody, globusTokenRefreshService.getAccessToken(), responseExtractor);
+        }
+    }
+
+    private <T> T exchange(String url, HttpMethod method, String requestBody, String accessToken,
+                           ResponseExtractor<T> responseExtractor) {
+        HttpEntity<String> requestEntity = new HttpEntity<>(requestBody, getGlobusAccessHeaders(accessToken));
+        return restTemplate.execute(url, method, restTemplate.httpEntityCallback(requestEntity), responseExtractor);
+    }
+
+    private HttpHeaders getGlobusAccessHeaders(String accessToken) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + accessToken);
         headers.set("Accept", "application/json");
@@ -105,5 +315,19 @@ public class GlobusDirectoryProvisioner {
         return headers;
     }
 
+    @Override
+    public void destroy() {
+        if (listingExecutor != null) {
+            listingExecutor.shutdownNow();
+        }
+    }
+
+    private static class DirectoryListing {
 
+        private final Map<String, Long> fileSizes = new HashMap<>();
+
+        private final List<String> subdirectories = new ArrayList<>();
+
+        private boolean hasNextPage;
+    }
 }
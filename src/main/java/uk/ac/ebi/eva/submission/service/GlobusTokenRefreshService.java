@@ -2,6 +2,9 @@ package uk.ac.ebi.eva.submission.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -14,12 +17,30 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.util.Objects;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the access token used for Globus calls. Reading the token never blocks while it is valid: it is refreshed in
+ * the background before it expires, and callers only wait when there is no valid token at all, in which case they all
+ * share a single refresh request.
+ */
 @Service
 public class GlobusTokenRefreshService {
+
+    private final Logger logger = LoggerFactory.getLogger(GlobusTokenRefreshService.class);
+
+    // Default expiration for Globus tokens is 2 days i.e., 48 hours
+    private static final long DEFAULT_EXPIRES_IN_SECONDS = 48 * 60 * 60;
+
+    // Out of abundance of caution, we begin the token refresh process 1 hour ahead of expiry
+    private static final long REFRESH_MARGIN_MS = 60 * 60 * 1000;
+
+    private static final long REFRESH_CHECK_INTERVAL_MS = 60 * 1000;
+
     @Value("${globus.clientId}")
     private String clientId;
 
@@ -32,39 +53,88 @@ public class GlobusTokenRefreshService {
     @Value("${globus.token.endpoint}")
     private String tokenEndpoint;
 
-    private String accessToken;
+    private final RestTemplate restTemplate;
+
+    private final AtomicReference<AccessToken> accessToken = new AtomicReference<>();
 
-    // Support concurrent reads that are albeit locked by writes
-    private final ReadWriteLock accessTokenLock = new ReentrantReadWriteLock();
+    private final AtomicReference<CompletableFuture<AccessToken>> inFlightRefresh = new AtomicReference<>();
+
+    public GlobusTokenRefreshService(@Qualifier("globusRestTemplate") RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
 
     public String getAccessToken() {
-        accessTokenLock.readLock().lock();
-        try {
-            if(Objects.isNull(accessToken) || accessToken.isEmpty()) {
-                refreshToken();
-            }
-            return accessToken;
-        } finally {
-            accessTokenLock.readLock().unlock();
+        AccessToken token = accessToken.get();
+        if (Objects.isNull(token) || token.isExpired(System.currentTimeMillis())) {
+            token = refresh();
         }
+        return token.value;
     }
 
-    private void setAccessToken(String newAccessToken) {
-        accessTokenLock.writeLock().lock();
-        try {
-            accessToken = newAccessToken;
-        } finally {
-            accessTokenLock.writeLock().unlock();
+    /**
+     * Drops the given token if it is still the current one, e.g. after Globus rejected it, so that the next call to
+     * {@link #getAccessToken()} gets a new one.
+     */
+    public void invalidateAccessToken(String rejectedAccessToken) {
+        AccessToken token = accessToken.get();
+        if (token != null && token.value.equals(rejectedAccessToken) && accessToken.compareAndSet(token, null)) {
+            logger.warn("Globus access token was rejected, a new one will be requested");
         }
     }
 
-    // Default expiration for Globus tokens is 2 days i.e., 48 hours
-    // Out of abundance of caution, we begin the token refresh process 1 hour ahead of this
-    @Scheduled(fixedDelay = 47 * 60 * 60 * 1000)
     public void refreshToken() {
-        // Create a RestTemplate instance
-        RestTemplate restTemplate = new RestTemplate();
+        refresh();
+    }
 
+    @Scheduled(fixedDelay = REFRESH_CHECK_INTERVAL_MS)
+    public void refreshTokenIfExpiringSoon() {
+        AccessToken token = accessToken.get();
+        if (token == null || !token.isDueForRefresh(System.currentTimeMillis())) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // The current token is still used until it expires, the refresh is tried again on the next check
+            logger.error("Could not refresh Globus access token", e);
+        }
+    }
+
+    private AccessToken refresh() {
+        while (true) {
+            CompletableFuture<AccessToken> existingRefresh = inFlightRefresh.get();
+            if (existingRefresh != null) {
+                // Another caller is already refreshing the token, wait for its result
+                try {
+                    return existingRefresh.join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+            CompletableFuture<AccessToken> refresh = new CompletableFuture<>();
+            if (inFlightRefresh.compareAndSet(null, refresh)) {
+                try {
+                    AccessToken token = requestAccessToken();
+                    accessToken.set(token);
+                    refresh.complete(token);
+                    return token;
+                } catch (Throwable e) {
+                    refresh.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlightRefresh.compareAndSet(refresh, null);
+                }
+            }
+        }
+    }
+
+    private AccessToken requestAccessToken() {
         // Prepare the headers
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
@@ -79,16 +149,46 @@ public class GlobusTokenRefreshService {
         HttpEntity<MultiValueMap<String, String>> requestEntity = new HttpEntity<>(requestBody, headers);
 
         // Make the POST request to the token endpoint
+        long requestTime = System.currentTimeMillis();
         ResponseEntity<String> response = restTemplate.exchange(tokenEndpoint, HttpMethod.POST, requestEntity, String.class);
 
         // Parse the response JSON to extract the new access token
+        JsonNode responseJson;
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode responseJson = objectMapper.readTree(response.getBody());
-            setAccessToken(responseJson.get("access_token").asText());
-        } catch (Exception e) {
-            // Handle errors while parsing the response JSON
-            e.printStackTrace();
+            responseJson = new ObjectMapper().readTree(response.getBody());
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Could not parse Globus token response", e);
+        }
+        String newAccessToken = responseJson.path("access_token").asText("");
+        if (newAccessToken.isEmpty()) {
+            throw new IllegalStateException("Globus token response does not contain an access token");
+        }
+        long expiresInSeconds = responseJson.path("expires_in").asLong(DEFAULT_EXPIRES_IN_SECONDS);
+        logger.info("Obtained Globus access token expiring in {} seconds", expiresInSeconds);
+        return new AccessToken(newAccessToken, requestTime, expiresInSeconds * 1000);
+    }
+
+    private static final class AccessToken {
+
+        private final String value;
+
+        private final long expiresAtMillis;
+
+        private final long refreshAtMillis;
+
+        private AccessToken(String value, long issuedAtMillis, long lifetimeMillis) {
+            this.value = value;
+            this.expiresAtMillis = issuedAtMillis + lifetimeMillis;
+            // Short-lived tokens are refreshed half way through their lifetime
+            this.refreshAtMillis = expiresAtMillis - Math.min(REFRESH_MARGIN_MS, lifetimeMillis / 2);
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+
+        private boolean isDueForRefresh(long now) {
+            return now >= refreshAtMillis;
         }
     }
 }
@@ -1,10 +1,13 @@
 package uk.ac.ebi.eva.submission.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -18,12 +21,22 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
 import uk.ac.ebi.eva.submission.model.LsriUserInfo;
+import uk.ac.ebi.eva.submission.util.JwtUtils;
+import uk.ac.ebi.eva.submission.util.ThreadPools;
+import uk.ac.ebi.eva.submission.util.Utils;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 
 @Service
-public class LsriTokenService {
+public class LsriTokenService implements DisposableBean {
     @Value("${lsri.clientId}")
     private String lsriClientId;
 
@@ -36,30 +49,62 @@ public class LsriTokenService {
     @Value("${lsri.token.url}")
     private String tokenUrl;
 
+    @Value("${lsri.token.issuer:}")
+    private String tokenIssuer;
 
     private final Logger logger = LoggerFactory.getLogger(LsriTokenService.class);
 
+    private static final ObjectReader USER_INFO_READER = new ObjectMapper().readerFor(LsriUserInfo.class);
+
+    private final RestTemplate restTemplate;
+
+    private final Map<String, PendingDeviceCode> pendingDeviceCodes = new ConcurrentHashMap<>();
+
+    private final ScheduledThreadPoolExecutor pollingExecutor;
+
+    private final long pollingIntervalMs;
+
+    // One permit per device code being polled, taken before the code is registered and given back once it is removed
+    private final Semaphore pendingDeviceCodePermits;
+
+    private final int maxPollingTimeInSeconds;
+
+    public LsriTokenService(@Qualifier("lsriRestTemplate") RestTemplate restTemplate,
+                            @Value("${lsri.polling.threads:2}") int pollingThreads,
+                            @Value("${lsri.polling.intervalMs:5000}") long pollingIntervalMs,
+                            @Value("${lsri.deviceCode.maxPending:100}") int maxPendingDeviceCodes,
+                            @Value("${lsri.deviceCode.maxExpiresInSeconds:1800}") int maxPollingTimeInSeconds) {
+        this.restTemplate = restTemplate;
+        this.pollingExecutor = ThreadPools.newScheduledThreadPool("lsri-polling", pollingThreads);
+        this.pollingIntervalMs = pollingIntervalMs;
+        this.pendingDeviceCodePermits = new Semaphore(maxPendingDeviceCodes);
+        this.maxPollingTimeInSeconds = maxPollingTimeInSeconds;
+    }
+
+    public boolean isLsriToken(JsonNode claims) {
+        String issuer = Utils.getOptionalSetting(tokenIssuer);
+        if (!issuer.isEmpty() && issuer.equals(claims.path("iss").asText())) {
+            return true;
+        }
+        // tokens obtained through our device flow are issued to our client
+        return !lsriClientId.isEmpty() && JwtUtils.hasAudience(claims, lsriClientId);
+    }
+
     public SubmissionAccount getLsriUserAccountFromToken(String userToken) {
         logger.debug("Attempting LSRI token validation");
-        try {
-            // The only definitive attribute we can expect from querying userInfo is the "sub" attribute
-            // See https://connect2id.com/products/server/docs/api/userinfo#claims
-            String restJsonResponse = TokenServiceUtil.getUserInfoRestResponse(userToken, this.userInfoUrl);
-            if (restJsonResponse == null) {
-                logger.warn("LSRI token validation failed: no response from user info endpoint");
-                return null;
-            }
-            return createLSRIUserAccount(restJsonResponse);
-        } catch (Exception e) {
-            logger.warn("LSRI token validation failed: {}", e.getMessage());
+        // The only definitive attribute we can expect from querying userInfo is the "sub" attribute
+        // See https://connect2id.com/products/server/docs/api/userinfo#claims
+        // Throws an UpstreamUnavailableException if the user info endpoint can't tell whether the token is valid
+        LsriUserInfo lsriUserInfo = TokenServiceUtil.getUserInfo(restTemplate, userToken, this.userInfoUrl,
+                USER_INFO_READER);
+        if (lsriUserInfo == null) {
+            logger.warn("LSRI token validation failed: token rejected by user info endpoint");
             return null;
         }
+        return createLSRIUserAccount(lsriUserInfo);
     }
 
-    public SubmissionAccount createLSRIUserAccount(String jsonResponse) {
-        // convert json response to LSRIUserInfo object
-        LsriUserInfo lsriUserInfo = new Gson().fromJson(jsonResponse, LsriUserInfo.class);
-
+    public SubmissionAccount createLSRIUserAccount(LsriUserInfo lsriUserInfo) {
         String userId = lsriUserInfo.getUserId();
         String firstName = lsriUserInfo.getFirstName() != null ? lsriUserInfo.getFirstName() : "";
         String lastName = lsriUserInfo.getLastName() != null ? lsriUserInfo.getLastName() : "";
@@ -69,55 +114,154 @@ public class LsriTokenService {
 
     }
 
-    public String pollForToken(String deviceCode, int maxPollingTimeInSeconds) {
-        int pollingIntervalInSeconds = 5;
-        long startTime = System.currentTimeMillis();
-
-        while (System.currentTimeMillis() - startTime < maxPollingTimeInSeconds * 1000L) {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-            headers.setBasicAuth(this.lsriClientId, this.lsriClientSecret);
-
-            MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
-            map.add("scope", "openid");
-            map.add("device_code", deviceCode);
-            map.add("grant_type", "urn:ietf:params:oauth:grant-type:device_code");
-
-            HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(map, headers);
-            RestTemplate restTemplate = new RestTemplate();
-            ResponseEntity<String> response = null;
-            try {
-                response = restTemplate.postForEntity(this.tokenUrl, request, String.class);
-            } catch (HttpClientErrorException ex) {
-                int statusCode = ex.getRawStatusCode();
-                if (statusCode == HttpStatus.BAD_REQUEST.value()) {
-                    // The user has not yet approved the access request
-                    logger.info("Waiting for user approval...");
-                } else {
-                    // An error occurred
-                    logger.error("An error occurred: " + ex.getResponseBodyAsString());
-                    return null;
-                }
-            }
+    /**
+     * Registers a device code to be polled until the user approves the access request, the request is denied or the
+     * code expires. The returned future completes with the access token, or with null if no token could be obtained.
+     * Device codes are polled on a dedicated scheduler so that no request thread is held while waiting, and polling
+     * stops after {@link #getPollingTimeInSeconds(int)} at most.
+     * Throws a {@link RejectedExecutionException} if too many device codes are already being polled.
+     */
+    public CompletableFuture<String> pollForTokenAsync(String deviceCode, int maxPollingTimeInSeconds) {
+        // the same device code can only be exchanged once, concurrent requests for it share the result
+        PendingDeviceCode existingDeviceCode = pendingDeviceCodes.get(deviceCode);
+        if (existingDeviceCode != null) {
+            return existingDeviceCode.future;
+        }
+        if (!pendingDeviceCodePermits.tryAcquire()) {
+            throw new RejectedExecutionException("Too many LSRI device codes are being polled");
+        }
+        long deadline = System.currentTimeMillis() + getPollingTimeInSeconds(maxPollingTimeInSeconds) * 1000L;
+        PendingDeviceCode pendingDeviceCode = new PendingDeviceCode(deadline, pollingIntervalMs);
+        existingDeviceCode = pendingDeviceCodes.putIfAbsent(deviceCode, pendingDeviceCode);
+        if (existingDeviceCode != null) {
+            pendingDeviceCodePermits.release();
+            return existingDeviceCode.future;
+        }
+        schedulePoll(deviceCode, pendingDeviceCode);
+        return pendingDeviceCode.future;
+    }
+
+    /**
+     * Returns how long a device code is polled for: its expiration time as given by the client, capped by
+     * lsri.deviceCode.maxExpiresInSeconds.
+     */
+    public int getPollingTimeInSeconds(int codeExpirationTimeInSeconds) {
+        return Math.max(0, Math.min(codeExpirationTimeInSeconds, maxPollingTimeInSeconds));
+    }
+
+    private void schedulePoll(String deviceCode, PendingDeviceCode pendingDeviceCode) {
+        long delayMs = Math.min(pendingDeviceCode.pollingIntervalMs,
+                Math.max(pendingDeviceCode.deadline - System.currentTimeMillis(), 0));
+        try {
+            pollingExecutor.schedule(() -> poll(deviceCode, pendingDeviceCode), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            completePendingDeviceCode(deviceCode, pendingDeviceCode, null);
+        }
+    }
 
-            if (Objects.nonNull(response) && response.getStatusCode() == HttpStatus.OK) {
-                // The user has approved the access request
-                try {
-                    return new ObjectMapper().readTree(response.getBody()).get("access_token").asText();
-                } catch (JsonProcessingException ex) {
-                    ex.printStackTrace();
-                }
+    private void poll(String deviceCode, PendingDeviceCode pendingDeviceCode) {
+        if (System.currentTimeMillis() >= pendingDeviceCode.deadline) {
+            // Stop polling after the maximum polling time
+            logger.error("Polling timed out!");
+            completePendingDeviceCode(deviceCode, pendingDeviceCode, null);
+            return;
+        }
+        try {
+            if (pollForToken(deviceCode, pendingDeviceCode)) {
+                schedulePoll(deviceCode, pendingDeviceCode);
             }
+        } catch (Exception e) {
+            logger.error("An error occurred while polling for token: {}", e.getMessage());
+            completePendingDeviceCode(deviceCode, pendingDeviceCode, null);
+        }
+    }
+
+    // Returns whether the user has not approved or denied the access request yet
+    private boolean pollForToken(String deviceCode, PendingDeviceCode pendingDeviceCode) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        headers.setBasicAuth(this.lsriClientId, this.lsriClientSecret);
+
+        MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
+        map.add("scope", "openid");
+        map.add("device_code", deviceCode);
+        map.add("grant_type", "urn:ietf:params:oauth:grant-type:device_code");
 
-            try {
-                Thread.sleep(pollingIntervalInSeconds * 1000L);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(map, headers);
+        ResponseEntity<String> response;
+        try {
+            response = restTemplate.postForEntity(this.tokenUrl, request, String.class);
+        } catch (HttpClientErrorException ex) {
+            if (ex.getRawStatusCode() != HttpStatus.BAD_REQUEST.value()) {
+                // An error occurred
+                logger.error("An error occurred: " + ex.getResponseBodyAsString());
+                completePendingDeviceCode(deviceCode, pendingDeviceCode, null);
+                return false;
+            }
+            // See https://datatracker.ietf.org/doc/html/rfc8628#section-3.5
+            String error = getErrorCode(ex.getResponseBodyAsString());
+            if ("slow_down".equals(error)) {
+                pendingDeviceCode.pollingIntervalMs += pollingIntervalMs;
+            } else if (!"authorization_pending".equals(error)) {
+                // access_denied, expired_token, invalid_grant for an unknown code, or any other error
+                logger.info("Device code can no longer be used: {}", error);
+                completePendingDeviceCode(deviceCode, pendingDeviceCode, null);
+                return false;
             }
+            // The user has not yet approved the access request
+            logger.info("Waiting for user approval...");
+            return true;
+        }
+
+        if (Objects.isNull(response) || response.getStatusCode() != HttpStatus.OK) {
+            // No token yet, try again later
+            return true;
         }
+        // The user has approved the access request
+        String token = null;
+        try {
+            token = new ObjectMapper().readTree(response.getBody()).get("access_token").asText();
+        } catch (JsonProcessingException ex) {
+            logger.error("Could not read access token from response: {}", ex.getMessage());
+        }
+        completePendingDeviceCode(deviceCode, pendingDeviceCode, token);
+        return false;
+    }
 
-        // Stop polling after the maximum polling time
-        logger.error("Polling timed out!");
-        return null;
+    private String getErrorCode(String responseBody) {
+        try {
+            return new ObjectMapper().readTree(responseBody).path("error").asText();
+        } catch (JsonProcessingException e) {
+            return "";
+        }
+    }
+
+    private void completePendingDeviceCode(String deviceCode, PendingDeviceCode pendingDeviceCode, String token) {
+        if (pendingDeviceCodes.remove(deviceCode, pendingDeviceCode)) {
+            pendingDeviceCodePermits.release();
+        }
+        pendingDeviceCode.future.complete(token);
+    }
+
+    @Override
+    public void destroy() {
+        pollingExecutor.shutdownNow();
+        pendingDeviceCodes.forEach((deviceCode, pendingDeviceCode) ->
+                completePendingDeviceCode(deviceCode, pendingDeviceCode, null));
+    }
+
+    private static class PendingDeviceCode {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private final long deadline;
+
+        // Only updated by the poll in progress, polls of a device code never overlap
+        private long pollingIntervalMs;
+
+        private PendingDeviceCode(long deadline, long pollingIntervalMs) {
+            this.deadline = deadline;
+            this.pollingIntervalMs = pollingIntervalMs;
+        }
     }
 }
@@ -0,0 +1,126 @@
+package uk.ac.ebi.eva.submission.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.util.ExpiringLruCache;
+import uk.ac.ebi.eva.submission.util.JwtUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Caches the result of resolving a bearer token to a {@link SubmissionAccount}, so that repeated calls with the same
+ * token do not hit the Webin/LSRI user info endpoints every time.
+ * Tokens are only kept as SHA-256 hashes. Successful lookups expire with the token (capped by the max TTL) and tokens
+ * rejected by the user info endpoints are remembered for a short time. Lookups that fail because the endpoints could
+ * not be reached are not cached, as they say nothing about the token.
+ * Concurrent lookups of the same token are coalesced: only the first caller goes to the user info endpoints and the
+ * others wait for its result.
+ */
+@Service
+public class SubmissionAccountCache {
+
+    public static final String LOOKUPS_METRIC = "submission.account.lookups";
+
+    private final ExpiringLruCache<String, Optional<SubmissionAccount>> cache;
+
+    private final long maxTtlMillis;
+
+    private final long failureTtlMillis;
+
+    private final Map<String, CompletableFuture<Optional<SubmissionAccount>>> inFlightLookups =
+            new ConcurrentHashMap<>();
+
+    private final Counter cachedLookups;
+
+    private final Counter coalescedLookups;
+
+    private final Counter authenticatedLookups;
+
+    public SubmissionAccountCache(@Value("${token.cache.maxSize:10000}") int maxSize,
+                                  @Value("${token.cache.maxTtlSeconds:300}") long maxTtlSeconds,
+                                  @Value("${token.cache.failureTtlSeconds:30}") long failureTtlSeconds,
+                                  MeterRegistry meterRegistry) {
+        this.cache = new ExpiringLruCache<>(maxSize);
+        this.maxTtlMillis = maxTtlSeconds * 1000;
+        this.failureTtlMillis = failureTtlSeconds * 1000;
+        this.cachedLookups = meterRegistry.counter(LOOKUPS_METRIC, "result", "cached");
+        this.coalescedLookups = meterRegistry.counter(LOOKUPS_METRIC, "result", "coalesced");
+        this.authenticatedLookups = meterRegistry.counter(LOOKUPS_METRIC, "result", "authenticated");
+    }
+
+    public SubmissionAccount getOrAuthenticate(String userToken, Function<String, SubmissionAccount> authenticator) {
+        String key = hashToken(userToken);
+        Optional<SubmissionAccount> cachedAccount = cache.get(key);
+        if (cachedAccount != null) {
+            cachedLookups.increment();
+            return cachedAccount.orElse(null);
+        }
+
+        CompletableFuture<Optional<SubmissionAccount>> lookup = new CompletableFuture<>();
+        CompletableFuture<Optional<SubmissionAccount>> inFlightLookup = inFlightLookups.putIfAbsent(key, lookup);
+        if (inFlightLookup != null) {
+            // Another request is already validating this token, wait for its result
+            coalescedLookups.increment();
+            try {
+                return inFlightLookup.join().orElse(null);
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            authenticatedLookups.increment();
+            SubmissionAccount submissionAccount = authenticator.apply(userToken);
+            long ttlMillis = submissionAccount != null ? getTtlMillis(userToken) : failureTtlMillis;
+            cache.put(key, Optional.ofNullable(submissionAccount), ttlMillis);
+            lookup.complete(Optional.ofNullable(submissionAccount));
+            return submissionAccount;
+        } catch (Throwable e) {
+            // whatever the failure, the callers waiting for this lookup must not wait forever
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLookups.remove(key, lookup);
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private long getTtlMillis(String userToken) {
+        Long expiry = JwtUtils.getExpiryEpochSeconds(userToken);
+        if (expiry == null) {
+            // opaque token, we can't tell when it expires
+            return maxTtlMillis;
+        }
+        return Math.min(expiry * 1000 - System.currentTimeMillis(), maxTtlMillis);
+    }
+
+    private static String hashToken(String userToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(userToken.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package uk.ac.ebi.eva.submission.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import uk.ac.ebi.eva.submission.entity.Submission;
+import uk.ac.ebi.eva.submission.exception.GlobusUnavailableException;
+import uk.ac.ebi.eva.submission.model.SubmissionStatus;
+import uk.ac.ebi.eva.submission.repository.SubmissionRepository;
+import uk.ac.ebi.eva.submission.util.ThreadPools;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates submission directories on Globus in the background, so that initiating a submission does not wait for
+ * Globus. Submissions stay in {@link SubmissionStatus#PROVISIONING} until their directory exists and are then
+ * {@link SubmissionStatus#OPEN}, or {@link SubmissionStatus#FAILED} if Globus refused to create the directory. If Globus
+ * could not be reached, the submission stays in {@link SubmissionStatus#PROVISIONING} and is tried again later.
+ * A submission is claimed before its directory is created, so that only one instance of the service works on it at
+ * a time. Submissions that did not fit in the queue, or whose claim has expired because the instance working on them
+ * stopped, are picked up again by a periodic sweep.
+ */
+@Service
+public class SubmissionDirectoryProvisioningService implements DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(SubmissionDirectoryProvisioningService.class);
+
+    private final GlobusDirectoryProvisioner globusDirectoryProvisioner;
+
+    private final SubmissionRepository submissionRepository;
+
+    private final ThreadPoolExecutor executor;
+
+    private final RetryTemplate retryTemplate;
+
+    // How long before the sweep takes over the claim on a submission, longer than all the attempts at creating its
+    // directory may take
+    @Value("${globus.provisioning.claimTimeoutSeconds:600}")
+    private long claimTimeoutSeconds;
+
+    public SubmissionDirectoryProvisioningService(GlobusDirectoryProvisioner globusDirectoryProvisioner,
+                                                  SubmissionRepository submissionRepository,
+                                                  @Value("${globus.provisioning.threads:4}") int threads,
+                                                  @Value("${globus.provisioning.queueSize:200}") int queueSize,
+                                                  @Value("${globus.provisioning.maxAttempts:5}") int maxAttempts,
+                                                  @Value("${globus.provisioning.retryDelayMs:2000}") long retryDelayMs) {
+        this.globusDirectoryProvisioner = globusDirectoryProvisioner;
+        this.submissionRepository = submissionRepository;
+        this.executor = ThreadPools.newBoundedThreadPool("globus-provisioning", threads, queueSize,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryTemplate = RetryTemplate.builder()
+                .maxAttempts(maxAttempts)
+                .exponentialBackoff(retryDelayMs, 2, retryDelayMs * 16)
+                .retryOn(RestClientException.class)
+                .retryOn(GlobusUnavailableException.class)
+                .build();
+    }
+
+    /**
+     * Queues the creation of the directory of a submission in status {@link SubmissionStatus#PROVISIONING}.
+     * The submission must already be committed to the database. If the queue is full, the submission stays in
+     * {@link SubmissionStatus#PROVISIONING} and is picked up by the sweep.
+     */
+    public void provisionSubmissionDirectory(String submissionId, String directoryToCreate) {
+        try {
+            executor.execute(() -> provision(submissionId, directoryToCreate));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Provisioning queue is full, directory of submission {} will be created later", submissionId);
+        }
+    }
+
+    /**
+     * Picks up the submissions that are still waiting for their directory and that no instance of the service is
+     * working on, on start up and then periodically.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${globus.provisioning.sweepDelayMs:60000}",
+            fixedDelayString = "${globus.provisioning.sweepDelayMs:60000}")
+    public void resumePendingProvisioning() {
+        for (Submission submission : submissionRepository.findStaleProvisioning(getStaleBefore())) {
+            logger.info("Resuming directory provisioning for submission {}", submission.getSubmissionId());
+            provisionSubmissionDirectory(submission.getSubmissionId(),
+                    getSubmissionDirectory(submission.getSubmissionAccount().getId(), submission.getSubmissionId()));
+        }
+    }
+
+    public static String getSubmissionDirectory(String submissionAccountId, String submissionId) {
+        return String.format("%s/%s", submissionAccountId, submissionId);
+    }
+
+    private LocalDateTime getStaleBefore() {
+        return LocalDateTime.now().minusSeconds(claimTimeoutSeconds);
+    }
+
+    private void provision(String submissionId, String directoryToCreate) {
+        // A submission may be queued by more than one instance, only the first one to claim it provisions it. The time
+        // of the claim identifies it when it is released, so it is truncated to a precision the database keeps.
+        LocalDateTime claimTime = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        if (submissionRepository.claimProvisioning(submissionId, claimTime, getStaleBefore()) == 0) {
+            logger.debug("Directory of submission {} is already being created", submissionId);
+            return;
+        }
+        SubmissionStatus newStatus;
+        try {
+            retryTemplate.execute(context -> {
+                if (context.getRetryCount() > 0) {
+                    logger.warn("Retrying creation of directory {} for submission {} (attempt {})", directoryToCreate,
+                            submissionId, context.getRetryCount() + 1);
+                }
+                globusDirectoryProvisioner.createSubmissionDirectory(directoryToCreate);
+                return null;
+            });
+            newStatus = SubmissionStatus.OPEN;
+        } catch (GlobusUnavailableException | ResourceAccessException e) {
+            // Globus may be back by the time of the next sweep
+            logger.warn("Globus is unavailable, directory {} for submission {} will be created later",
+                    directoryToCreate, submissionId, e);
+            submissionRepository.releaseProvisioningClaim(submissionId, claimTime);
+            return;
+        } catch (RuntimeException e) {
+            logger.error("Could not create directory {} for submission {}", directoryToCreate, submissionId, e);
+            newStatus = SubmissionStatus.FAILED;
+        }
+        // Only move on from PROVISIONING, the submission may have been cancelled in the meantime
+        int updated = submissionRepository.updateStatus(submissionId, SubmissionStatus.PROVISIONING.toString(),
+                newStatus.toString());
+        if (updated == 0) {
+            logger.warn("Submission {} is no longer in status {}, leaving its status unchanged", submissionId,
+                    SubmissionStatus.PROVISIONING);
+        } else {
+            logger.info("Submission {} is now in status {}", submissionId, newStatus);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        // Submissions not provisioned by then are resumed on the next start
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -34,11 +34,14 @@ import uk.ac.ebi.eva.submission.repository.SubmissionProcessingRepository;
 import uk.ac.ebi.eva.submission.repository.SubmissionRepository;
 import uk.ac.ebi.eva.submission.repository.SubmissionTrackingDetailsRepository;
 import uk.ac.ebi.eva.submission.util.BioSamplesUtils;
+import uk.ac.ebi.eva.submission.util.Deadline;
 import uk.ac.ebi.eva.submission.util.EmailNotificationHelper;
 import uk.ac.ebi.eva.submission.util.EnaUtils;
+import uk.ac.ebi.eva.submission.util.ExpiringLruCache;
 import uk.ac.ebi.eva.submission.util.MailSender;
 import uk.ac.ebi.eva.submission.util.Utils;
 
+import java.io.UncheckedIOException;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.net.URI;
@@ -74,9 +77,6 @@ public class SubmissionService {
     private static final String METADATA_FILES_TAG = "files";
     private static final String METADATA_FILE_NAME = "fileName";
     private static final String METADATA_FILE_SIZE = "fileSize";
-    private static final String GLOBUS_FILES_TAG = "DATA";
-    private static final String GLOBUS_FILE_NAME = "name";
-    private static final String GLOBUS_FILE_SIZE = "size";
 
     private final SubmissionRepository submissionRepository;
 
@@ -92,7 +92,11 @@ public class SubmissionService {
 
     private final GlobusDirectoryProvisioner globusDirectoryProvisioner;
 
-    private final MailSender mailSender;
+    private final SubmissionDirectoryProvisioningService submissionDirectoryProvisioningService;
+
+    private final UploadProgressService uploadProgressService;
+
+    private final EmailOutboxService emailOutboxService;
 
     @Value("${globus.uploadHttpDomain}")
     private String uploadHttpDomain;
@@ -100,12 +104,22 @@ public class SubmissionService {
     @Value("${eva.submission.account}")
     private String evaSubmissionAccount;
 
+    // Create the submission directory in the background instead of while the user waits
+    @Value("${submission.initiation.async:false}")
+    private boolean asyncInitiation;
+
     private EmailNotificationHelper emailHelper;
 
     private EnaUtils enaUtils;
 
     private BioSamplesUtils bioSamplesUtils;
 
+    @Value("${submission.account.fingerprint.ttlSeconds:3600}")
+    private long accountFingerprintTtlSeconds;
+
+    // Details of the accounts saved recently, to skip writing accounts that have not changed
+    private final ExpiringLruCache<String, String> submissionAccountFingerprints = new ExpiringLruCache<>(10000);
+
     public SubmissionService(SubmissionRepository submissionRepository,
                              SubmissionAccountRepository submissionAccountRepository,
                              SubmissionDetailsRepository submissionDetailsRepository,
@@ -113,7 +127,9 @@ public class SubmissionService {
                              SubmissionEloadRepository submissionEloadRepository,
                              SubmissionTrackingDetailsRepository submissionTrackingDetailsRepository,
                              GlobusDirectoryProvisioner globusDirectoryProvisioner,
-                             MailSender mailSender, EmailNotificationHelper emailHelper,
+                             SubmissionDirectoryProvisioningService submissionDirectoryProvisioningService,
+                             UploadProgressService uploadProgressService,
+                             EmailOutboxService emailOutboxService, EmailNotificationHelper emailHelper,
                              EnaUtils enaUtils, BioSamplesUtils bioSamplesUtils) {
         this.submissionRepository = submissionRepository;
         this.submissionAccountRepository = submissionAccountRepository;
@@ -122,7 +138,9 @@ public class SubmissionService {
         this.submissionEloadRepository = submissionEloadRepository;
         this.submissionTrackingDetailsRepository = submissionTrackingDetailsRepository;
         this.globusDirectoryProvisioner = globusDirectoryProvisioner;
-        this.mailSender = mailSender;
+        this.submissionDirectoryProvisioningService = submissionDirectoryProvisioningService;
+        this.uploadProgressService = uploadProgressService;
+        this.emailOutboxService = emailOutboxService;
         this.emailHelper = emailHelper;
         this.enaUtils = enaUtils;
         this.bioSamplesUtils = bioSamplesUtils;
@@ -130,22 +148,59 @@ public class SubmissionService {
 
     public Submission initiateSubmission(SubmissionAccount submissionAccount) {
         String submissionId = UUID.randomUUID().toString();
-        String directoryToCreate = String.format("%s/%s", submissionAccount.getId(), submissionId);
-        globusDirectoryProvisioner.createSubmissionDirectory(directoryToCreate);
-
-        Optional<SubmissionAccount> optSubmissionAccount = submissionAccountRepository.findById(submissionAccount.getId());
-        // if the user account is not present or if its primary email has changed, save/update the user account
-        if (!optSubmissionAccount.isPresent() || !optSubmissionAccount.get().getPrimaryEmail().equals(submissionAccount.getPrimaryEmail())) {
-            submissionAccountRepository.save(submissionAccount);
+        String directoryToCreate = SubmissionDirectoryProvisioningService.getSubmissionDirectory(
+                submissionAccount.getId(), submissionId);
+        if (!asyncInitiation) {
+            globusDirectoryProvisioner.createSubmissionDirectory(directoryToCreate);
         }
 
+        saveSubmissionAccountIfChanged(submissionAccount);
+
         Submission submission = new Submission(submissionId);
         submission.setSubmissionAccount(submissionAccount);
-        submission.setStatus(SubmissionStatus.OPEN.toString());
+        submission.setStatus(asyncInitiation ? SubmissionStatus.PROVISIONING.toString()
+                : SubmissionStatus.OPEN.toString());
         submission.setInitiationTime(LocalDateTime.now());
         submission.setUploadUrl(uploadHttpDomain + "/" + directoryToCreate);
+        submission = submissionRepository.save(submission);
 
-        return submissionRepository.save(submission);
+        if (asyncInitiation) {
+            // The submission becomes OPEN once its directory exists, clients poll its status until then
+            Utils.runAfterCommit(() -> submissionDirectoryProvisioningService.provisionSubmissionDirectory(
+                    submissionId, directoryToCreate));
+        }
+        return submission;
+    }
+
+    private void saveSubmissionAccountIfChanged(SubmissionAccount submissionAccount) {
+        String fingerprint = getFingerprint(submissionAccount);
+        if (fingerprint.equals(submissionAccountFingerprints.get(submissionAccount.getId()))) {
+            // Same details as the last time we saved this account
+            return;
+        }
+        String secondaryEmails;
+        try {
+            secondaryEmails = new ObjectMapper().writeValueAsString(
+                    submissionAccount.getSecondaryEmails() != null ? submissionAccount.getSecondaryEmails()
+                            : Collections.emptyList());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialise secondary emails", e);
+        }
+        submissionAccountRepository.upsert(submissionAccount.getId(), submissionAccount.getUserId(),
+                submissionAccount.getLoginType(), submissionAccount.getPrimaryEmail(), submissionAccount.getFirstName(),
+                submissionAccount.getLastName(), secondaryEmails);
+
+        // Only remember the account once it is committed, a rolled back write must not be skipped next time
+        Utils.runAfterCommit(() -> submissionAccountFingerprints.put(submissionAccount.getId(), fingerprint,
+                accountFingerprintTtlSeconds * 1000));
+    }
+
+    private String getFingerprint(SubmissionAccount submissionAccount) {
+        List<String> secondaryEmails = submissionAccount.getSecondaryEmails() != null ?
+                new ArrayList<>(submissionAccount.getSecondaryEmails()) : new ArrayList<>();
+        Collections.sort(secondaryEmails);
+        return String.join("\n", submissionAccount.getPrimaryEmail(), submissionAccount.getFirstName(),
+                submissionAccount.getLastName(), String.join(",", secondaryEmails));
     }
 
     @Transactional
@@ -215,27 +270,26 @@ public class SubmissionService {
             throw new MetadataFileInfoMismatchException("Metadata json file does not have any file info");
         }
 
+        // A recent snapshot saves listing the directory again, but only when it shows that all files are there,
+        // as otherwise the files may have been uploaded since
+        Map<String, Long> recentFileInfo = uploadProgressService.getRecentUploadedFileSizes(submissionId);
+        if (recentFileInfo != null && allFilesUploaded(metadataFileInfo, recentFileInfo)) {
+            logger.info("Files of submission {} found in the latest upload snapshot", submissionId);
+            return;
+        }
+
         String directoryToList = String.format("%s/%s", submissionAccount.getId(), submissionId);
-        String uploadedFilesInfo = globusDirectoryProvisioner.listSubmittedFiles(directoryToList);
-        if (uploadedFilesInfo.isEmpty()) {
+        Map<String, Long> globusFileInfo;
+        try {
+            globusFileInfo = globusDirectoryProvisioner.listSubmittedFileSizes(directoryToList);
+        } catch (UncheckedIOException ex) {
+            logger.error("Error parsing fileInfo from Submission Directory. Exception: {}", ex.getMessage(), ex);
+            throw new MetadataFileInfoMismatchException("Error parsing fileInfo from Submission Directory");
+        }
+        if (globusFileInfo == null) {
             logger.error("Failed to retrieve any file info from submission directory {} for submission {}", directoryToList, submissionId);
             throw new MetadataFileInfoMismatchException("Failed to retrieve any file info from submission directory.");
         } else {
-            Map<String, Long> globusFileInfo = new HashMap<>();
-            try {
-                ObjectMapper mapper = new ObjectMapper();
-                ObjectNode globusFileInfoJson = (ObjectNode) mapper.readTree(uploadedFilesInfo);
-                if (globusFileInfoJson.get(GLOBUS_FILES_TAG) != null) {
-                    globusFileInfo = StreamSupport.stream(globusFileInfoJson.get(GLOBUS_FILES_TAG).spliterator(), false)
-                            .collect(Collectors.toMap(
-                                    dataNode -> dataNode.get(GLOBUS_FILE_NAME).asText(),
-                                    dataNode -> dataNode.get(GLOBUS_FILE_SIZE).asLong()
-                            ));
-                }
-            } catch (JsonProcessingException ex) {
-                logger.error("Error parsing fileInfo from Submission Directory. Exception: {}", ex.getMessage(), ex);
-                throw new MetadataFileInfoMismatchException("Error parsing fileInfo from Submission Directory");
-            }
 
             List<String> missingFileList = new ArrayList<>();
             String fileSizeMismatchInfo = "";
@@ -262,6 +316,16 @@ public class SubmissionService {
         }
     }
 
+    private boolean allFilesUploaded(Map<String, Long> metadataFileInfo, Map<String, Long> uploadedFileInfo) {
+        for (Map.Entry<String, Long> fileEntry : metadataFileInfo.entrySet()) {
+            String fileName = Paths.get(fileEntry.getKey()).getFileName().toString();
+            if (!fileEntry.getValue().equals(uploadedFileInfo.get(fileName))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public String getVersionFromMetadataJson(JsonNode metadataJson) {
         String version = null;
 
@@ -277,7 +341,7 @@ public class SubmissionService {
         return version;
     }
 
-    public Map<String, String> checkAllRequiredParametersProvided(JsonNode metadataJson) {
+    public Map<String, String> checkAllRequiredParametersProvided(JsonNode metadataJson, Deadline deadline) {
         String projectAccession;
         String projectTitle;
         String projectDescription;
@@ -291,7 +355,7 @@ public class SubmissionService {
             projectDescription = projectNode.path(DESCRIPTION).asText("");
             projectTaxonomy = projectNode.path(TAXONOMY_ID).asText("");
         } else {
-            Map<String, String> projectDetails = enaUtils.getProjectDetailsFromEna(projectAccession);
+            Map<String, String> projectDetails = enaUtils.getProjectDetailsFromEna(projectAccession, deadline);
             projectTitle = projectDetails.get(TITLE);
             projectDescription = projectDetails.get(DESCRIPTION);
             projectTaxonomy = projectDetails.get(TAXONOMY_ID);
@@ -329,7 +393,7 @@ public class SubmissionService {
         return projectDetails;
     }
 
-    public boolean isHumanDataInSubmission(JsonNode metadataJson, String projectTaxonomy) {
+    public boolean isHumanDataInSubmission(JsonNode metadataJson, String projectTaxonomy, Deadline deadline) {
         if (!Strings.isEmpty(projectTaxonomy)) {
             return "9606".equals(projectTaxonomy);
         }
@@ -339,7 +403,7 @@ public class SubmissionService {
             return false;
         }
 
-        int bioSamplesApiQueriedCount = 0;
+        List<String> preRegisteredAccessions = new ArrayList<>();
         for (JsonNode sampleNode : sampleArray) {
             // samples defined in JSON : check all, no limit
             JsonNode bioSampleObject = sampleNode.path(BIO_SAMPLE_OBJECT);
@@ -356,18 +420,35 @@ public class SubmissionService {
             }
 
             // Pre-registered sample: query BioSamples API, limited to 5 calls
-            if (bioSamplesApiQueriedCount >= 5) {
+            if (preRegisteredAccessions.size() >= 5) {
                 continue;
             }
             String accession = sampleNode.path(BIO_SAMPLE_ACCESSION).asText(null);
             if (accession != null && !accession.isEmpty()) {
-                if ("9606".equals(bioSamplesUtils.getTaxIdFromBioSamples(accession))) {
-                    return true;
-                }
-                bioSamplesApiQueriedCount++;
+                preRegisteredAccessions.add(accession);
             }
         }
-        return false;
+        // Only query BioSamples once none of the samples defined in JSON is human
+        return bioSamplesUtils.isAnyHumanSample(preRegisteredAccessions, deadline);
+    }
+
+    /**
+     * Saves the metadata, marks the submission as uploaded and queues the notifications to the user and the EVA
+     * helpdesk, all in one transaction.
+     */
+    @Transactional
+    public Submission markSubmissionUploadedAndNotify(SubmissionAccount submissionAccount, String submissionId,
+                                                      String projectTitle, String projectDescription,
+                                                      JsonNode metadataJson, boolean needConsentStatement,
+                                                      boolean deprecatedVersion) {
+        Submission submission = uploadMetadataJsonAndMarkUploaded(submissionId, projectTitle, projectDescription,
+                metadataJson);
+        // send notification to user
+        sendMailNotificationToUserForStatusUpdate(submissionAccount, submissionId, projectTitle,
+                SubmissionStatus.UPLOADED, needConsentStatement, deprecatedVersion, true);
+        // send notification to EVA HelpDesk
+        sendMailNotificationToEVAHelpdeskForSubmissionUploaded(submissionAccount, submissionId, projectTitle);
+        return submission;
     }
 
     public Submission uploadMetadataJsonAndMarkUploaded(String submissionId, String projectTitle,
@@ -425,14 +506,15 @@ public class SubmissionService {
         String subject = emailHelper.getSubjectForSubmissionStatusUpdate(submissionStatus, success);
         String body = emailHelper.getTextForSubmissionStatusUpdate(submissionAccount, submissionId, projectTitle,
                 submissionStatus, needConsentStatement, deprecatedVersion, success);
-        mailSender.sendEmail(emailHelper.getEvaHelpdeskEmail(), sendTo, sendCC, subject, body);
+        emailOutboxService.queueEmail(emailHelper.getEvaHelpdeskEmail(), sendTo, sendCC, subject, body);
     }
 
     public void sendMailNotificationToEVAHelpdeskForSubmissionUploaded(SubmissionAccount submissionAccount,
                                                                        String submissionId, String projectTitle) {
         String subject = String.format("New Submission Uploaded. Submission Id - (%s)", submissionId);
         String body = emailHelper.getTextForEVAHelpdeskSubmissionUploaded(submissionAccount, submissionId, projectTitle);
-        mailSender.sendEmail(emailHelper.getEvaHelpdeskEmail(), subject, body);
+        emailOutboxService.queueEmail(MailSender.DEFAULT_SENDER, emailHelper.getEvaHelpdeskEmail(),
+                Collections.emptyList(), subject, body);
     }
 
     public List<Submission> getSubmissionsByStatus(SubmissionStatus status) {
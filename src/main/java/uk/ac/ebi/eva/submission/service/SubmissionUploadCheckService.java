@@ -0,0 +1,105 @@
+package uk.ac.ebi.eva.submission.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.model.UploadCheckResult;
+import uk.ac.ebi.eva.submission.util.Deadline;
+import uk.ac.ebi.eva.submission.util.ThreadPools;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.PROJECT;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.PROJECT_ACCESSION;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TAXONOMY_ID;
+
+/**
+ * Runs the checks done before a submission is marked as uploaded: the uploaded files against Globus, the project
+ * details against ENA and the samples against BioSamples. They do not depend on each other, so they run at the same
+ * time and a check takes as long as the slowest of them.
+ * Errors are reported in the order the checks would run one after another, so the response does not depend on which
+ * check finishes first. When the pool is busy, checks run on the calling thread instead.
+ */
+@Service
+public class SubmissionUploadCheckService implements DisposableBean {
+
+    private final SubmissionService submissionService;
+
+    private final ThreadPoolExecutor executor;
+
+    public SubmissionUploadCheckService(SubmissionService submissionService,
+                                        @Value("${submission.uploadChecks.threads:8}") int threads,
+                                        @Value("${submission.uploadChecks.queueSize:100}") int queueSize) {
+        this.submissionService = submissionService;
+        this.executor = ThreadPools.newBoundedThreadPool("upload-check", threads, queueSize,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Runs the checks of the submission. The calls to ENA and BioSamples share the deadline of the request.
+     */
+    public UploadCheckResult checkUploadedSubmission(SubmissionAccount submissionAccount, String submissionId,
+                                                     JsonNode metadataJson, Deadline deadline) {
+        Future<?> fileCheck = executor.submit(() -> submissionService.checkMetadataFileInfoMatchesWithUploadedFiles(
+                submissionAccount, submissionId, metadataJson));
+        Future<Map<String, String>> projectCheck = executor.submit(
+                () -> submissionService.checkAllRequiredParametersProvided(metadataJson, deadline));
+
+        // The samples only matter when the project has no taxonomy. With a project accession the taxonomy comes
+        // from ENA, so the samples are checked while waiting for it in case ENA does not have one.
+        JsonNode projectNode = metadataJson.path(PROJECT);
+        boolean sampleCheckNeeded = Strings.isNotEmpty(projectNode.path(PROJECT_ACCESSION).asText(""))
+                || Strings.isEmpty(projectNode.path(TAXONOMY_ID).asText(""));
+        Future<Boolean> sampleCheck = sampleCheckNeeded
+                ? executor.submit(() -> submissionService.isHumanDataInSubmission(metadataJson, "", deadline))
+                : CompletableFuture.completedFuture(false);
+
+        try {
+            getResult(fileCheck);
+            Map<String, String> projectDetails = getResult(projectCheck);
+            String projectTaxonomy = projectDetails.get(TAXONOMY_ID);
+            boolean humanData;
+            if (Strings.isNotEmpty(projectTaxonomy)) {
+                sampleCheck.cancel(true);
+                humanData = submissionService.isHumanDataInSubmission(metadataJson, projectTaxonomy, deadline);
+            } else {
+                humanData = getResult(sampleCheck);
+            }
+            return new UploadCheckResult(projectDetails, humanData);
+        } finally {
+            fileCheck.cancel(true);
+            projectCheck.cancel(true);
+            sampleCheck.cancel(true);
+        }
+    }
+
+    private static <T> T getResult(Future<T> check) {
+        try {
+            return check.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking the submission", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Submission check failed", cause);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,296 @@
+package uk.ac.ebi.eva.submission.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uk.ac.ebi.eva.submission.entity.Submission;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.entity.SubmissionUploadJob;
+import uk.ac.ebi.eva.submission.exception.GlobusUnavailableException;
+import uk.ac.ebi.eva.submission.exception.MetadataFileInfoMismatchException;
+import uk.ac.ebi.eva.submission.exception.RequiredFieldsMissingException;
+import uk.ac.ebi.eva.submission.model.SubmissionStatus;
+import uk.ac.ebi.eva.submission.model.SubmissionUploadJobDto;
+import uk.ac.ebi.eva.submission.model.UploadCheckResult;
+import uk.ac.ebi.eva.submission.model.UploadJobStatus;
+import uk.ac.ebi.eva.submission.repository.SubmissionAccountRepository;
+import uk.ac.ebi.eva.submission.repository.SubmissionRepository;
+import uk.ac.ebi.eva.submission.repository.SubmissionUploadJobRepository;
+import uk.ac.ebi.eva.submission.util.Deadline;
+import uk.ac.ebi.eva.submission.util.ThreadPools;
+import uk.ac.ebi.eva.submission.util.Utils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.ANALYSIS;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.DESCRIPTION;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TITLE;
+
+/**
+ * Marks submissions as uploaded: checks the files and metadata, saves the metadata and notifies the user and the
+ * EVA helpdesk. This is done either while the user waits, or in the background through a job stored in the database,
+ * in which case the user polls the job for the outcome.
+ * Jobs run on a small pool of threads, which also limits the load put on Globus, ENA and BioSamples. Jobs that do not
+ * fit in its queue stay pending and are picked up later. Jobs that have been running for too long are assumed to belong
+ * to an instance of the service that stopped, and are put back to pending.
+ */
+@Service
+public class SubmissionUploadJobService implements DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(SubmissionUploadJobService.class);
+
+    private final SubmissionService submissionService;
+
+    private final SubmissionUploadCheckService submissionUploadCheckService;
+
+    private final SubmissionRepository submissionRepository;
+
+    private final SubmissionAccountRepository submissionAccountRepository;
+
+    private final SubmissionUploadJobRepository submissionUploadJobRepository;
+
+    private final ThreadPoolExecutor executor;
+
+    // Jobs waiting in the queue of this instance, not queued again by the sweep
+    private final Set<String> queuedJobIds = ConcurrentHashMap.newKeySet();
+
+    // Time given to the calls to ENA and BioSamples made to mark a submission as uploaded, all together
+    @Value("${submission.uploadChecks.upstreamBudgetMs:30000}")
+    private long upstreamBudgetMillis;
+
+    // Pending jobs older than this are assumed not to be queued anymore
+    @Value("${submission.uploadJobs.pendingTimeoutSeconds:60}")
+    private long pendingTimeoutSeconds;
+
+    // Jobs still running after this long are put back in the queue, their first run can then only record a success
+    @Value("${submission.uploadJobs.runningTimeoutSeconds:1800}")
+    private long runningTimeoutSeconds;
+
+    public SubmissionUploadJobService(SubmissionService submissionService,
+                                      SubmissionUploadCheckService submissionUploadCheckService,
+                                      SubmissionRepository submissionRepository,
+                                      SubmissionAccountRepository submissionAccountRepository,
+                                      SubmissionUploadJobRepository submissionUploadJobRepository,
+                                      @Value("${submission.uploadJobs.threads:2}") int threads,
+                                      @Value("${submission.uploadJobs.queueSize:100}") int queueSize) {
+        this.submissionService = submissionService;
+        this.submissionUploadCheckService = submissionUploadCheckService;
+        this.submissionRepository = submissionRepository;
+        this.submissionAccountRepository = submissionAccountRepository;
+        this.submissionUploadJobRepository = submissionUploadJobRepository;
+        this.executor = ThreadPools.newBoundedThreadPool("upload-job", threads, queueSize,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Checks the submission against its metadata, marks it as uploaded and queues the notifications.
+     * The submission must be in status {@link SubmissionStatus#OPEN}.
+     */
+    public Submission markSubmissionUploaded(SubmissionAccount submissionAccount, String submissionId,
+                                             JsonNode metadataJson, boolean deprecatedVersion) {
+        // check the files uploaded against the metadata, that all the required parameters are provided and
+        // whether the submission contains human data
+        UploadCheckResult uploadCheckResult = submissionUploadCheckService.checkUploadedSubmission(
+                submissionAccount, submissionId, metadataJson, Deadline.inMillis(upstreamBudgetMillis));
+        Map<String, String> projectDetails = uploadCheckResult.getProjectDetails();
+
+        String projectTitle = projectDetails.get(TITLE);
+        String projectDescription = projectDetails.get(DESCRIPTION);
+
+        // check if consent statement is required
+        ArrayNode analysisNode = (ArrayNode) metadataJson.get(ANALYSIS);
+        boolean needConsentStatement = checkConsentStatementIsNeededForTheSubmission(uploadCheckResult.isHumanData(),
+                analysisNode);
+
+        // save submission details along with metadata and notify the user and the EVA HelpDesk
+        return submissionService.markSubmissionUploadedAndNotify(submissionAccount, submissionId, projectTitle,
+                projectDescription, metadataJson, needConsentStatement, deprecatedVersion);
+    }
+
+    /**
+     * Stores the metadata and queues the checks of the submission. If the submission already has a job that has not
+     * completed, that job is returned instead of creating another one.
+     */
+    @Transactional
+    public SubmissionUploadJobDto submitUploadJob(String submissionId, JsonNode metadataJson,
+                                                  boolean deprecatedVersion) {
+        // Concurrent requests for the same submission wait for each other, so that only one job is created
+        submissionRepository.findAndLockBySubmissionId(submissionId);
+        SubmissionUploadJob activeJob = submissionUploadJobRepository.findFirstBySubmissionIdAndStatusIn(submissionId,
+                Arrays.asList(UploadJobStatus.PENDING.toString(), UploadJobStatus.RUNNING.toString()));
+        if (activeJob != null) {
+            logger.info("Submission {} already has upload job {} in progress", submissionId, activeJob.getJobId());
+            return toDto(activeJob);
+        }
+
+        SubmissionUploadJob job = new SubmissionUploadJob(UUID.randomUUID().toString(), submissionId);
+        job.setStatus(UploadJobStatus.PENDING.toString());
+        job.setMetadataJson(metadataJson);
+        job.setDeprecatedVersion(deprecatedVersion);
+        job.setCreatedTime(LocalDateTime.now());
+        job = submissionUploadJobRepository.save(job);
+        logger.info("Created upload job {} for submission {}", job.getJobId(), submissionId);
+        String jobId = job.getJobId();
+        Utils.runAfterCommit(() -> dispatch(jobId));
+        return toDto(job);
+    }
+
+    public Optional<SubmissionUploadJobDto> getUploadJob(String submissionId, String jobId) {
+        return Optional.ofNullable(submissionUploadJobRepository.findByJobIdAndSubmissionId(jobId, submissionId))
+                .map(this::toDto);
+    }
+
+    /**
+     * Puts back the jobs left running by an instance that stopped and queues all pending jobs.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUploadJobs() {
+        requeueStaleRunningJobs();
+        for (SubmissionUploadJob job : submissionUploadJobRepository.findByStatus(UploadJobStatus.PENDING.toString())) {
+            dispatch(job.getJobId());
+        }
+    }
+
+    /**
+     * Queues again the jobs that did not fit in the queue when they were created, and the jobs left running by an
+     * instance that stopped.
+     */
+    @Scheduled(initialDelayString = "${submission.uploadJobs.sweepDelayMs:60000}",
+            fixedDelayString = "${submission.uploadJobs.sweepDelayMs:60000}")
+    public void dispatchStalePendingJobs() {
+        requeueStaleRunningJobs();
+        for (SubmissionUploadJob job : submissionUploadJobRepository.findByStatusAndCreatedTimeBefore(
+                UploadJobStatus.PENDING.toString(), LocalDateTime.now().minusSeconds(pendingTimeoutSeconds))) {
+            dispatch(job.getJobId());
+        }
+    }
+
+    private void requeueStaleRunningJobs() {
+        int interrupted = submissionUploadJobRepository.requeueStaleRunningJobs(
+                LocalDateTime.now().minusSeconds(runningTimeoutSeconds));
+        if (interrupted > 0) {
+            logger.info("Resuming {} interrupted upload jobs", interrupted);
+        }
+    }
+
+    private void dispatch(String jobId) {
+        if (!queuedJobIds.add(jobId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                queuedJobIds.remove(jobId);
+                runJob(jobId);
+            });
+        } catch (RejectedExecutionException e) {
+            queuedJobIds.remove(jobId);
+            logger.warn("Upload job queue is full, job {} will be run later", jobId);
+        }
+    }
+
+    private void runJob(String jobId) {
+        // A job may be queued more than once, only the first one to claim it runs it. The time of the claim identifies
+        // this run when recording its outcome, so it is truncated to a precision the database keeps.
+        LocalDateTime startedTime = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        if (submissionUploadJobRepository.claimJob(jobId, startedTime) == 0) {
+            return;
+        }
+        SubmissionUploadJob job = submissionUploadJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        String submissionId = job.getSubmissionId();
+
+        HttpStatus resultCode;
+        String resultMessage;
+        try {
+            Submission submission = submissionRepository.findBySubmissionId(submissionId);
+            if (!SubmissionStatus.OPEN.toString().equals(submission.getStatus())) {
+                resultCode = HttpStatus.BAD_REQUEST;
+                resultMessage = "Submission " + submissionId + " is not in status " + SubmissionStatus.OPEN +
+                        ". It cannot be marked as " + SubmissionStatus.UPLOADED +
+                        ". Current Status: " + submission.getStatus();
+            } else {
+                SubmissionAccount submissionAccount = submissionAccountRepository.findWithSecondaryEmailsById(
+                        submission.getSubmissionAccount().getId());
+                markSubmissionUploaded(submissionAccount, submissionId, job.getMetadataJson(),
+                        job.isDeprecatedVersion());
+                resultCode = HttpStatus.OK;
+                resultMessage = "Submission " + submissionId + " marked as " + SubmissionStatus.UPLOADED;
+            }
+        } catch (RequiredFieldsMissingException | MetadataFileInfoMismatchException ex) {
+            logger.error("Error occurred while processing the submission.", ex);
+            resultCode = HttpStatus.BAD_REQUEST;
+            resultMessage = ex.getMessage();
+        } catch (GlobusUnavailableException ex) {
+            logger.warn("Could not check the files of submission {}: {}", submissionId, ex.getMessage());
+            resultCode = HttpStatus.SERVICE_UNAVAILABLE;
+            resultMessage = ex.getMessage();
+        } catch (Exception e) {
+            logger.error("Error occurred while processing the submission.", e);
+            resultCode = HttpStatus.INTERNAL_SERVER_ERROR;
+            resultMessage = e.getMessage();
+        }
+
+        String status = (resultCode == HttpStatus.OK ? UploadJobStatus.SUCCEEDED : UploadJobStatus.FAILED).toString();
+        LocalDateTime completedTime = LocalDateTime.now();
+        int completed = submissionUploadJobRepository.completeJob(jobId, startedTime, status, resultCode.value(),
+                resultMessage, completedTime);
+        if (completed == 0 && resultCode == HttpStatus.OK) {
+            // The job was put back and claimed again while this run marked the submission as uploaded. The other
+            // run can only find that the submission is no longer open, so the outcome of this run is the one to keep.
+            completed = submissionUploadJobRepository.completeRunningJob(jobId, status, resultCode.value(),
+                    resultMessage, completedTime);
+        }
+        if (completed == 0) {
+            logger.warn("Upload job {} for submission {} was claimed again while running, its outcome {} is not " +
+                    "recorded", jobId, submissionId, status);
+            return;
+        }
+        logger.info("Upload job {} for submission {} is {}", jobId, submissionId, status);
+    }
+
+    private SubmissionUploadJobDto toDto(SubmissionUploadJob job) {
+        return new SubmissionUploadJobDto(job.getJobId(), job.getSubmissionId(), job.getStatus(), job.getResultCode(),
+                job.getResultMessage(), job.getCreatedTime(), job.getCompletedTime());
+    }
+
+    private boolean checkConsentStatementIsNeededForTheSubmission(boolean isHuman, ArrayNode analysisNode) {
+        if (!isHuman) {
+            return false;
+        }
+        Set<String> evidenceTypes = new HashSet<>();
+        for (JsonNode node : analysisNode) {
+            String evidenceType = node.path("evidenceType").asText(null);
+            if (evidenceType != null) {
+                evidenceTypes.add(evidenceType);
+            }
+        }
+        return evidenceTypes.isEmpty() || evidenceTypes.contains("genotype");
+    }
+
+    @Override
+    public void destroy() {
+        // Jobs still pending or running are resumed on the next start
+        executor.shutdownNow();
+    }
+}
@@ -1,38 +1,53 @@
 package uk.ac.ebi.eva.submission.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
+import uk.ac.ebi.eva.submission.exception.UpstreamUnavailableException;
+
+import java.io.IOException;
 
 public class TokenServiceUtil {
     private static final Logger logger = LoggerFactory.getLogger(TokenServiceUtil.class);
 
-    public static String getUserInfoRestResponse(String userToken, String userInfoUrl) {
+    /**
+     * Calls the user info endpoint with the given token and maps the response body straight into the type of the
+     * given reader, without going through an intermediate tree or string.
+     * Returns null if the endpoint rejects the request (any 4xx except 408 and 429). Any other failure, such as a
+     * timeout, a rate limit, a server error or an unreadable response, says nothing about the token and is thrown as
+     * an {@link UpstreamUnavailableException}.
+     */
+    public static <T> T getUserInfo(RestTemplate restTemplate, String userToken, String userInfoUrl,
+                                    ObjectReader userInfoReader) {
         HttpHeaders headers = new HttpHeaders();
         headers.setBearerAuth(userToken);
 
         HttpEntity<String> entity = new HttpEntity<>(headers);
 
-        RestTemplate restTemplate = new RestTemplate();
         try {
-            ResponseEntity<String> response = restTemplate.exchange(userInfoUrl, HttpMethod.GET, entity, String.class);
-            // Parse the response JSON to extract the new access token
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode responseJson = objectMapper.readTree(response.getBody());
-            return responseJson.toString();
+            ResponseEntity<byte[]> response = restTemplate.exchange(userInfoUrl, HttpMethod.GET, entity, byte[].class);
+            if (response.getBody() == null) {
+                throw new UpstreamUnavailableException("Empty response from user info endpoint " + userInfoUrl);
+            }
+            return userInfoReader.readValue(response.getBody());
         } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.REQUEST_TIMEOUT || e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                logger.warn("Token validation failed while calling user info endpoint: {}", e.getMessage());
+                throw new UpstreamUnavailableException("Could not call user info endpoint " + userInfoUrl, e);
+            }
             logger.warn("Token validation HTTP error: status={}, message={}", e.getStatusCode(), e.getMessage());
             return null;
-        } catch (Exception e) {
+        } catch (RestClientException | IOException e) {
             logger.warn("Token validation failed while calling user info endpoint: {}", e.getMessage());
-            return null;
+            throw new UpstreamUnavailableException("Could not call user info endpoint " + userInfoUrl, e);
         }
     }
 }
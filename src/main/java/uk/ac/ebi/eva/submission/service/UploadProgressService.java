@@ -0,0 +1,200 @@
+package uk.ac.ebi.eva.submission.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.eva.submission.entity.Submission;
+import uk.ac.ebi.eva.submission.entity.SubmissionUploadProgress;
+import uk.ac.ebi.eva.submission.model.SubmissionStatus;
+import uk.ac.ebi.eva.submission.model.SubmissionUploadProgressDto;
+import uk.ac.ebi.eva.submission.repository.SubmissionRepository;
+import uk.ac.ebi.eva.submission.repository.SubmissionUploadProgressRepository;
+import uk.ac.ebi.eva.submission.util.ThreadPools;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keeps track of the files uploaded to OPEN submissions by listing their Globus directories in the background.
+ * Submissions whose files changed since the last check are checked again soon, and the interval doubles every time
+ * nothing changed, so idle submissions cost very few Globus calls.
+ * Directories are listed on a small pool of threads of their own rather than on the shared scheduler. Each check is
+ * claimed in the database first, so that a submission is only checked by one instance of the service at a time.
+ * Snapshots of submissions that are no longer open are deleted.
+ */
+@Service
+public class UploadProgressService implements DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(UploadProgressService.class);
+
+    private static final long MIN_CHECK_INTERVAL_SECONDS = 60;
+
+    private static final long MAX_CHECK_INTERVAL_SECONDS = 60 * 60;
+
+    private static final TypeReference<Map<String, Long>> FILE_SIZES_TYPE = new TypeReference<Map<String, Long>>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SubmissionRepository submissionRepository;
+
+    private final SubmissionUploadProgressRepository submissionUploadProgressRepository;
+
+    private final GlobusDirectoryProvisioner globusDirectoryProvisioner;
+
+    private final ThreadPoolExecutor executor;
+
+    @Value("${submission.uploadProgress.enabled:true}")
+    private boolean enabled;
+
+    // Maximum number of submissions listed in each run
+    @Value("${submission.uploadProgress.batchSize:50}")
+    private int batchSize;
+
+    // How old a snapshot can be and still be used to check the files of an upload
+    @Value("${submission.uploadProgress.maxSnapshotAgeSeconds:120}")
+    private long maxSnapshotAgeSeconds;
+
+    // How long a check holds its claim on a submission, longer than the listing of its directory may take
+    @Value("${submission.uploadProgress.claimTimeoutSeconds:600}")
+    private long claimTimeoutSeconds;
+
+    public UploadProgressService(SubmissionRepository submissionRepository,
+                                 SubmissionUploadProgressRepository submissionUploadProgressRepository,
+                                 GlobusDirectoryProvisioner globusDirectoryProvisioner,
+                                 @Value("${submission.uploadProgress.threads:2}") int threads,
+                                 @Value("${submission.uploadProgress.queueSize:50}") int queueSize) {
+        this.submissionRepository = submissionRepository;
+        this.submissionUploadProgressRepository = submissionUploadProgressRepository;
+        this.globusDirectoryProvisioner = globusDirectoryProvisioner;
+        this.executor = ThreadPools.newBoundedThreadPool("upload-progress", threads, queueSize,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues the checks of the open submissions that are due, and deletes the snapshots of closed submissions.
+     */
+    @Scheduled(initialDelay = MIN_CHECK_INTERVAL_SECONDS * 1000, fixedDelay = MIN_CHECK_INTERVAL_SECONDS * 1000)
+    public void checkOpenSubmissions() {
+        if (!enabled) {
+            return;
+        }
+        int deleted = submissionUploadProgressRepository.deleteOfClosedSubmissions();
+        if (deleted > 0) {
+            logger.info("Deleted the upload snapshots of {} closed submissions", deleted);
+        }
+
+        List<Submission> dueSubmissions = submissionRepository.findOpenDueForUploadCheck(LocalDateTime.now(),
+                PageRequest.of(0, batchSize));
+        Map<String, SubmissionUploadProgress> progressBySubmissionId = StreamSupport.stream(
+                        submissionUploadProgressRepository.findAllById(dueSubmissions.stream()
+                                .map(Submission::getSubmissionId)
+                                .collect(Collectors.toList())).spliterator(), false)
+                .collect(Collectors.toMap(SubmissionUploadProgress::getSubmissionId, Function.identity()));
+        for (Submission submission : dueSubmissions) {
+            try {
+                executor.execute(() -> claimAndCheckSubmission(submission,
+                        progressBySubmissionId.get(submission.getSubmissionId())));
+            } catch (RejectedExecutionException e) {
+                logger.warn("Upload progress queue is full, remaining submissions will be checked later");
+                return;
+            }
+        }
+    }
+
+    public Optional<SubmissionUploadProgressDto> getUploadProgress(String submissionId) {
+        return submissionUploadProgressRepository.findById(submissionId)
+                .map(progress -> new SubmissionUploadProgressDto(progress.getSubmissionId(), progress.getFileCount(),
+                        progress.getTotalBytes(), progress.getLastCheckedTime(), progress.getLastChangedTime()));
+    }
+
+    /**
+     * Returns the sizes of the files uploaded to the submission according to its latest snapshot, or null if there is
+     * no snapshot recent enough to be trusted.
+     */
+    public Map<String, Long> getRecentUploadedFileSizes(String submissionId) {
+        Optional<SubmissionUploadProgress> progress = submissionUploadProgressRepository.findById(submissionId);
+        if (!progress.isPresent()
+                || progress.get().getLastCheckedTime().isBefore(LocalDateTime.now().minusSeconds(maxSnapshotAgeSeconds))) {
+            return null;
+        }
+        return objectMapper.convertValue(progress.get().getFileSizes(), FILE_SIZES_TYPE);
+    }
+
+    private void claimAndCheckSubmission(Submission submission, SubmissionUploadProgress progress) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime claimedUntil = now.plusSeconds(claimTimeoutSeconds);
+        int claimed = progress == null
+                ? submissionUploadProgressRepository.claimFirstCheck(submission.getSubmissionId(), now, claimedUntil,
+                        MIN_CHECK_INTERVAL_SECONDS)
+                : submissionUploadProgressRepository.claimCheck(submission.getSubmissionId(), now, claimedUntil);
+        if (claimed == 0) {
+            logger.debug("Submission {} is already being checked", submission.getSubmissionId());
+            return;
+        }
+        checkSubmission(submission, progress);
+    }
+
+    private void checkSubmission(Submission submission, SubmissionUploadProgress progress) {
+        String submissionId = submission.getSubmissionId();
+        Map<String, Long> fileSizes;
+        try {
+            fileSizes = globusDirectoryProvisioner.listSubmittedFileSizes(
+                    SubmissionDirectoryProvisioningService.getSubmissionDirectory(
+                            submission.getSubmissionAccount().getId(), submissionId));
+        } catch (RuntimeException e) {
+            logger.warn("Could not list the files of submission {}: {}", submissionId, e.getMessage());
+            fileSizes = null;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (progress == null) {
+            progress = new SubmissionUploadProgress(submissionId);
+            progress.setFileSizes(objectMapper.createObjectNode());
+            progress.setLastChangedTime(now);
+            progress.setCheckIntervalSeconds(MIN_CHECK_INTERVAL_SECONDS);
+        }
+        if (fileSizes == null) {
+            // Keep the previous snapshot and try again later
+            if (progress.getLastCheckedTime() == null) {
+                progress.setLastCheckedTime(now);
+            }
+            progress.setCheckIntervalSeconds(Math.min(progress.getCheckIntervalSeconds() * 2,
+                    MAX_CHECK_INTERVAL_SECONDS));
+        } else {
+            boolean changed = !fileSizes.equals(objectMapper.convertValue(progress.getFileSizes(), FILE_SIZES_TYPE));
+            if (changed) {
+                progress.setFileSizes(objectMapper.valueToTree(fileSizes));
+                progress.setFileCount(fileSizes.size());
+                progress.setTotalBytes(fileSizes.values().stream().mapToLong(Long::longValue).sum());
+                progress.setLastChangedTime(now);
+                progress.setCheckIntervalSeconds(MIN_CHECK_INTERVAL_SECONDS);
+            } else {
+                progress.setCheckIntervalSeconds(Math.min(progress.getCheckIntervalSeconds() * 2,
+                        MAX_CHECK_INTERVAL_SECONDS));
+            }
+            progress.setLastCheckedTime(now);
+        }
+        progress.setNextCheckTime(now.plusSeconds(progress.getCheckIntervalSeconds()));
+        submissionUploadProgressRepository.save(progress);
+    }
+
+    @Override
+    public void destroy() {
+        // Checks not completed by then are claimed again once their claim expires
+        executor.shutdownNow();
+    }
+}
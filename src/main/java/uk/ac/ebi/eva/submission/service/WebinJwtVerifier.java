@@ -0,0 +1,214 @@
+package uk.ac.ebi.eva.submission.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import uk.ac.ebi.eva.submission.util.JwtUtils;
+import uk.ac.ebi.eva.submission.util.Utils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Verifies Webin JWTs locally against the keys published in the Webin JWKS, so that authenticating a request does not
+ * need a call to the Webin user info endpoint.
+ * The key set is fetched on first use, refreshed in the background and re-fetched (at most once a minute) when a token
+ * is signed with a key id we do not know yet.
+ * Local verification is only enabled when webin.jwks.url is configured. The issuer and the audience are only checked
+ * when webin.token.issuer and webin.token.audience are configured.
+ */
+@Service
+public class WebinJwtVerifier {
+    private final Logger logger = LoggerFactory.getLogger(WebinJwtVerifier.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final long CLOCK_SKEW_SECONDS = 30;
+
+    private static final long MIN_UNKNOWN_KID_REFRESH_INTERVAL_MS = 60 * 1000;
+
+    private static final Map<String, String> SIGNATURE_ALGORITHMS = new HashMap<>();
+
+    static {
+        SIGNATURE_ALGORITHMS.put("RS256", "SHA256withRSA");
+        SIGNATURE_ALGORITHMS.put("RS384", "SHA384withRSA");
+        SIGNATURE_ALGORITHMS.put("RS512", "SHA512withRSA");
+    }
+
+    private final RestTemplate restTemplate;
+
+    private final String jwksUrl;
+
+    private final String tokenIssuer;
+
+    private final String tokenAudience;
+
+    private final AtomicReference<Map<String, PublicKey>> keys = new AtomicReference<>();
+
+    private volatile long lastRefreshTime;
+
+    public WebinJwtVerifier(@Qualifier("webinRestTemplate") RestTemplate restTemplate,
+                            @Value("${webin.jwks.url:}") String jwksUrl,
+                            @Value("${webin.token.issuer:}") String tokenIssuer,
+                            @Value("${webin.token.audience:}") String tokenAudience) {
+        this.restTemplate = restTemplate;
+        this.jwksUrl = Utils.getOptionalSetting(jwksUrl);
+        this.tokenIssuer = Utils.getOptionalSetting(tokenIssuer);
+        this.tokenAudience = Utils.getOptionalSetting(tokenAudience);
+    }
+
+    public boolean isEnabled() {
+        return !jwksUrl.isEmpty();
+    }
+
+    /**
+     * Returns the claims of the token if its signature, expiry, issuer and audience are valid, null otherwise.
+     * Throws an {@link IllegalStateException} if the key set could not be loaded at all, in which case the caller
+     * cannot tell whether the token is valid.
+     */
+    public JsonNode verify(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        JsonNode header;
+        try {
+            header = MAPPER.readTree(decoder.decode(parts[0]));
+        } catch (Exception e) {
+            logger.warn("Webin token has an invalid header: {}", e.getMessage());
+            return null;
+        }
+        String signatureAlgorithm = SIGNATURE_ALGORITHMS.get(header.path("alg").asText());
+        if (signatureAlgorithm == null) {
+            logger.warn("Webin token signed with unsupported algorithm {}", header.path("alg").asText());
+            return null;
+        }
+        PublicKey publicKey = getKey(header.path("kid").asText());
+        if (publicKey == null) {
+            logger.warn("Webin token signed with unknown key {}", header.path("kid").asText());
+            return null;
+        }
+
+        try {
+            Signature signature = Signature.getInstance(signatureAlgorithm);
+            signature.initVerify(publicKey);
+            signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            if (!signature.verify(decoder.decode(parts[2]))) {
+                logger.warn("Webin token signature verification failed");
+                return null;
+            }
+            JsonNode claims = MAPPER.readTree(decoder.decode(parts[1]));
+            return areClaimsValid(claims) ? claims : null;
+        } catch (Exception e) {
+            logger.warn("Webin token verification failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean areClaimsValid(JsonNode claims) {
+        long now = System.currentTimeMillis() / 1000;
+        if (!claims.path("exp").canConvertToLong() || claims.get("exp").asLong() + CLOCK_SKEW_SECONDS < now) {
+            logger.warn("Webin token has expired");
+            return false;
+        }
+        if (claims.path("nbf").canConvertToLong() && claims.get("nbf").asLong() - CLOCK_SKEW_SECONDS > now) {
+            logger.warn("Webin token is not valid yet");
+            return false;
+        }
+        if (!tokenIssuer.isEmpty() && !tokenIssuer.equals(claims.path("iss").asText())) {
+            logger.warn("Webin token has unexpected issuer {}", claims.path("iss").asText());
+            return false;
+        }
+        if (!tokenAudience.isEmpty() && !JwtUtils.hasAudience(claims, tokenAudience)) {
+            logger.warn("Webin token was not issued for {}", tokenAudience);
+            return false;
+        }
+        return true;
+    }
+
+    private PublicKey getKey(String kid) {
+        Map<String, PublicKey> currentKeys = keys.get();
+        if (currentKeys == null) {
+            if (System.currentTimeMillis() - lastRefreshTime < MIN_UNKNOWN_KID_REFRESH_INTERVAL_MS) {
+                // the last attempt failed recently, don't hammer the JWKS endpoint on every request
+                throw new IllegalStateException("Webin JWKS is not available");
+            }
+            try {
+                currentKeys = refreshKeys();
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not load Webin JWKS: " + e.getMessage(), e);
+            }
+        }
+        PublicKey publicKey = currentKeys.get(kid);
+        if (publicKey == null && System.currentTimeMillis() - lastRefreshTime > MIN_UNKNOWN_KID_REFRESH_INTERVAL_MS) {
+            // keys might have been rotated since we last fetched them
+            try {
+                publicKey = refreshKeys().get(kid);
+            } catch (Exception e) {
+                logger.error("Could not refresh Webin JWKS: {}", e.getMessage());
+            }
+        }
+        return publicKey;
+    }
+
+    // Keys are rotated rarely, refreshing once an hour is enough to pick up new ones ahead of their use
+    @Scheduled(fixedDelay = 60 * 60 * 1000)
+    public void scheduledRefreshKeys() {
+        if (isEnabled()) {
+            try {
+                refreshKeys();
+            } catch (Exception e) {
+                logger.error("Could not refresh Webin JWKS, keeping the current keys: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized Map<String, PublicKey> refreshKeys() {
+        Map<String, PublicKey> currentKeys = keys.get();
+        // another thread might have refreshed the keys while we were waiting for the lock
+        if (currentKeys != null && System.currentTimeMillis() - lastRefreshTime < MIN_UNKNOWN_KID_REFRESH_INTERVAL_MS) {
+            return currentKeys;
+        }
+        lastRefreshTime = System.currentTimeMillis();
+        Map<String, PublicKey> newKeys = parseJwks(restTemplate.getForObject(jwksUrl, String.class));
+        logger.info("Loaded {} keys from Webin JWKS", newKeys.size());
+        keys.set(newKeys);
+        return newKeys;
+    }
+
+    private Map<String, PublicKey> parseJwks(String jwks) {
+        Map<String, PublicKey> parsedKeys = new HashMap<>();
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            for (JsonNode key : MAPPER.readTree(jwks).path("keys")) {
+                if (!"RSA".equals(key.path("kty").asText()) || "enc".equals(key.path("use").asText())) {
+                    continue;
+                }
+                BigInteger modulus = new BigInteger(1, decoder.decode(key.path("n").asText()));
+                BigInteger exponent = new BigInteger(1, decoder.decode(key.path("e").asText()));
+                parsedKeys.put(key.path("kid").asText(),
+                        keyFactory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not parse Webin JWKS", e);
+        }
+        return Collections.unmodifiableMap(parsedKeys);
+    }
+}
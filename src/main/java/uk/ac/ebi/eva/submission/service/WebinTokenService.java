@@ -1,13 +1,19 @@
 package uk.ac.ebi.eva.submission.service;
 
-import com.google.gson.Gson;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
 import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
 import uk.ac.ebi.eva.submission.model.WebinSubmissionContact;
 import uk.ac.ebi.eva.submission.model.WebinUserInfo;
+import uk.ac.ebi.eva.submission.util.ExpiringLruCache;
+import uk.ac.ebi.eva.submission.util.Utils;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,28 +23,93 @@ import java.util.stream.Collectors;
 public class WebinTokenService {
     private final Logger logger = LoggerFactory.getLogger(WebinTokenService.class);
 
+    private static final ObjectReader USER_INFO_READER = new ObjectMapper().readerFor(WebinUserInfo.class);
+
     @Value("${webin.userinfo.url}")
     private String userInfoUrl;
 
+    @Value("${webin.token.issuer:}")
+    private String tokenIssuer;
+
+    @Value("${webin.token.accountClaim:sub}")
+    private String accountClaim;
+
+    @Value("${webin.contactCache.ttlSeconds:3600}")
+    private long contactCacheTtlSeconds;
+
+    private final WebinJwtVerifier webinJwtVerifier;
+
+    private final RestTemplate restTemplate;
+
+    // Contact details of the accounts seen recently, used when tokens are verified locally
+    private final ExpiringLruCache<String, SubmissionAccount> accountCache = new ExpiringLruCache<>(10000);
+
+    public WebinTokenService(WebinJwtVerifier webinJwtVerifier,
+                             @Qualifier("webinRestTemplate") RestTemplate restTemplate) {
+        this.webinJwtVerifier = webinJwtVerifier;
+        this.restTemplate = restTemplate;
+    }
+
+    public boolean isWebinToken(JsonNode claims) {
+        String issuer = Utils.getOptionalSetting(tokenIssuer);
+        return !issuer.isEmpty() && issuer.equals(claims.path("iss").asText());
+    }
+
     public SubmissionAccount getWebinUserAccountFromToken(String userToken) {
         logger.debug("Attempting Webin token validation");
-        try {
-            String restJsonResponse = TokenServiceUtil.getUserInfoRestResponse(userToken, this.userInfoUrl);
-            if (restJsonResponse == null) {
-                logger.warn("Webin token validation failed: no response from user info endpoint");
-                return null;
+        if (webinJwtVerifier.isEnabled()) {
+            try {
+                return getWebinUserAccountFromVerifiedToken(userToken);
+            } catch (IllegalStateException e) {
+                logger.warn("Webin token could not be verified locally, using user info endpoint: {}", e.getMessage());
             }
-            return createWebinUserAccount(restJsonResponse);
+        }
+        return getWebinUserAccountFromUserInfo(userToken);
+    }
+
+    private SubmissionAccount getWebinUserAccountFromVerifiedToken(String userToken) {
+        JsonNode claims = webinJwtVerifier.verify(userToken);
+        if (claims == null || !claims.hasNonNull(accountClaim)) {
+            logger.warn("Webin token validation failed: token could not be verified");
+            return null;
+        }
+        String accountId = claims.get(accountClaim).asText();
+        SubmissionAccount submissionAccount = accountCache.get(accountId);
+        if (submissionAccount != null) {
+            return submissionAccount;
+        }
+
+        // Contact details are not part of the token, fetch them once for this account
+        submissionAccount = getWebinUserAccountFromUserInfo(userToken);
+        if (submissionAccount == null) {
+            return null;
+        }
+        if (!accountId.equals(submissionAccount.getUserId())) {
+            logger.warn("Webin token validation failed: token issued to {} but user info is for {}", accountId,
+                    submissionAccount.getUserId());
+            return null;
+        }
+        accountCache.put(accountId, submissionAccount, contactCacheTtlSeconds * 1000);
+        return submissionAccount;
+    }
+
+    // Throws an UpstreamUnavailableException if the user info endpoint can't tell whether the token is valid
+    private SubmissionAccount getWebinUserAccountFromUserInfo(String userToken) {
+        WebinUserInfo webinUserInfo = TokenServiceUtil.getUserInfo(restTemplate, userToken, this.userInfoUrl,
+                USER_INFO_READER);
+        if (webinUserInfo == null) {
+            logger.warn("Webin token validation failed: token rejected by user info endpoint");
+            return null;
+        }
+        try {
+            return createWebinUserAccount(webinUserInfo);
         } catch (Exception e) {
             logger.warn("Webin token validation failed: {}", e.getMessage());
             return null;
         }
     }
 
-    public SubmissionAccount createWebinUserAccount(String jsonResponse) {
-        // convert json response to WebinUserInfo object
-        WebinUserInfo webinUserInfo = new Gson().fromJson(jsonResponse, WebinUserInfo.class);
-
+    public SubmissionAccount createWebinUserAccount(WebinUserInfo webinUserInfo) {
         String accountId = webinUserInfo.getSubmissionAccountId();
 
         WebinSubmissionContact mainContact;
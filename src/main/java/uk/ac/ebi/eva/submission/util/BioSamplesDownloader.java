@@ -1,7 +1,6 @@
 package uk.ac.ebi.eva.submission.util;
 
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
@@ -11,18 +10,26 @@ import java.util.regex.Pattern;
 public class BioSamplesDownloader {
     private final RestTemplate restTemplate;
 
+    private final UpstreamCallExecutor upstreamCallExecutor;
+
     private static final String BIO_SAMPLES_BASE_URL = "https://www.ebi.ac.uk/biosamples/samples/";
     private static final Pattern BIOSAMPLES_ACCESSION = Pattern.compile("^SAM[END][AG]?[0-9]+$");
 
-    public BioSamplesDownloader(RestTemplate restTemplate) {
+    public BioSamplesDownloader(@Qualifier("bioSamplesRestTemplate") RestTemplate restTemplate,
+                                UpstreamCallExecutor upstreamCallExecutor) {
         this.restTemplate = restTemplate;
+        this.upstreamCallExecutor = upstreamCallExecutor;
     }
 
-    @Retryable(value = Exception.class, maxAttempts = 5, backoff = @Backoff(delay = 2000, multiplier = 2))
-    public String downloadSampleFromBioSamples(String accession) {
+    /**
+     * Failed downloads are retried until the deadline of the request is too close.
+     */
+    public String downloadSampleFromBioSamples(String accession, Deadline deadline) {
         if (!BIOSAMPLES_ACCESSION.matcher(accession).matches()) {
             throw new IllegalArgumentException("Invalid BioSamples accession format: " + accession);
         }
-        return restTemplate.getForObject(BIO_SAMPLES_BASE_URL + accession + ".json", String.class);
+        return upstreamCallExecutor.call("biosamples",
+                () -> restTemplate.getForObject(BIO_SAMPLES_BASE_URL + accession + ".json", String.class),
+                deadline);
     }
 }
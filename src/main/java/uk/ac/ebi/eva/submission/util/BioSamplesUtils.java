@@ -2,28 +2,145 @@ package uk.ac.ebi.eva.submission.util;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import uk.ac.ebi.eva.submission.entity.BioSampleTaxonomy;
+import uk.ac.ebi.eva.submission.repository.BioSampleTaxonomyRepository;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retrieves the taxonomy of BioSamples samples. Taxonomies are cached in memory and in the biosample_taxonomy table
+ * (see {@link PersistentLookupCache}), so that samples seen in previous submissions are not downloaded again until
+ * their refresh is due. Samples that do not exist or have no taxonomy are cached as well, with a shorter refresh.
+ * Metrics: biosamples.taxonomy.lookups (tagged with where the taxonomy was found).
+ */
 @Component
-public class BioSamplesUtils {
+public class BioSamplesUtils implements DisposableBean {
     private final Logger logger = LoggerFactory.getLogger(BioSamplesUtils.class);
 
+    public static final String LOOKUPS_METRIC = "biosamples.taxonomy.lookups";
+
+    private static final String HUMAN_TAXONOMY_ID = "9606";
+
     private final BioSamplesDownloader bioSamplesDownloader;
 
-    public BioSamplesUtils(BioSamplesDownloader bioSamplesDownloader) {
+    private final PersistentLookupCache<String> taxonomyCache;
+
+    private final boolean concurrentLookups;
+
+    private final ThreadPoolExecutor executor;
+
+    public BioSamplesUtils(BioSamplesDownloader bioSamplesDownloader,
+                           BioSampleTaxonomyRepository bioSampleTaxonomyRepository,
+                           @Value("${biosamples.lookup.concurrent:true}") boolean concurrentLookups,
+                           @Value("${biosamples.lookup.threads:10}") int threads,
+                           @Value("${biosamples.lookup.queueSize:50}") int queueSize,
+                           @Value("${biosamples.taxonomy.cache.maxSize:10000}") int cacheMaxSize,
+                           @Value("${biosamples.taxonomy.cache.refreshDays:90}") long refreshDays,
+                           @Value("${biosamples.taxonomy.cache.negativeRefreshHours:24}") long negativeRefreshHours,
+                           MeterRegistry meterRegistry) {
         this.bioSamplesDownloader = bioSamplesDownloader;
+        Duration refreshAfter = Duration.ofDays(refreshDays);
+        Duration negativeRefreshAfter = Duration.ofHours(negativeRefreshHours);
+        this.taxonomyCache = new PersistentLookupCache<>("taxonomy of sample", cacheMaxSize,
+                accession -> bioSampleTaxonomyRepository.findById(accession)
+                        .map(taxonomy -> new PersistentLookupCache.StoredValue<>(accession, taxonomy.getTaxId(),
+                                taxonomy.getFetchTime()))
+                        .orElse(null),
+                taxonomy -> bioSampleTaxonomyRepository.save(new BioSampleTaxonomy(taxonomy.getKey(),
+                        taxonomy.getValue(), taxonomy.getFetchTime())),
+                taxId -> taxId.isEmpty() ? negativeRefreshAfter : refreshAfter,
+                LOOKUPS_METRIC, meterRegistry);
+        this.concurrentLookups = concurrentLookups;
+        this.executor = ThreadPools.newBoundedThreadPool("biosamples-lookup", threads, queueSize,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Returns the taxId of the sample, or an empty string if the sample does not exist, has no taxonomy or could not
+     * be retrieved.
+     */
+    public String getTaxIdFromBioSamples(String accession, Deadline deadline) {
+        return taxonomyCache.get(accession, key -> downloadTaxId(key, deadline), "");
+    }
+
+    public void evictTaxonomyCache() {
+        taxonomyCache.clear();
     }
 
-    public String getTaxIdFromBioSamples(String accession) {
+    private String downloadTaxId(String accession, Deadline deadline) throws Exception {
+        String responseBody;
         try {
-            String responseBody = bioSamplesDownloader.downloadSampleFromBioSamples(accession);
-            JsonNode json = new ObjectMapper().readTree(responseBody);
-            return json.path("taxId").asText("");
-        } catch (Exception e) {
-            logger.error("Error retrieving taxId from BioSamples for accession {}", accession, e);
+            responseBody = bioSamplesDownloader.downloadSampleFromBioSamples(accession, deadline);
+        } catch (IllegalArgumentException | HttpClientErrorException.NotFound e) {
+            logger.warn("Sample {} not found in BioSamples: {}", accession, e.getMessage());
             return "";
         }
+        JsonNode json = new ObjectMapper().readTree(responseBody);
+        return json.path("taxId").asText("");
+    }
+
+    /**
+     * Returns whether any of the samples is human according to BioSamples. Samples that cannot be retrieved before
+     * the deadline are not considered human.
+     * With concurrent lookups, all samples are looked up at the same time and the lookups still in progress are
+     * cancelled as soon as a human sample is found.
+     */
+    public boolean isAnyHumanSample(List<String> accessions, Deadline deadline) {
+        if (!concurrentLookups || accessions.size() < 2) {
+            for (String accession : accessions) {
+                if (HUMAN_TAXONOMY_ID.equals(getTaxIdFromBioSamples(accession, deadline))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        CompletionService<String> lookups = new ExecutorCompletionService<>(executor);
+        List<Future<String>> futures = new ArrayList<>();
+        try {
+            for (String accession : accessions) {
+                futures.add(lookups.submit(() -> getTaxIdFromBioSamples(accession, deadline)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Future<String> lookup = lookups.poll(Math.max(deadline.remainingMillis(), 0), TimeUnit.MILLISECONDS);
+                if (lookup == null) {
+                    logger.warn("BioSamples lookups of {} did not complete before the deadline", accessions);
+                    return false;
+                }
+                if (HUMAN_TAXONOMY_ID.equals(lookup.get())) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            // Lookups handle their own errors, this is not expected
+            logger.error("Error retrieving taxId from BioSamples for accessions {}", accessions, e.getCause());
+            return false;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
     }
 }
@@ -1,42 +1,37 @@
 package uk.ac.ebi.eva.submission.util;
 
 
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.StringReader;
 import java.util.regex.Pattern;
 
 @Component
 public class EnaDownloader {
     private final RestTemplate restTemplate;
 
+    private final UpstreamCallExecutor upstreamCallExecutor;
+
     private static final String ENA_BASE_URL = "https://www.ebi.ac.uk/ena/browser/api/xml/";
     private static final Pattern ENA_ACCESSION = Pattern.compile("^[A-Z]{1,6}[0-9]{1,9}$");
 
-    public EnaDownloader(RestTemplate restTemplate) {
+    public EnaDownloader(@Qualifier("enaRestTemplate") RestTemplate restTemplate,
+                         UpstreamCallExecutor upstreamCallExecutor) {
         this.restTemplate = restTemplate;
+        this.upstreamCallExecutor = upstreamCallExecutor;
     }
 
-    @Retryable(value = Exception.class, maxAttempts = 5, backoff = @Backoff(delay = 2000, multiplier = 2))
-    public Document downloadXmlFromEna(String projectAccession) throws Exception {
+    /**
+     * Returns the XML of the project, to be parsed with {@link EnaProjectXmlParser}. Failed downloads are retried
+     * until the deadline of the request is too close.
+     */
+    public String downloadProjectXml(String projectAccession, Deadline deadline) {
         if (!ENA_ACCESSION.matcher(projectAccession).matches()) {
             throw new IllegalArgumentException("Invalid ENA accession format: " + projectAccession);
         }
-        String responseBody = restTemplate.getForObject(ENA_BASE_URL + projectAccession, String.class);
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-        factory.setXIncludeAware(false);
-        factory.setExpandEntityReferences(false);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.parse(new InputSource(new StringReader(responseBody)));
+        return upstreamCallExecutor.call("ena",
+                () -> restTemplate.getForObject(ENA_BASE_URL + projectAccession, String.class),
+                deadline);
     }
 }
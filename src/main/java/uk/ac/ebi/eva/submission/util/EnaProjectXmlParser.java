@@ -0,0 +1,105 @@
+package uk.ac.ebi.eva.submission.util;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.DESCRIPTION;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TAXONOMY_ID;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TITLE;
+
+/**
+ * Extracts the title, description and taxonomy from an ENA project XML in a single streaming pass, stopping as soon
+ * as all of them have been read. For each field the text of the first matching element is returned, or an empty
+ * string if there is none.
+ * Documents with a DOCTYPE are rejected and external entities are never resolved.
+ */
+public class EnaProjectXmlParser {
+
+    private static final String TITLE_PATH = "/PROJECT_SET/PROJECT/TITLE";
+    private static final String DESCRIPTION_PATH = "/PROJECT_SET/PROJECT/DESCRIPTION";
+    private static final String TAXONOMY_PATH = "/PROJECT_SET/PROJECT/SUBMISSION_PROJECT/ORGANISM/TAXON_ID";
+
+    // Configured once and only used to create readers afterwards, which is safe from several threads
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+
+    public static Map<String, String> parseProjectDetails(String projectXml) throws XMLStreamException {
+        Map<String, String> projectDetails = new HashMap<>();
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new StringReader(projectXml));
+        try {
+            List<String> path = new ArrayList<>();
+            String capturedField = null;
+            int capturedDepth = 0;
+            StringBuilder capturedText = new StringBuilder();
+            while (reader.hasNext() && projectDetails.size() < 3) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.DTD:
+                        throw new XMLStreamException("DOCTYPE is not allowed in ENA project XML");
+                    case XMLStreamConstants.START_ELEMENT:
+                        path.add(reader.getLocalName());
+                        if (capturedField == null) {
+                            capturedField = getField(path);
+                            if (capturedField != null && projectDetails.containsKey(capturedField)) {
+                                capturedField = null;
+                            }
+                            capturedDepth = path.size();
+                            capturedText.setLength(0);
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (capturedField != null) {
+                            capturedText.append(reader.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (capturedField != null && path.size() == capturedDepth) {
+                            projectDetails.put(capturedField, capturedText.toString());
+                            capturedField = null;
+                        }
+                        path.remove(path.size() - 1);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        projectDetails.putIfAbsent(TITLE, "");
+        projectDetails.putIfAbsent(DESCRIPTION, "");
+        projectDetails.putIfAbsent(TAXONOMY_ID, "");
+        return projectDetails;
+    }
+
+    private static String getField(List<String> path) {
+        if (path.size() != 3 && path.size() != 5) {
+            return null;
+        }
+        switch ("/" + String.join("/", path)) {
+            case TITLE_PATH:
+                return TITLE;
+            case DESCRIPTION_PATH:
+                return DESCRIPTION;
+            case TAXONOMY_PATH:
+                return TAXONOMY_ID;
+            default:
+                return null;
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package uk.ac.ebi.eva.submission.util;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
+import org.springframework.web.client.HttpClientErrorException;
+import uk.ac.ebi.eva.submission.entity.EnaProjectDetails;
+import uk.ac.ebi.eva.submission.repository.EnaProjectDetailsRepository;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,62 +18,84 @@ import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionControl
 import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TAXONOMY_ID;
 import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TITLE;
 
+/**
+ * Retrieves the details of ENA projects. Project details are cached in memory and in the ena_project_details table
+ * (see {@link PersistentLookupCache}) until their TTL expires. Projects not found in ENA are cached as well, with a
+ * shorter TTL. If ENA can't be reached, the details previously stored in the table are returned however old they are.
+ * The table is not used if ena.project.cache.persistent is false, details are then only cached in memory.
+ * Metrics: ena.project.lookups (tagged with where the project details were found).
+ */
 @Component
 public class EnaUtils {
     private final Logger logger = LoggerFactory.getLogger(EnaUtils.class);
 
+    public static final String LOOKUPS_METRIC = "ena.project.lookups";
+
     private final EnaDownloader enaDownloader;
 
-    public EnaUtils(EnaDownloader enaDownloader) {
+    private final PersistentLookupCache<Map<String, String>> projectDetailsCache;
+
+    public EnaUtils(EnaDownloader enaDownloader, EnaProjectDetailsRepository enaProjectDetailsRepository,
+                    @Value("${ena.project.cache.maxSize:1000}") int cacheMaxSize,
+                    @Value("${ena.project.cache.persistent:true}") boolean persistentCache,
+                    @Value("${ena.project.cache.ttlMinutes:60}") long ttlMinutes,
+                    @Value("${ena.project.cache.notFoundTtlMinutes:5}") long notFoundTtlMinutes,
+                    MeterRegistry meterRegistry) {
         this.enaDownloader = enaDownloader;
+        Duration ttl = Duration.ofMinutes(ttlMinutes);
+        Duration notFoundTtl = Duration.ofMinutes(notFoundTtlMinutes);
+        this.projectDetailsCache = new PersistentLookupCache<>("details of project", cacheMaxSize,
+                projectAccession -> persistentCache ? findStoredProjectDetails(enaProjectDetailsRepository,
+                        projectAccession) : null,
+                projectDetails -> {
+                    if (persistentCache) {
+                        enaProjectDetailsRepository.save(new EnaProjectDetails(projectDetails.getKey(),
+                                projectDetails.getValue().get(TITLE), projectDetails.getValue().get(DESCRIPTION),
+                                projectDetails.getValue().get(TAXONOMY_ID), projectDetails.getFetchTime()));
+                    }
+                },
+                projectDetails -> isNotFound(projectDetails) ? notFoundTtl : ttl,
+                LOOKUPS_METRIC, meterRegistry);
     }
 
-    public Map<String, String> getProjectDetailsFromEna(String projectAccession) {
-        Map<String, String> projectDetails = new HashMap<>();
-        projectDetails.put(TITLE, "");
-        projectDetails.put(DESCRIPTION, "");
-        projectDetails.put(TAXONOMY_ID, "");
-        try {
-            Document xmlDoc = enaDownloader.downloadXmlFromEna(projectAccession);
-            projectDetails.put(TITLE, getProjectTitle(xmlDoc));
-            projectDetails.put(DESCRIPTION, getProjectDescription(xmlDoc));
-            projectDetails.put(TAXONOMY_ID, getProjectTaxonomy(xmlDoc));
-        } catch (Exception e) {
-            logger.error("Error while getting project details from ENA for project {}", projectAccession, e);
-        }
-        return projectDetails;
+    public Map<String, String> getProjectDetailsFromEna(String projectAccession, Deadline deadline) {
+        return new HashMap<>(projectDetailsCache.get(projectAccession,
+                accession -> downloadProjectDetails(accession, deadline), createProjectDetails("", "", "")));
     }
 
-    private String getProjectTitle(Document xmlDoc) throws XPathExpressionException {
-        XPath xpath = XPathFactory.newInstance().newXPath();
-        String projectTitlePathInXML = "/PROJECT_SET/PROJECT/TITLE";
-        NodeList projectTitleNode = (NodeList) xpath.evaluate(projectTitlePathInXML, xmlDoc, XPathConstants.NODESET);
-        if (projectTitleNode.getLength() > 0) {
-            return projectTitleNode.item(0).getTextContent();
-        }
-
-        return "";
+    public void evictProjectDetailsCache() {
+        projectDetailsCache.clear();
     }
 
-    private String getProjectDescription(Document xmlDoc) throws XPathExpressionException {
-        XPath xpath = XPathFactory.newInstance().newXPath();
-        String projectDescriptionPathInXML = "/PROJECT_SET/PROJECT/DESCRIPTION";
-        NodeList projectDescriptionNode = (NodeList) xpath.evaluate(projectDescriptionPathInXML, xmlDoc, XPathConstants.NODESET);
-        if (projectDescriptionNode.getLength() > 0) {
-            return projectDescriptionNode.item(0).getTextContent();
-        }
+    private static PersistentLookupCache.StoredValue<Map<String, String>> findStoredProjectDetails(
+            EnaProjectDetailsRepository enaProjectDetailsRepository, String projectAccession) {
+        return enaProjectDetailsRepository.findById(projectAccession)
+                .map(projectDetails -> new PersistentLookupCache.StoredValue<>(projectAccession,
+                        createProjectDetails(projectDetails.getTitle(), projectDetails.getDescription(),
+                                projectDetails.getTaxId()),
+                        projectDetails.getFetchTime()))
+                .orElse(null);
+    }
 
-        return "";
+    private static Map<String, String> createProjectDetails(String title, String description, String taxonomy) {
+        Map<String, String> projectDetails = new HashMap<>();
+        projectDetails.put(TITLE, title);
+        projectDetails.put(DESCRIPTION, description);
+        projectDetails.put(TAXONOMY_ID, taxonomy);
+        return Collections.unmodifiableMap(projectDetails);
     }
 
-    private String getProjectTaxonomy(Document xmlDoc) throws XPathExpressionException {
-        XPath xpath = XPathFactory.newInstance().newXPath();
-        String projectTaxonomyPathInXML = "/PROJECT_SET/PROJECT/SUBMISSION_PROJECT/ORGANISM/TAXON_ID";
-        NodeList projectTaxonomyNode = (NodeList) xpath.evaluate(projectTaxonomyPathInXML, xmlDoc, XPathConstants.NODESET);
-        if (projectTaxonomyNode.getLength() > 0) {
-            return projectTaxonomyNode.item(0).getTextContent();
+    private Map<String, String> downloadProjectDetails(String projectAccession, Deadline deadline) throws Exception {
+        try {
+            String projectXml = enaDownloader.downloadProjectXml(projectAccession, deadline);
+            return Collections.unmodifiableMap(EnaProjectXmlParser.parseProjectDetails(projectXml));
+        } catch (IllegalArgumentException | HttpClientErrorException.NotFound e) {
+            logger.warn("Project {} not found in ENA: {}", projectAccession, e.getMessage());
+            return createProjectDetails("", "", "");
         }
+    }
 
-        return "";
+    private static boolean isNotFound(Map<String, String> projectDetails) {
+        return projectDetails.values().stream().allMatch(String::isEmpty);
     }
 }
@@ -0,0 +1,75 @@
+package uk.ac.ebi.eva.submission.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Size-bounded, access-ordered cache where every entry carries its own expiry time.
+ * Once the cache is full the least recently used entry is evicted. A max size of 0 disables caching.
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final int maxSize;
+
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    public ExpiringLruCache(int maxSize) {
+        this(maxSize, System::currentTimeMillis);
+    }
+
+    public ExpiringLruCache(int maxSize, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                return size() > ExpiringLruCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= clock.getAsLong()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value, long ttlMillis) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            return;
+        }
+        entries.put(key, new CacheEntry<>(value, clock.getAsLong() + ttlMillis));
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class CacheEntry<V> {
+        private final V value;
+
+        private final long expiresAt;
+
+        private CacheEntry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
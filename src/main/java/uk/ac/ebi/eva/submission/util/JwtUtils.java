@@ -0,0 +1,69 @@
+package uk.ac.ebi.eva.submission.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Base64;
+
+/**
+ * Helpers to read the claims of a JWT without verifying its signature. Values returned from here must only be
+ * used as hints (e.g. for cache expiry or to pick the provider that validates the token), never to establish the
+ * identity of the user.
+ */
+public class JwtUtils {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static JsonNode decodeHeader(String token) {
+        return decodePart(token, 0);
+    }
+
+    public static JsonNode decodePayload(String token) {
+        return decodePart(token, 1);
+    }
+
+    /**
+     * Returns the payload of the token if it is a well-formed JWT, or null if the token is opaque.
+     */
+    public static JsonNode decodeClaimsIfJwt(String token) {
+        JsonNode header = decodeHeader(token);
+        if (header == null || !header.hasNonNull("alg")) {
+            return null;
+        }
+        return decodePayload(token);
+    }
+
+    public static boolean hasAudience(JsonNode claims, String audience) {
+        JsonNode aud = claims.path("aud");
+        if (aud.isArray()) {
+            for (JsonNode value : aud) {
+                if (value.asText().equals(audience)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return aud.isTextual() && aud.asText().equals(audience);
+    }
+
+    public static Long getExpiryEpochSeconds(String token) {
+        JsonNode payload = decodePayload(token);
+        if (payload == null || !payload.path("exp").canConvertToLong()) {
+            return null;
+        }
+        return payload.get("exp").asLong();
+    }
+
+    private static JsonNode decodePart(String token, int index) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            JsonNode part = MAPPER.readTree(Base64.getUrlDecoder().decode(parts[index]));
+            return part != null && part.isObject() ? part : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
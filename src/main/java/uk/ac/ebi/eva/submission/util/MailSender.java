@@ -1,50 +1,58 @@
 package uk.ac.ebi.eva.submission.util;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Component;
 
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class MailSender {
-    private final Logger logger = LoggerFactory.getLogger(MailSender.class);
     private final JavaMailSender javaMailSender;
-    private final String DEFAULT_SENDER = "eva-noreply@ebi.ac.uk";
+    public static final String DEFAULT_SENDER = "eva-noreply@ebi.ac.uk";
 
     @Autowired
     MailSender(JavaMailSender javaMailSender) {
         this.javaMailSender = javaMailSender;
     }
 
-    public void sendEmail(String to, String subject, String body) {
-        sendEmail(DEFAULT_SENDER, to, subject, body);
-    }
-
-    public void sendEmail(String from, String to, String subject, String body) {
-        sendEmail(from, to, Collections.emptyList(), subject, body);
-    }
-
-    public void sendEmail(String from, String to, List<String> ccList, String subject, String body) {
+    public MimeMessage createEmail(String from, String to, List<String> ccList, String subject, String body)
+            throws MessagingException {
         MimeMessage message = javaMailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message);
+        helper.setFrom(from);
+        helper.setTo(to);
+        if (ccList != null && !ccList.isEmpty()) {
+            helper.setCc(ccList.toArray(new String[0]));
+        }
+        helper.setSubject(subject);
+        helper.setText(body, true);
+        return message;
+    }
+
+    /**
+     * Sends the emails over a single connection to the mail server. Returns the emails that could not be sent, with
+     * the reason why.
+     */
+    public Map<MimeMessage, Exception> sendEmails(List<MimeMessage> messages) {
+        Map<MimeMessage, Exception> failedMessages = new HashMap<>();
         try {
-            helper.setFrom(from);
-            helper.setTo(to);
-            if (ccList != null && !ccList.isEmpty()) {
-                helper.setCc(ccList.toArray(new String[0]));
+            javaMailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            e.getFailedMessages().forEach((message, exception) -> failedMessages.put((MimeMessage) message, exception));
+            if (failedMessages.isEmpty()) {
+                messages.forEach(message -> failedMessages.put(message, e));
             }
-            helper.setSubject(subject);
-            helper.setText(body, true);
-            javaMailSender.send(message);
-        } catch (MessagingException e) {
-            logger.error("Error sending mail: " + e);
+        } catch (MailException e) {
+            messages.forEach(message -> failedMessages.put(message, e));
         }
+        return failedMessages;
     }
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+package uk.ac.ebi.eva.submission.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Two-tier cache for values looked up from an upstream service: values are cached in memory and in a database table,
+ * so that they survive restarts, until their refresh is due. Errors retrieving a value are not cached, the value
+ * previously stored in the table is returned instead if there is one. The table only saves upstream calls, lookups
+ * carry on without it if the database is unavailable.
+ * Metrics: the given lookups metric, tagged with where the value was found (memory, database or downloaded).
+ */
+public class PersistentLookupCache<V> {
+    private final Logger logger = LoggerFactory.getLogger(PersistentLookupCache.class);
+
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load(String key) throws Exception;
+    }
+
+    private final String description;
+
+    private final ExpiringLruCache<String, V> memoryCache;
+
+    private final Function<String, StoredValue<V>> storedValueReader;
+
+    private final Consumer<StoredValue<V>> storedValueWriter;
+
+    private final Function<V, Duration> refreshAfter;
+
+    private final Counter memoryLookups;
+
+    private final Counter databaseLookups;
+
+    private final Counter downloadedLookups;
+
+    /**
+     * @param description       what is looked up, used in log messages, e.g. "taxonomy of sample"
+     * @param storedValueReader returns the value stored in the table for a key, or null
+     * @param storedValueWriter stores a value in the table
+     * @param refreshAfter      how long a value can be used before it is looked up again
+     */
+    public PersistentLookupCache(String description, int maxSize, Function<String, StoredValue<V>> storedValueReader,
+                                 Consumer<StoredValue<V>> storedValueWriter, Function<V, Duration> refreshAfter,
+                                 String lookupsMetric, MeterRegistry meterRegistry) {
+        this.description = description;
+        this.memoryCache = new ExpiringLruCache<>(maxSize);
+        this.storedValueReader = storedValueReader;
+        this.storedValueWriter = storedValueWriter;
+        this.refreshAfter = refreshAfter;
+        this.memoryLookups = meterRegistry.counter(lookupsMetric, "result", "memory");
+        this.databaseLookups = meterRegistry.counter(lookupsMetric, "result", "database");
+        this.downloadedLookups = meterRegistry.counter(lookupsMetric, "result", "downloaded");
+    }
+
+    /**
+     * Returns the cached value for the key, loading it when it is not cached or its refresh is due. If the value
+     * cannot be loaded, the value previously stored is returned, or the fallback if there is none.
+     */
+    public V get(String key, Loader<V> loader, V fallback) {
+        V value = memoryCache.get(key);
+        if (value != null) {
+            memoryLookups.increment();
+            return value;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        StoredValue<V> storedValue = findStoredValue(key);
+        if (storedValue != null) {
+            LocalDateTime refreshTime = storedValue.getFetchTime().plus(refreshAfter.apply(storedValue.getValue()));
+            if (refreshTime.isAfter(now)) {
+                databaseLookups.increment();
+                memoryCache.put(key, storedValue.getValue(), Duration.between(now, refreshTime).toMillis());
+                return storedValue.getValue();
+            }
+        }
+
+        try {
+            value = loader.load(key);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                logger.debug("Retrieval of the {} {} was cancelled", description, key);
+            } else if (storedValue != null) {
+                logger.warn("Could not refresh the {} {}, using the one retrieved on {}", description, key,
+                        storedValue.getFetchTime(), e);
+                return storedValue.getValue();
+            } else {
+                logger.error("Error retrieving the {} {}", description, key, e);
+            }
+            // Not cached, the error may be transient
+            return fallback;
+        }
+        downloadedLookups.increment();
+        storeValue(new StoredValue<>(key, value, now));
+        memoryCache.put(key, value, refreshAfter.apply(value).toMillis());
+        return value;
+    }
+
+    public void clear() {
+        memoryCache.clear();
+    }
+
+    private StoredValue<V> findStoredValue(String key) {
+        try {
+            return storedValueReader.apply(key);
+        } catch (DataAccessException e) {
+            logger.warn("Could not read the cached {} {}", description, key, e);
+            return null;
+        }
+    }
+
+    private void storeValue(StoredValue<V> storedValue) {
+        try {
+            storedValueWriter.accept(storedValue);
+        } catch (DataAccessException e) {
+            logger.warn("Could not cache the {} {}", description, storedValue.getKey(), e);
+        }
+    }
+
+    public static class StoredValue<V> {
+        private final String key;
+
+        private final V value;
+
+        private final LocalDateTime fetchTime;
+
+        public StoredValue(String key, V value, LocalDateTime fetchTime) {
+            this.key = key;
+            this.value = value;
+            this.fetchTime = fetchTime;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public LocalDateTime getFetchTime() {
+            return fetchTime;
+        }
+    }
+}
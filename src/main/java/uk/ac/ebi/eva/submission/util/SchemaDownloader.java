@@ -1,11 +1,10 @@
 package uk.ac.ebi.eva.submission.util;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
@@ -19,21 +18,25 @@ public class SchemaDownloader {
 
     private final RestTemplate restTemplate;
 
-    public SchemaDownloader(RestTemplate restTemplate) {
+    private final UpstreamCallExecutor upstreamCallExecutor;
+
+    public SchemaDownloader(@Qualifier("githubRestTemplate") RestTemplate restTemplate,
+                            UpstreamCallExecutor upstreamCallExecutor) {
         this.restTemplate = restTemplate;
+        this.upstreamCallExecutor = upstreamCallExecutor;
     }
 
     @Cacheable(value = "latestTagCache", key = "#tagURL")
-    @Retryable(value = Exception.class, maxAttempts = 5, backoff = @Backoff(delay = 2000, multiplier = 2))
-    public String getLatestTag(String tagURL) {
-        JsonNode tagJson = restTemplate.getForObject(tagURL, JsonNode.class);
+    public String getLatestTag(String tagURL, Deadline deadline) {
+        JsonNode tagJson = upstreamCallExecutor.call("github", () -> restTemplate.getForObject(tagURL, JsonNode.class),
+                deadline);
         return tagJson.get(0).get("name").asText();
     }
 
     @Cacheable(value = "schemaCache", key = "#schemaUrl")
-    @Retryable(value = Exception.class, maxAttempts = 5, backoff = @Backoff(delay = 2000, multiplier = 2))
-    public String loadSchemaFromGitHub(String schemaUrl) {
-        return restTemplate.getForObject(schemaUrl, String.class);
+    public String loadSchemaFromGitHub(String schemaUrl, Deadline deadline) {
+        return upstreamCallExecutor.call("github", () -> restTemplate.getForObject(schemaUrl, String.class),
+                deadline);
     }
 
     @CacheEvict(value = "latestTagCache", allEntries = true)
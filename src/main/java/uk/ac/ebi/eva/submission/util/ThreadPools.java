@@ -0,0 +1,43 @@
+package uk.ac.ebi.eva.submission.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the thread pools used for background work. Their threads are daemon threads named after the pool and
+ * numbered, e.g. upload-job-1, so that they can be told apart in thread dumps and do not hold up shutdown.
+ */
+public class ThreadPools {
+
+    private ThreadPools() {
+    }
+
+    /**
+     * Returns a pool of a fixed number of threads with a queue of the given size. Tasks that do not fit in the queue
+     * are handed to the given handler, e.g. {@link ThreadPoolExecutor.AbortPolicy} to reject them or
+     * {@link ThreadPoolExecutor.CallerRunsPolicy} to run them on the calling thread.
+     */
+    public static ThreadPoolExecutor newBoundedThreadPool(String name, int threads, int queueSize,
+                                                          RejectedExecutionHandler rejectedExecutionHandler) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                daemonThreadFactory(name), rejectedExecutionHandler);
+    }
+
+    public static ScheduledThreadPoolExecutor newScheduledThreadPool(String name, int threads) {
+        return new ScheduledThreadPoolExecutor(threads, daemonThreadFactory(name));
+    }
+
+    public static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,265 @@
+package uk.ac.ebi.eva.submission.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import uk.ac.ebi.eva.submission.exception.UpstreamUnavailableException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs calls to upstream services (ENA, BioSamples, GitHub) with retries, within a deadline.
+ * Attempts run on a bounded pool of threads and retries are scheduled on a timer after an exponential backoff, so no
+ * thread sleeps between attempts. A retry is only scheduled if the deadline leaves room for the backoff and for one
+ * more attempt, otherwise the last error is returned straight away for the caller to fall back to cached or degraded
+ * data. Callers waiting for a result never wait beyond the deadline, and the attempt in progress is cancelled when it
+ * is reached. A deadline is usually shared by all the upstream calls made for a request, so that together they stay
+ * within the time the request is given.
+ * Client errors other than 408 and 429, and invalid arguments, are not retried.
+ * Metrics: upstream.calls (tagged with the upstream and the result).
+ */
+@Component
+public class UpstreamCallExecutor implements DisposableBean {
+
+    public static final String CALLS_METRIC = "upstream.calls";
+
+    private final Logger logger = LoggerFactory.getLogger(UpstreamCallExecutor.class);
+
+    private final ThreadPoolExecutor attemptExecutor;
+
+    private final ScheduledThreadPoolExecutor retryTimer;
+
+    private final int maxAttempts;
+
+    private final long initialDelayMillis;
+
+    private final double multiplier;
+
+    private final long maxDelayMillis;
+
+    private final long minAttemptMillis;
+
+    private final MeterRegistry meterRegistry;
+
+    public UpstreamCallExecutor(@Value("${upstream.threads:20}") int threads,
+                                @Value("${upstream.queueSize:100}") int queueSize,
+                                @Value("${upstream.retry.maxAttempts:5}") int maxAttempts,
+                                @Value("${upstream.retry.initialDelayMs:2000}") long initialDelayMillis,
+                                @Value("${upstream.retry.multiplier:2}") double multiplier,
+                                @Value("${upstream.retry.maxDelayMs:16000}") long maxDelayMillis,
+                                @Value("${upstream.retry.minAttemptMs:1000}") long minAttemptMillis,
+                                MeterRegistry meterRegistry) {
+        this.attemptExecutor = ThreadPools.newBoundedThreadPool("upstream-call", threads, queueSize,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryTimer = ThreadPools.newScheduledThreadPool("upstream-retry-timer", 1);
+        this.retryTimer.setRemoveOnCancelPolicy(true);
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.multiplier = multiplier;
+        this.maxDelayMillis = maxDelayMillis;
+        this.minAttemptMillis = minAttemptMillis;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the call with retries, waiting for its result until the deadline at most. The error of the last attempt is
+     * rethrown as it is, and an {@link UpstreamUnavailableException} is thrown if there is no result by the deadline.
+     */
+    public <T> T call(String upstream, Supplier<T> call, Deadline deadline) {
+        RetryingCall<T> retryingCall = start(upstream, call, deadline);
+        try {
+            return retryingCall.result.get(Math.max(deadline.remainingMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            retryingCall.expire();
+            throw new UpstreamUnavailableException(upstream + " did not respond in time");
+        } catch (InterruptedException e) {
+            retryingCall.result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException("Interrupted while waiting for " + upstream);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UpstreamUnavailableException("Call to " + upstream + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * Runs the call with retries without waiting for it. Cancelling the returned future cancels the attempt in
+     * progress, or the next one if it is waiting for its backoff. The future fails with an
+     * {@link UpstreamUnavailableException} once the deadline is reached, which also cancels the attempt in progress.
+     */
+    public <T> CompletableFuture<T> callAsync(String upstream, Supplier<T> call, Deadline deadline) {
+        return start(upstream, call, deadline).result;
+    }
+
+    private <T> RetryingCall<T> start(String upstream, Supplier<T> call, Deadline deadline) {
+        RetryingCall<T> retryingCall = new RetryingCall<>(upstream, call, deadline);
+        try {
+            ScheduledFuture<?> expiry = retryTimer.schedule(retryingCall::expire,
+                    Math.max(deadline.remainingMillis(), 0), TimeUnit.MILLISECONDS);
+            retryingCall.result.whenComplete((value, error) -> expiry.cancel(false));
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            retryingCall.fail("rejected", new UpstreamUnavailableException("Call to " + upstream + " rejected"));
+            return retryingCall;
+        }
+        retryingCall.submitAttempt();
+        return retryingCall;
+    }
+
+    private long getDelayMillis(int attempts) {
+        return (long) Math.min(maxDelayMillis, initialDelayMillis * Math.pow(multiplier, attempts - 1));
+    }
+
+    private static boolean isRetryable(RuntimeException exception) {
+        if (exception instanceof IllegalArgumentException) {
+            return false;
+        }
+        if (exception instanceof HttpClientErrorException) {
+            HttpStatus status = ((HttpClientErrorException) exception).getStatusCode();
+            return status == HttpStatus.REQUEST_TIMEOUT || status == HttpStatus.TOO_MANY_REQUESTS;
+        }
+        return true;
+    }
+
+    private void countCall(String upstream, String result) {
+        meterRegistry.counter(CALLS_METRIC, "upstream", upstream, "result", result).increment();
+    }
+
+    private class RetryingCall<T> {
+
+        private final String upstream;
+
+        private final Supplier<T> call;
+
+        private final Deadline deadline;
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        // Only updated by the attempt in progress, attempts never overlap
+        private int attempts;
+
+        // Attempt in progress, or waiting for its backoff
+        private volatile Future<?> pendingAttempt;
+
+        private RetryingCall(String upstream, Supplier<T> call, Deadline deadline) {
+            this.upstream = upstream;
+            this.call = call;
+            this.deadline = deadline;
+            result.whenComplete((value, error) -> cancelPendingAttempt());
+        }
+
+        private void submitAttempt() {
+            // A call made late in a request may find its deadline already reached
+            if (deadline.isExpired()) {
+                expire();
+                return;
+            }
+            try {
+                setPendingAttempt(attemptExecutor.submit(this::attempt));
+            } catch (RejectedExecutionException e) {
+                fail("rejected", new UpstreamUnavailableException("Too many calls to " + upstream + " in progress"));
+            }
+        }
+
+        private void attempt() {
+            if (result.isDone()) {
+                return;
+            }
+            attempts++;
+            try {
+                T value = call.get();
+                // Counted before completing, so that the metric is up to date once the caller gets the result
+                if (finish()) {
+                    countCall(upstream, "success");
+                    result.complete(value);
+                }
+            } catch (RuntimeException e) {
+                if (result.isDone()) {
+                    return;
+                }
+                long delayMillis = getDelayMillis(attempts);
+                if (!isRetryable(e) || attempts >= maxAttempts) {
+                    fail("failure", e);
+                } else if (deadline.remainingMillis() < delayMillis + minAttemptMillis) {
+                    logger.warn("Not retrying call to {} after attempt {} failed, the deadline is too close: {}",
+                            upstream, attempts, e.toString());
+                    fail("deadline_exceeded", e);
+                } else {
+                    logger.warn("Retrying call to {} in {} ms after attempt {} failed: {}", upstream, delayMillis,
+                            attempts, e.toString());
+                    countCall(upstream, "retry");
+                    try {
+                        setPendingAttempt(retryTimer.schedule(this::submitAttempt, delayMillis,
+                                TimeUnit.MILLISECONDS));
+                    } catch (RejectedExecutionException rejected) {
+                        // shutting down
+                        fail("rejected", e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Fails the call once its deadline is reached, and cancels the attempt in progress.
+         */
+        private void expire() {
+            fail("deadline_exceeded", new UpstreamUnavailableException(upstream + " did not respond in time"));
+            Future<?> attempt = pendingAttempt;
+            if (attempt != null) {
+                attempt.cancel(true);
+            }
+        }
+
+        private void fail(String outcome, RuntimeException exception) {
+            if (finish()) {
+                countCall(upstream, outcome);
+                result.completeExceptionally(exception);
+            }
+        }
+
+        // Only one outcome is counted and completes the call, whichever of the attempt and the deadline comes first
+        private boolean finish() {
+            return !result.isDone() && finished.compareAndSet(false, true);
+        }
+
+        private void setPendingAttempt(Future<?> attempt) {
+            pendingAttempt = attempt;
+            // The call may have been cancelled while this attempt was being scheduled
+            if (result.isCancelled()) {
+                attempt.cancel(true);
+            }
+        }
+
+        private void cancelPendingAttempt() {
+            Future<?> attempt = pendingAttempt;
+            if (result.isCancelled() && attempt != null) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        retryTimer.shutdownNow();
+        attemptExecutor.shutdownNow();
+    }
+}
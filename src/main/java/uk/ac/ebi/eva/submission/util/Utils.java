@@ -1,6 +1,8 @@
 package uk.ac.ebi.eva.submission.util;
 
 import com.vdurmont.semver4j.Semver;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
 
 import java.util.regex.Matcher;
@@ -22,6 +24,33 @@ public class Utils {
         }
     }
 
+    /**
+     * Returns the value of an optional setting, or an empty string if it is not set. Settings whose placeholder was
+     * not replaced at build time (e.g. |webin.jwks-url|) are considered not set.
+     */
+    public static String getOptionalSetting(String value) {
+        if (value == null || value.startsWith("|")) {
+            return "";
+        }
+        return value.trim();
+    }
+
+    /**
+     * Runs the action once the current transaction commits, or straight away if there is no transaction.
+     */
+    public static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     public static String extractVersionFromSchemaUrl(String schemaUrl) {
         Pattern pattern = Pattern.compile("/tags/(v\\d+\\.\\d+\\.\\d+(?:[-\\.][A-Za-z0-9]+)*)/");
         Matcher matcher = pattern.matcher(schemaUrl);
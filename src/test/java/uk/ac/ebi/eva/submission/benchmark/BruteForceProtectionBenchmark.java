@@ -0,0 +1,86 @@
+package uk.ac.ebi.eva.submission.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.ac.ebi.eva.submission.controller.authentication.BruteForceProtectionService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the brute-force check done on every admin request, while the service is being flooded with failed logins
+ * from many addresses.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=uk.ac.ebi.eva.submission.benchmark.BruteForceProtectionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BruteForceProtectionBenchmark {
+
+    private static final int ADDRESSES = 100_000;
+
+    private BruteForceProtectionService bruteForceProtectionService;
+
+    private String[] addresses;
+
+    @Setup
+    public void setUp() {
+        bruteForceProtectionService = new BruteForceProtectionService();
+        addresses = new String[ADDRESSES];
+        for (int i = 0; i < ADDRESSES; i++) {
+            addresses[i] = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+        }
+        // lock out some of the addresses so that lookups hit both locked and unlocked entries
+        for (int i = 0; i < ADDRESSES; i += 100) {
+            for (int attempt = 0; attempt < 10; attempt++) {
+                bruteForceProtectionService.recordFailedAttempt(addresses[i]);
+            }
+        }
+    }
+
+    private String randomAddress() {
+        return addresses[ThreadLocalRandom.current().nextInt(ADDRESSES)];
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean isBlocked() {
+        return bruteForceProtectionService.isBlocked(randomAddress());
+    }
+
+    @Benchmark
+    @Group("underAttack")
+    @GroupThreads(6)
+    public boolean isBlockedUnderAttack() {
+        return bruteForceProtectionService.isBlocked(randomAddress());
+    }
+
+    @Benchmark
+    @Group("underAttack")
+    @GroupThreads(2)
+    public void recordFailedAttemptUnderAttack() {
+        bruteForceProtectionService.recordFailedAttempt(randomAddress());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BruteForceProtectionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
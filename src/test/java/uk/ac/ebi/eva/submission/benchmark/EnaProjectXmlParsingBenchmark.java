@@ -0,0 +1,122 @@
+package uk.ac.ebi.eva.submission.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import uk.ac.ebi.eva.submission.util.EnaProjectXmlParser;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting the title, description and taxonomy from an ENA project XML: the previous DOM and XPath path, with new
+ * factories for every document, against a single StAX pass with a shared input factory.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=uk.ac.ebi.eva.submission.benchmark.EnaProjectXmlParsingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnaProjectXmlParsingBenchmark {
+
+    private String projectXml;
+
+    @Setup
+    public void setUp() {
+        // Shaped like the ENA browser API response for a large project: long description, many links and attributes
+        StringBuilder xml = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<PROJECT_SET>\n")
+                .append("  <PROJECT accession=\"PRJEB12345\" alias=\"ena-STUDY-TEST-01-01-2020-12:00:00:000-1\" ")
+                .append("center_name=\"TEST CENTER\" broker_name=\"EBI\">\n")
+                .append("    <IDENTIFIERS>\n")
+                .append("      <PRIMARY_ID>PRJEB12345</PRIMARY_ID>\n")
+                .append("      <SECONDARY_ID>ERP012345</SECONDARY_ID>\n")
+                .append("      <SUBMITTER_ID namespace=\"TEST CENTER\">ena-STUDY-TEST-01-01-2020</SUBMITTER_ID>\n")
+                .append("    </IDENTIFIERS>\n")
+                .append("    <NAME>Genetic variation in a cattle population</NAME>\n")
+                .append("    <TITLE>Whole genome sequencing of 1,000 cattle from 50 breeds</TITLE>\n")
+                .append("    <DESCRIPTION>");
+        for (int i = 0; i < 20; i++) {
+            xml.append("Samples were sequenced on Illumina NovaSeq 6000 to an average depth of 30x, reads were ")
+                    .append("aligned to ARS-UCD1.2 &amp; variants were called with GATK HaplotypeCaller. ");
+        }
+        xml.append("</DESCRIPTION>\n")
+                .append("    <SUBMISSION_PROJECT>\n")
+                .append("      <SEQUENCING_PROJECT/>\n")
+                .append("      <ORGANISM>\n")
+                .append("        <TAXON_ID>9913</TAXON_ID>\n")
+                .append("        <SCIENTIFIC_NAME>Bos taurus</SCIENTIFIC_NAME>\n")
+                .append("      </ORGANISM>\n")
+                .append("    </SUBMISSION_PROJECT>\n")
+                .append("    <PROJECT_LINKS>\n");
+        for (int i = 0; i < 50; i++) {
+            xml.append("      <PROJECT_LINK><XREF_LINK><DB>ENA-SUBMISSION</DB><ID>ERA").append(1000000 + i)
+                    .append("</ID></XREF_LINK></PROJECT_LINK>\n");
+        }
+        xml.append("    </PROJECT_LINKS>\n")
+                .append("    <PROJECT_ATTRIBUTES>\n");
+        for (int i = 0; i < 20; i++) {
+            xml.append("      <PROJECT_ATTRIBUTE><TAG>ENA-SPOT-COUNT</TAG><VALUE>").append(123456789L + i)
+                    .append("</VALUE></PROJECT_ATTRIBUTE>\n");
+        }
+        xml.append("    </PROJECT_ATTRIBUTES>\n")
+                .append("  </PROJECT>\n")
+                .append("</PROJECT_SET>\n");
+        projectXml = xml.toString();
+    }
+
+    @Benchmark
+    public Map<String, String> domAndXPath() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        Document xmlDoc = factory.newDocumentBuilder().parse(new InputSource(new StringReader(projectXml)));
+        Map<String, String> projectDetails = new HashMap<>();
+        projectDetails.put("title", evaluateXPath(xmlDoc, "/PROJECT_SET/PROJECT/TITLE"));
+        projectDetails.put("description", evaluateXPath(xmlDoc, "/PROJECT_SET/PROJECT/DESCRIPTION"));
+        projectDetails.put("taxId",
+                evaluateXPath(xmlDoc, "/PROJECT_SET/PROJECT/SUBMISSION_PROJECT/ORGANISM/TAXON_ID"));
+        return projectDetails;
+    }
+
+    private static String evaluateXPath(Document xmlDoc, String path) throws Exception {
+        XPath xpath = XPathFactory.newInstance().newXPath();
+        NodeList nodes = (NodeList) xpath.evaluate(path, xmlDoc, XPathConstants.NODESET);
+        return nodes.getLength() > 0 ? nodes.item(0).getTextContent() : "";
+    }
+
+    @Benchmark
+    public Map<String, String> stax() throws Exception {
+        return EnaProjectXmlParser.parseProjectDetails(projectXml);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EnaProjectXmlParsingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package uk.ac.ebi.eva.submission.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.model.WebinUserInfo;
+import uk.ac.ebi.eva.submission.service.WebinTokenService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping a Webin user info response to a SubmissionAccount: the previous tree/string/Gson path against reading the
+ * response bytes once with a shared Jackson reader.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=uk.ac.ebi.eva.submission.benchmark.UserInfoParsingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserInfoParsingBenchmark {
+
+    private static final ObjectReader USER_INFO_READER = new ObjectMapper().readerFor(WebinUserInfo.class);
+
+    private byte[] responseBody;
+
+    private WebinTokenService webinTokenService;
+
+    @Setup
+    public void setUp() {
+        webinTokenService = new WebinTokenService(null, null);
+        responseBody = ("{\"submissionAccountId\":\"Webin-12345\",\"centerName\":\"Test Center\"," +
+                "\"fullCenterName\":\"Test Center Full Name\",\"brokerName\":null,\"laboratoryName\":\"Lab\"," +
+                "\"country\":\"United Kingdom\",\"address\":\"Wellcome Genome Campus, Hinxton\"," +
+                "\"metagenomeSubmitter\":false,\"metagenomicsAnalysis\":false,\"suspended\":false," +
+                "\"submissionContacts\":[" +
+                "{\"emailAddress\":\"main@example.org\",\"firstName\":\"Main\",\"surname\":\"Contact\"," +
+                "\"mainContact\":true,\"submissionAccountId\":\"Webin-12345\"}," +
+                "{\"emailAddress\":\"second@example.org\",\"firstName\":\"Second\",\"surname\":\"Contact\"," +
+                "\"mainContact\":false,\"submissionAccountId\":\"Webin-12345\"}," +
+                "{\"emailAddress\":\"third@example.org\",\"firstName\":\"Third\",\"surname\":\"Contact\"," +
+                "\"mainContact\":false,\"submissionAccountId\":\"Webin-12345\"}]}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public SubmissionAccount treeThenGson() throws Exception {
+        // what TokenServiceUtil and WebinTokenService used to do
+        String body = new String(responseBody, StandardCharsets.UTF_8);
+        JsonNode responseJson = new ObjectMapper().readTree(body);
+        WebinUserInfo webinUserInfo = new Gson().fromJson(responseJson.toString(), WebinUserInfo.class);
+        return webinTokenService.createWebinUserAccount(webinUserInfo);
+    }
+
+    @Benchmark
+    public SubmissionAccount streamingReader() throws Exception {
+        WebinUserInfo webinUserInfo = USER_INFO_READER.readValue(responseBody);
+        return webinTokenService.createWebinUserAccount(webinUserInfo);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UserInfoParsingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
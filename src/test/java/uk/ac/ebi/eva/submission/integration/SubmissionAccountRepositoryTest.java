@@ -0,0 +1,156 @@
+package uk.ac.ebi.eva.submission.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.repository.SubmissionAccountRepository;
+import uk.ac.ebi.eva.submission.service.GlobusDirectoryProvisioner;
+import uk.ac.ebi.eva.submission.service.GlobusTokenRefreshService;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Testcontainers
+public class SubmissionAccountRepositoryTest {
+
+    private static final String ACCOUNT_ID = "Webin-12345_webin";
+
+    @Autowired
+    private SubmissionAccountRepository submissionAccountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private GlobusTokenRefreshService globusTokenRefreshService;
+
+    @MockBean
+    private GlobusDirectoryProvisioner globusDirectoryProvisioner;
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:11")
+            .withInitScript("init.sql");
+
+    @DynamicPropertySource
+    static void dataSourceProperties(DynamicPropertyRegistry registry) {
+        // datasource properties
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+
+        registry.add("eva.email.server", () -> "test-email-server");
+        registry.add("eva.email.port", () -> 1025);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        submissionAccountRepository.deleteAll();
+    }
+
+    @Test
+    public void testFirstUpsertInsertsAccountAndSecondaryEmails() {
+        upsert("Jane", "Doe", "jane@example.org", "[\"jane.doe@example.org\", \"jd@example.org\"]");
+
+        SubmissionAccount account = submissionAccountRepository.findWithSecondaryEmailsById(ACCOUNT_ID);
+        assertThat(account.getUserId()).isEqualTo("Webin-12345");
+        assertThat(account.getLoginType()).isEqualTo("webin");
+        assertThat(account.getFirstName()).isEqualTo("Jane");
+        assertThat(account.getLastName()).isEqualTo("Doe");
+        assertThat(account.getPrimaryEmail()).isEqualTo("jane@example.org");
+        assertThat(account.getSecondaryEmails()).containsExactlyInAnyOrder("jane.doe@example.org", "jd@example.org");
+    }
+
+    @Test
+    public void testIdenticalUpsertWritesNothing() {
+        upsert("Jane", "Doe", "jane@example.org", "[\"jane.doe@example.org\", \"jd@example.org\"]");
+        String accountVersion = getAccountVersion();
+        List<String> secondaryEmailVersions = getSecondaryEmailVersions();
+
+        upsert("Jane", "Doe", "jane@example.org", "[\"jane.doe@example.org\", \"jd@example.org\"]");
+
+        assertThat(getAccountVersion()).isEqualTo(accountVersion);
+        assertThat(getSecondaryEmailVersions()).isEqualTo(secondaryEmailVersions);
+    }
+
+    @Test
+    public void testChangedDetailsAreUpdated() {
+        upsert("Jane", "Doe", "jane@example.org", "[\"jd@example.org\"]");
+        String accountVersion = getAccountVersion();
+        List<String> secondaryEmailVersions = getSecondaryEmailVersions();
+
+        upsert("Jane", "Smith", "jane@example.org", "[\"jd@example.org\"]");
+        SubmissionAccount account = submissionAccountRepository.findWithSecondaryEmailsById(ACCOUNT_ID);
+        assertThat(account.getLastName()).isEqualTo("Smith");
+        assertThat(getAccountVersion()).isNotEqualTo(accountVersion);
+        // secondary emails did not change and were left alone
+        assertThat(getSecondaryEmailVersions()).isEqualTo(secondaryEmailVersions);
+
+        accountVersion = getAccountVersion();
+        upsert("Jane", "Smith", "jane.smith@example.org", "[\"jd@example.org\"]");
+        account = submissionAccountRepository.findWithSecondaryEmailsById(ACCOUNT_ID);
+        assertThat(account.getPrimaryEmail()).isEqualTo("jane.smith@example.org");
+        assertThat(getAccountVersion()).isNotEqualTo(accountVersion);
+    }
+
+    @Test
+    public void testReorderedSecondaryEmailsAreNotRewritten() {
+        upsert("Jane", "Doe", "jane@example.org", "[\"jane.doe@example.org\", \"jd@example.org\"]");
+        List<String> secondaryEmailVersions = getSecondaryEmailVersions();
+
+        upsert("Jane", "Doe", "jane@example.org", "[\"jd@example.org\", \"jane.doe@example.org\"]");
+
+        assertThat(getSecondaryEmailVersions()).isEqualTo(secondaryEmailVersions);
+    }
+
+    @Test
+    public void testReplacedSecondaryEmailsAreRewritten() {
+        upsert("Jane", "Doe", "jane@example.org", "[\"jane.doe@example.org\", \"jd@example.org\"]");
+        String accountVersion = getAccountVersion();
+
+        upsert("Jane", "Doe", "jane@example.org", "[\"jane.doe@example.org\", \"doe@example.org\"]");
+
+        SubmissionAccount account = submissionAccountRepository.findWithSecondaryEmailsById(ACCOUNT_ID);
+        assertThat(account.getSecondaryEmails()).containsExactlyInAnyOrder("jane.doe@example.org", "doe@example.org");
+        // the account itself did not change
+        assertThat(getAccountVersion()).isEqualTo(accountVersion);
+    }
+
+    @Test
+    public void testEmptiedSecondaryEmailsAreDeleted() {
+        upsert("Jane", "Doe", "jane@example.org", "[\"jane.doe@example.org\", \"jd@example.org\"]");
+
+        upsert("Jane", "Doe", "jane@example.org", "[]");
+
+        SubmissionAccount account = submissionAccountRepository.findWithSecondaryEmailsById(ACCOUNT_ID);
+        assertThat(account.getSecondaryEmails()).isEmpty();
+        assertThat(getSecondaryEmailVersions()).isEmpty();
+    }
+
+    private void upsert(String firstName, String lastName, String primaryEmail, String secondaryEmails) {
+        submissionAccountRepository.upsert(ACCOUNT_ID, "Webin-12345", "webin", primaryEmail, firstName, lastName,
+                secondaryEmails);
+    }
+
+    // xmin is the id of the transaction that last wrote the row: it only changes when the row is rewritten
+    private String getAccountVersion() {
+        return jdbcTemplate.queryForObject("SELECT xmin::text FROM eva_submissions.submission_account WHERE id = ?",
+                String.class, ACCOUNT_ID);
+    }
+
+    private List<String> getSecondaryEmailVersions() {
+        return jdbcTemplate.queryForList("SELECT xmin::text FROM eva_submissions.submission_account_secondary_emails " +
+                "WHERE submission_account_id = ? ORDER BY secondary_emails", String.class, ACCOUNT_ID);
+    }
+}
@@ -16,7 +16,6 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.transaction.TestTransaction;
@@ -30,46 +29,50 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
 import uk.ac.ebi.eva.submission.entity.Submission;
 import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
 import uk.ac.ebi.eva.submission.entity.SubmissionDetails;
 import uk.ac.ebi.eva.submission.entity.SubmissionEload;
 import uk.ac.ebi.eva.submission.entity.SubmissionProcessing;
 import uk.ac.ebi.eva.submission.entity.SubmissionTrackingDetails;
+import uk.ac.ebi.eva.submission.entity.SubmissionUploadJob;
+import uk.ac.ebi.eva.submission.entity.SubmissionUploadProgress;
 import uk.ac.ebi.eva.submission.model.SubmissionProcessingStatus;
 import uk.ac.ebi.eva.submission.model.SubmissionProcessingStep;
 import uk.ac.ebi.eva.submission.model.SubmissionStatus;
+import uk.ac.ebi.eva.submission.model.UploadJobStatus;
 import uk.ac.ebi.eva.submission.repository.SubmissionAccountRepository;
 import uk.ac.ebi.eva.submission.repository.SubmissionDetailsRepository;
 import uk.ac.ebi.eva.submission.repository.SubmissionEloadRepository;
 import uk.ac.ebi.eva.submission.repository.SubmissionProcessingRepository;
 import uk.ac.ebi.eva.submission.repository.SubmissionRepository;
 import uk.ac.ebi.eva.submission.repository.SubmissionTrackingDetailsRepository;
+import uk.ac.ebi.eva.submission.repository.SubmissionUploadJobRepository;
+import uk.ac.ebi.eva.submission.repository.SubmissionUploadProgressRepository;
+import uk.ac.ebi.eva.submission.service.EmailOutboxService;
 import uk.ac.ebi.eva.submission.service.GlobusDirectoryProvisioner;
 import uk.ac.ebi.eva.submission.service.GlobusTokenRefreshService;
 import uk.ac.ebi.eva.submission.service.LoginMethod;
 import uk.ac.ebi.eva.submission.service.LsriTokenService;
 import uk.ac.ebi.eva.submission.service.WebinTokenService;
 import uk.ac.ebi.eva.submission.controller.authentication.BruteForceProtectionService;
+import uk.ac.ebi.eva.submission.util.BioSamplesUtils;
 import uk.ac.ebi.eva.submission.util.EnaDownloader;
+import uk.ac.ebi.eva.submission.util.EnaUtils;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.StringReader;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.Map;
 import java.util.stream.StreamSupport;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -82,15 +85,19 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -131,6 +138,15 @@ public class SubmissionWSIntegrationTest {
     @Autowired
     private SubmissionProcessingRepository submissionProcessingRepository;
 
+    @Autowired
+    private SubmissionUploadProgressRepository submissionUploadProgressRepository;
+
+    @Autowired
+    private SubmissionUploadJobRepository submissionUploadJobRepository;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
     @MockBean
     private EnaDownloader enaDownloader;
 
@@ -167,6 +183,12 @@ public class SubmissionWSIntegrationTest {
     @Autowired
     private BruteForceProtectionService bruteForceProtectionService;
 
+    @Autowired
+    private BioSamplesUtils bioSamplesUtils;
+
+    @Autowired
+    private EnaUtils enaUtils;
+
     @DynamicPropertySource
     static void dataSourceProperties(DynamicPropertyRegistry registry) {
         // datasource properties
@@ -193,8 +215,9 @@ public class SubmissionWSIntegrationTest {
         submissionAccountRepository.save(submissionAccount);
 
         // Reset brute-force state between tests so they don't interfere with each other
-        ((Map<?, ?>) ReflectionTestUtils.getField(bruteForceProtectionService, "attempts")).clear();
-        ((Map<?, ?>) ReflectionTestUtils.getField(bruteForceProtectionService, "lockouts")).clear();
+        bruteForceProtectionService.reset();
+        bioSamplesUtils.evictTaxonomyCache();
+        enaUtils.evictProjectDetailsCache();
     }
 
     @Test
@@ -203,14 +226,18 @@ public class SubmissionWSIntegrationTest {
         String token = "lsriUserToken";
         String deviceCode = "deviceCode";
         String expiresIn = "600";
-        when(lsriTokenService.pollForToken(anyString(), anyInt())).thenReturn(token);
+        when(lsriTokenService.pollForTokenAsync(anyString(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(token));
 
         HttpHeaders httpHeaders = new HttpHeaders();
-        String userToken = mvc.perform(post("/v1/submission/auth/lsri")
+        MvcResult mvcResult = mvc.perform(post("/v1/submission/auth/lsri")
                         .headers(httpHeaders)
                         .param("deviceCode", deviceCode)
                         .param("expiresIn", expiresIn)
                         .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String userToken = mvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andReturn().getResponse().getContentAsString();
 
@@ -354,6 +381,38 @@ public class SubmissionWSIntegrationTest {
                 .andExpectAll(status().isNotFound(), content().string("Submission with id " + submissionId + " does not exist"));
     }
 
+    @Test
+    @Transactional
+    public void testSubmissionGetUploadProgress() throws Exception {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.setBearerAuth(userToken);
+        mvc.perform(get("/v1/submission/" + submissionId + "/progress")
+                        .headers(httpHeaders)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode fileSizes = mapper.createObjectNode();
+        fileSizes.put("file1.vcf", 12345L);
+        fileSizes.put("file2.vcf.gz", 67890L);
+        SubmissionUploadProgress progress = new SubmissionUploadProgress(submissionId);
+        progress.setFileSizes(fileSizes);
+        progress.setFileCount(2);
+        progress.setTotalBytes(80235L);
+        progress.setLastCheckedTime(LocalDateTime.now());
+        progress.setLastChangedTime(LocalDateTime.now());
+        progress.setNextCheckTime(LocalDateTime.now().plusMinutes(1));
+        progress.setCheckIntervalSeconds(60);
+        submissionUploadProgressRepository.save(progress);
+
+        mvc.perform(get("/v1/submission/" + submissionId + "/progress")
+                        .headers(httpHeaders)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fileCount").value(2))
+                .andExpect(jsonPath("$.totalBytes").value(80235));
+    }
+
     @Test
     @Transactional
     public void testUploadMetadataJsonAndMarkUploaded_ContainsNonDeprecatedVersion() throws Exception {
@@ -414,7 +473,7 @@ public class SubmissionWSIntegrationTest {
 
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -505,7 +564,7 @@ public class SubmissionWSIntegrationTest {
 
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -610,7 +669,7 @@ public class SubmissionWSIntegrationTest {
 
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -701,7 +760,7 @@ public class SubmissionWSIntegrationTest {
 
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -732,6 +791,63 @@ public class SubmissionWSIntegrationTest {
 
     }
 
+    @Test
+    @Transactional
+    public void testUploadMetadataJsonAndMarkUploadedAsync() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        // create metadata json
+        ObjectNode metadataRootNode = mapper.createObjectNode();
+        ObjectNode projectNode = mapper.createObjectNode();
+        projectNode.put("title", "test_project_title");
+        projectNode.put("description", "test_project_description");
+        projectNode.put("taxId", 9606);
+        ArrayNode filesArrayNode = mapper.createArrayNode();
+        ObjectNode fileNode1 = mapper.createObjectNode();
+        fileNode1.put("fileName", "file1.vcf");
+        fileNode1.put("fileSize", 12345L);
+        filesArrayNode.add(fileNode1);
+        metadataRootNode.put("project", projectNode);
+        metadataRootNode.put("files", filesArrayNode);
+        metadataRootNode.put("$schema", "https://raw.githubusercontent.com/EBIvariation/eva-sub-cli/refs/tags/v0.5.1/eva_sub_cli/etc/eva_schema.json");
+
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.setBearerAuth(userToken);
+        String jobId = mapper.readTree(mvc.perform(put("/v1/submission/" + submissionId + "/uploaded")
+                        .param("async", "true")
+                        .headers(httpHeaders)
+                        .content(mapper.writeValueAsString(metadataRootNode))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.submissionId").value(submissionId))
+                .andExpect(jsonPath("$.status").value(UploadJobStatus.PENDING.toString()))
+                .andReturn().getResponse().getContentAsString()).get("jobId").asText();
+
+        // the same job is returned while it has not completed
+        mvc.perform(put("/v1/submission/" + submissionId + "/uploaded")
+                        .param("async", "true")
+                        .headers(httpHeaders)
+                        .content(mapper.writeValueAsString(metadataRootNode))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId").value(jobId));
+
+        mvc.perform(get("/v1/submission/" + submissionId + "/uploaded/" + jobId)
+                        .headers(httpHeaders)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.jobId").value(jobId))
+                .andExpect(jsonPath("$.submissionId").value(submissionId));
+
+        mvc.perform(get("/v1/submission/" + submissionId + "/uploaded/unknownJobId")
+                        .headers(httpHeaders)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+        SubmissionUploadJob uploadJob = submissionUploadJobRepository.findById(jobId).get();
+        assertThat(uploadJob.getMetadataJson().get("project").get("title").asText()).isEqualTo("test_project_title");
+    }
+
     @Test
     @Transactional
     public void testUploadMetadataJsonAndMarkUploadedForLargeProjectTitleAndDescription_ConsentStatementRequired_NoEvidenceTypeProvided() throws Exception {
@@ -789,7 +905,7 @@ public class SubmissionWSIntegrationTest {
 
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
         assertEquals(metadataRootNode.get("project").get("title").asText().length(), 600);
         assertEquals(metadataRootNode.get("project").get("description").asText().length(), 5500);
@@ -887,10 +1003,8 @@ public class SubmissionWSIntegrationTest {
 
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
         String xmlString = "<PROJECT_SET>" +
                 "<PROJECT>" +
                 "<TITLE>" + projectTitle + "</TITLE>" +
@@ -900,9 +1014,8 @@ public class SubmissionWSIntegrationTest {
                 "</SUBMISSION_PROJECT>" +
                 "</PROJECT>" +
                 "</PROJECT_SET>";
-        Document xmlDoc = builder.parse(new InputSource(new StringReader(xmlString)));
 
-        when(enaDownloader.downloadXmlFromEna(projectAccession)).thenReturn(xmlDoc);
+        when(enaDownloader.downloadProjectXml(eq(projectAccession), any())).thenReturn(xmlString);
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -980,19 +1093,16 @@ public class SubmissionWSIntegrationTest {
         dataNodeArray.add(dataNode1);
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId))
-                .thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId))
+                .thenReturn(getGlobusFileSizes(globusRootNode));
 
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
         String xmlString = "<PROJECT_SET><PROJECT>" +
                 "<TITLE>" + projectTitle + "</TITLE>" +
                 "<DESCRIPTION>" + projectDescription + "</DESCRIPTION>" +
                 "</PROJECT></PROJECT_SET>";
-        Document xmlDoc = builder.parse(new InputSource(new StringReader(xmlString)));
-        when(enaDownloader.downloadXmlFromEna(projectAccession)).thenReturn(xmlDoc);
+        when(enaDownloader.downloadProjectXml(eq(projectAccession), any())).thenReturn(xmlString);
 
-        when(bioSamplesDownloader.downloadSampleFromBioSamples(bioSampleAccession))
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq(bioSampleAccession), any()))
                 .thenReturn("{\"taxId\": 9606, \"accession\": \"" + bioSampleAccession + "\"}");
 
         HttpHeaders httpHeaders = new HttpHeaders();
@@ -1062,8 +1172,8 @@ public class SubmissionWSIntegrationTest {
         dataNodeArray.add(dataNode1);
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId))
-                .thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId))
+                .thenReturn(getGlobusFileSizes(globusRootNode));
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -1079,7 +1189,7 @@ public class SubmissionWSIntegrationTest {
     @Test
     @Transactional
     public void testMarkSubmissionUploadNoFileInfoInMetadatajson() throws Exception {
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn("");
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(null);
 
         // create metadata json
         ObjectMapper mapper = new ObjectMapper();
@@ -1101,7 +1211,7 @@ public class SubmissionWSIntegrationTest {
     @Test
     @Transactional
     public void testMarkSubmissionUploadErrorGettingInfoFromGlobus() throws Exception {
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn("");
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(null);
 
         // create metadata json
         ObjectMapper mapper = new ObjectMapper();
@@ -1148,7 +1258,7 @@ public class SubmissionWSIntegrationTest {
         globusRootNode.put("DATA", dataNodeArray);
 
         metadataRootNode.put("$schema", "https://raw.githubusercontent.com/EBIvariation/eva-sub-cli/refs/tags/v0.5.1/eva_sub_cli/etc/eva_schema.json");
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -1184,7 +1294,7 @@ public class SubmissionWSIntegrationTest {
         globusRootNode.put("DATA", dataNodeArray);
 
         metadataRootNode.put("$schema", "https://raw.githubusercontent.com/EBIvariation/eva-sub-cli/refs/tags/v0.5.1/eva_sub_cli/etc/eva_schema.json");
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -1225,7 +1335,7 @@ public class SubmissionWSIntegrationTest {
         dataNodeArray.add(dataNode1);
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -1274,7 +1384,7 @@ public class SubmissionWSIntegrationTest {
 
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -1321,15 +1431,12 @@ public class SubmissionWSIntegrationTest {
 
         globusRootNode.put("DATA", dataNodeArray);
 
-        when(globusDirectoryProvisioner.listSubmittedFiles(webinUserAccount.getId() + "/" + submissionId)).thenReturn(mapper.writeValueAsString(globusRootNode));
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(webinUserAccount.getId() + "/" + submissionId)).thenReturn(getGlobusFileSizes(globusRootNode));
 
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
         metadataRootNode.put("$schema", "https://raw.githubusercontent.com/EBIvariation/eva-sub-cli/refs/tags/v0.5.1/eva_sub_cli/etc/eva_schema.json");
         String xmlString = "<PROJECT_SET> <PROJECT> </PROJECT> </PROJECT_SET>";
-        Document xmlDoc = builder.parse(new InputSource(new StringReader(xmlString)));
 
-        when(enaDownloader.downloadXmlFromEna(projectAccession)).thenReturn(xmlDoc);
+        when(enaDownloader.downloadProjectXml(eq(projectAccession), any())).thenReturn(xmlString);
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(userToken);
@@ -1726,6 +1833,12 @@ public class SubmissionWSIntegrationTest {
     }
 
 
+    private Map<String, Long> getGlobusFileSizes(ObjectNode globusRootNode) {
+        return StreamSupport.stream(globusRootNode.get("DATA").spliterator(), false)
+                .collect(Collectors.toMap(dataNode -> dataNode.get("name").asText(),
+                        dataNode -> dataNode.get("size").asLong()));
+    }
+
     private SubmissionAccount getWebinUserAccount() {
         String accountId = "webinAccountId";
         String loginType = LoginMethod.WEBIN.getLoginType();
@@ -1808,6 +1921,8 @@ public class SubmissionWSIntegrationTest {
     }
 
     private void assertEmailsSentToUserAndHelpDesk(boolean shouldContainConsentStatement, boolean deprecatedVersion) throws JsonProcessingException {
+        // emails are queued in the transaction of the test, which the background dispatcher cannot see
+        emailOutboxService.dispatchPendingEmails();
         String mailhogUrl = "http://" + mailhog.getHost() + ":" + mailhog.getMappedPort(8025) + "/api/v2/messages";
         RestTemplate restTemplate = new RestTemplate();
         JsonNode mailHogResponse = new ObjectMapper().readTree(restTemplate.getForObject(mailhogUrl, String.class));
@@ -0,0 +1,327 @@
+package uk.ac.ebi.eva.submission.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the parts of the Globus Auth and Transfer APIs used by the web service: the token endpoint,
+ * mkdir and paginated ls. Directories and files are kept in memory.
+ * The latency of each operation can be drawn from a distribution, and errors can be injected with a given
+ * probability. All randomness comes from a seeded generator so that runs can be reproduced.
+ */
+public class GlobusTransferStandIn implements AutoCloseable {
+
+    public static final String ENDPOINT_ID = "standin-endpoint";
+
+    public enum Operation {
+        TOKEN, MKDIR, LS
+    }
+
+    private static final int DEFAULT_PAGE_SIZE = 100000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Random random;
+
+    private final Set<String> directories = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Long> files = new ConcurrentHashMap<>();
+
+    private final Map<Operation, Latency> latencies = new ConcurrentHashMap<>();
+
+    private final Map<Operation, Fault> faults = new ConcurrentHashMap<>();
+
+    private final Map<Operation, AtomicLong> requestCounts = new EnumMap<>(Operation.class);
+
+    private final AtomicLong issuedTokens = new AtomicLong();
+
+    public GlobusTransferStandIn(long seed) throws IOException {
+        this.random = new Random(seed);
+        for (Operation operation : Operation.values()) {
+            requestCounts.put(operation, new AtomicLong());
+        }
+        directories.add("");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/token", exchange -> handle(exchange, Operation.TOKEN));
+        server.createContext("/transfer/" + ENDPOINT_ID + "/mkdir", exchange -> handle(exchange, Operation.MKDIR));
+        server.createContext("/transfer/" + ENDPOINT_ID + "/ls", exchange -> handle(exchange, Operation.LS));
+        server.start();
+    }
+
+    public String getTokenUrl() {
+        return getBaseUrl() + "/token";
+    }
+
+    public String getTransferBaseUrl() {
+        return getBaseUrl() + "/transfer";
+    }
+
+    public void setLatency(Operation operation, Latency latency) {
+        latencies.put(operation, latency);
+    }
+
+    /**
+     * Makes the given fraction of calls to the operation fail with the HTTP status.
+     */
+    public void injectErrors(Operation operation, double probability, int status) {
+        faults.put(operation, new Fault(probability, status));
+    }
+
+    public void clearErrors() {
+        faults.clear();
+    }
+
+    /**
+     * Simulates the upload of a file, creating its parent directories as needed.
+     */
+    public void addFile(String path, long size) {
+        String normalisedPath = normalise(path);
+        String parent = getParent(normalisedPath);
+        while (!parent.isEmpty()) {
+            directories.add(parent);
+            parent = getParent(parent);
+        }
+        files.put(normalisedPath, size);
+    }
+
+    public boolean directoryExists(String path) {
+        return directories.contains(normalise(path));
+    }
+
+    public long getRequestCount(Operation operation) {
+        return requestCounts.get(operation).get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, Operation operation) throws IOException {
+        try {
+            requestCounts.get(operation).incrementAndGet();
+            Latency latency = latencies.get(operation);
+            if (latency != null) {
+                Thread.sleep(latency.nextMillis(random));
+            }
+            Fault fault = faults.get(operation);
+            if (fault != null && random.nextDouble() < fault.probability) {
+                respond(exchange, fault.status, error("ServiceUnavailable", "Injected error"));
+                return;
+            }
+            if (operation != Operation.TOKEN && !exchange.getRequestHeaders().getOrDefault("Authorization",
+                    new ArrayList<>()).stream().anyMatch(header -> header.startsWith("Bearer "))) {
+                respond(exchange, 401, error("AuthenticationFailed", "No token given"));
+                return;
+            }
+            switch (operation) {
+                case TOKEN:
+                    handleToken(exchange);
+                    break;
+                case MKDIR:
+                    handleMkdir(exchange);
+                    break;
+                case LS:
+                    handleLs(exchange);
+                    break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, error("ServiceUnavailable", "Interrupted"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleToken(HttpExchange exchange) throws IOException {
+        ObjectNode token = mapper.createObjectNode();
+        token.put("access_token", "standin-token-" + issuedTokens.incrementAndGet());
+        token.put("expires_in", 172800);
+        token.put("token_type", "Bearer");
+        respond(exchange, 200, token);
+    }
+
+    private void handleMkdir(HttpExchange exchange) throws IOException {
+        JsonNode request = mapper.readTree(exchange.getRequestBody());
+        String path = normalise(request.path("path").asText());
+        if (!directories.contains(getParent(path))) {
+            respond(exchange, 404, error("ClientError.NotFound", "Directory '" + getParent(path) + "' not found"));
+            return;
+        }
+        // Globus reports existing directories as a failure of the storage system
+        if (!directories.add(path) || files.containsKey(path)) {
+            respond(exchange, 502, error("ExternalError.MkdirFailed.Exists", "Path already exists: " + path));
+            return;
+        }
+        ObjectNode response = mapper.createObjectNode();
+        response.put("DATA_TYPE", "mkdir_result");
+        response.put("code", "DirectoryCreated");
+        response.put("message", "The directory was created successfully");
+        respond(exchange, 202, response);
+    }
+
+    private void handleLs(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String path = normalise(query.getOrDefault("path", ""));
+        int offset = Integer.parseInt(query.getOrDefault("offset", "0"));
+        int limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+        if (!directories.contains(path)) {
+            respond(exchange, 404, error("ClientError.NotFound", "Directory '" + path + "' not found"));
+            return;
+        }
+
+        // Sorted so that pages are stable between calls
+        TreeMap<String, Long> entries = new TreeMap<>();
+        for (String directory : directories) {
+            if (!directory.isEmpty() && getParent(directory).equals(path)) {
+                entries.put(getName(directory), null);
+            }
+        }
+        files.forEach((file, size) -> {
+            if (getParent(file).equals(path)) {
+                entries.put(getName(file), size);
+            }
+        });
+
+        List<Map.Entry<String, Long>> page = new ArrayList<>(entries.entrySet());
+        int end = Math.min(page.size(), offset + limit);
+        ObjectNode response = mapper.createObjectNode();
+        response.put("DATA_TYPE", "file_list");
+        response.put("path", "/" + path + "/");
+        response.put("endpoint", ENDPOINT_ID);
+        response.put("offset", offset);
+        response.put("limit", limit);
+        response.put("has_next_page", end < page.size());
+        ArrayNode data = response.putArray("DATA");
+        for (Map.Entry<String, Long> entry : page.subList(Math.min(offset, end), end)) {
+            ObjectNode node = data.addObject();
+            node.put("DATA_TYPE", "file");
+            node.put("name", entry.getKey());
+            node.put("type", entry.getValue() == null ? "dir" : "file");
+            node.put("size", entry.getValue() == null ? 4096 : entry.getValue());
+            node.put("permissions", entry.getValue() == null ? "0755" : "0644");
+        }
+        respond(exchange, 200, response);
+    }
+
+    private ObjectNode error(String code, String message) {
+        ObjectNode error = mapper.createObjectNode();
+        error.put("code", code);
+        error.put("message", message);
+        return error;
+    }
+
+    private void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                query.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8.name()),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8.name()));
+            }
+        }
+        return query;
+    }
+
+    private static String normalise(String path) {
+        String normalised = path.replaceAll("/+", "/");
+        if (normalised.startsWith("/")) {
+            normalised = normalised.substring(1);
+        }
+        if (normalised.endsWith("/")) {
+            normalised = normalised.substring(0, normalised.length() - 1);
+        }
+        return normalised;
+    }
+
+    private static String getParent(String path) {
+        int separator = path.lastIndexOf('/');
+        return separator < 0 ? "" : path.substring(0, separator);
+    }
+
+    private static String getName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Distribution of the time taken by the stand-in to answer a call.
+     */
+    public interface Latency {
+
+        long nextMillis(Random random);
+
+        static Latency fixed(long millis) {
+            return random -> millis;
+        }
+
+        static Latency uniform(long minMillis, long maxMillis) {
+            return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+        }
+
+        /**
+         * Long-tailed latency, as usually seen from remote services: most calls take about the median, a few take
+         * much longer.
+         */
+        static Latency logNormal(long medianMillis, double sigma) {
+            return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    private static class Fault {
+
+        private final double probability;
+
+        private final int status;
+
+        private Fault(double probability, int status) {
+            this.probability = probability;
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package uk.ac.ebi.eva.submission.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.model.SubmissionStatus;
+import uk.ac.ebi.eva.submission.service.LoginMethod;
+import uk.ac.ebi.eva.submission.service.LsriTokenService;
+import uk.ac.ebi.eva.submission.service.WebinTokenService;
+import uk.ac.ebi.eva.submission.util.BioSamplesDownloader;
+import uk.ac.ebi.eva.submission.util.EnaDownloader;
+import uk.ac.ebi.eva.submission.util.MailSender;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives submission initiation and upload checks through the web service, with Globus replaced by
+ * {@link GlobusTransferStandIn} and a real Postgres, and prints throughput and latency percentiles for each endpoint.
+ * Excluded from the default build, run with: mvn test -Pload-test
+ * The load can be tuned with the system properties load.submissions, load.concurrency, load.accounts, load.seed,
+ * load.async, load.globus.latencyMedianMs, load.globus.latencySigma and load.globus.errorRate.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+public class SubmissionLoadTest {
+
+    private static final int SUBMISSIONS = Integer.getInteger("load.submissions", 200);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final int ACCOUNTS = Integer.getInteger("load.accounts", 20);
+    private static final long SEED = Long.getLong("load.seed", 42);
+    private static final long GLOBUS_LATENCY_MEDIAN_MS = Long.getLong("load.globus.latencyMedianMs", 50);
+    private static final double GLOBUS_LATENCY_SIGMA = Double.parseDouble(
+            System.getProperty("load.globus.latencySigma", "0.5"));
+    private static final double GLOBUS_ERROR_RATE = Double.parseDouble(
+            System.getProperty("load.globus.errorRate", "0"));
+
+    private static final String TOKEN_PREFIX = "loadTestToken-";
+    private static final long FILE_SIZE = 12345L;
+    private static final long PROVISIONING_TIMEOUT_MS = 60000;
+
+    private static final GlobusTransferStandIn globus = startGlobusStandIn();
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:11")
+            .withInitScript("init.sql");
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private WebinTokenService webinTokenService;
+
+    @MockBean
+    private LsriTokenService lsriTokenService;
+
+    @MockBean
+    private MailSender mailSender;
+
+    @MockBean
+    private EnaDownloader enaDownloader;
+
+    @MockBean
+    private BioSamplesDownloader bioSamplesDownloader;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @DynamicPropertySource
+    static void dataSourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+
+        registry.add("globus.token.endpoint", globus::getTokenUrl);
+        registry.add("globus.transfer.base.url", globus::getTransferBaseUrl);
+        registry.add("globus.submission.endpointId", () -> GlobusTransferStandIn.ENDPOINT_ID);
+        registry.add("globus.uploadHttpDomain", () -> "https://upload.example.org");
+        registry.add("callhome.schema.url", () -> "https://dummy_url");
+        registry.add("submission.initiation.async", () -> System.getProperty("load.async", "false"));
+    }
+
+    @AfterAll
+    public static void stopGlobusStandIn() {
+        globus.close();
+    }
+
+    @Test
+    public void testInitiateAndUploadUnderLoad() throws Exception {
+        when(webinTokenService.getWebinUserAccountFromToken(anyString())).thenAnswer(
+                invocation -> getSubmissionAccount(invocation.getArgument(0)));
+
+        RestTemplate restTemplate = createRestTemplate();
+        LatencyRecorder initiateLatencies = new LatencyRecorder("POST /v1/submission/initiate");
+        LatencyRecorder uploadedLatencies = new LatencyRecorder("PUT /v1/submission/{id}/uploaded");
+        Random random = new Random(SEED);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < SUBMISSIONS; i++) {
+            tokens.add(TOKEN_PREFIX + random.nextInt(ACCOUNTS));
+        }
+
+        ExecutorService users = Executors.newFixedThreadPool(CONCURRENCY);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> submissions = new ArrayList<>();
+            for (String token : tokens) {
+                submissions.add(users.submit(() -> submit(restTemplate, token, initiateLatencies, uploadedLatencies)));
+            }
+            for (Future<?> submission : submissions) {
+                submission.get();
+            }
+        } finally {
+            users.shutdown();
+            users.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        System.out.printf("%d submissions, %d concurrent users, %d accounts, seed %d, Globus latency median %d ms " +
+                        "(sigma %.2f), Globus error rate %.3f, %.1f s in total%n", SUBMISSIONS, CONCURRENCY, ACCOUNTS,
+                SEED, GLOBUS_LATENCY_MEDIAN_MS, GLOBUS_LATENCY_SIGMA, GLOBUS_ERROR_RATE, elapsedNanos / 1e9);
+        System.out.println(initiateLatencies.summary(elapsedNanos));
+        System.out.println(uploadedLatencies.summary(elapsedNanos));
+        for (GlobusTransferStandIn.Operation operation : GlobusTransferStandIn.Operation.values()) {
+            System.out.printf("Globus %s calls: %d%n", operation, globus.getRequestCount(operation));
+        }
+
+        if (GLOBUS_ERROR_RATE == 0) {
+            assertThat(initiateLatencies.getErrors()).isZero();
+            assertThat(uploadedLatencies.getErrors()).isZero();
+        }
+    }
+
+    private void submit(RestTemplate restTemplate, String token, LatencyRecorder initiateLatencies,
+                        LatencyRecorder uploadedLatencies) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        long start = System.nanoTime();
+        ResponseEntity<String> initiated = restTemplate.exchange(getUrl("/v1/submission/initiate"), HttpMethod.POST,
+                new HttpEntity<>(headers), String.class);
+        initiateLatencies.record(System.nanoTime() - start, initiated.getStatusCode().is2xxSuccessful());
+        if (!initiated.getStatusCode().is2xxSuccessful()) {
+            return;
+        }
+        JsonNode submission = readTree(initiated.getBody());
+        String submissionId = submission.get("submissionId").asText();
+        if (SubmissionStatus.PROVISIONING.toString().equals(submission.path("status").asText())
+                && !waitUntilOpen(restTemplate, submissionId)) {
+            uploadedLatencies.record(0, false);
+            return;
+        }
+
+        // the user uploads the files described in the metadata
+        String directory = getSubmissionAccount(token).getId() + "/" + submissionId;
+        globus.addFile(directory + "/file1.vcf", FILE_SIZE);
+        globus.addFile(directory + "/file2.vcf.gz", FILE_SIZE * 2);
+
+        start = System.nanoTime();
+        ResponseEntity<String> uploaded = restTemplate.exchange(getUrl("/v1/submission/" + submissionId + "/uploaded"),
+                HttpMethod.PUT, new HttpEntity<>(createMetadataJson(), headers), String.class);
+        uploadedLatencies.record(System.nanoTime() - start, uploaded.getStatusCode().is2xxSuccessful());
+    }
+
+    private boolean waitUntilOpen(RestTemplate restTemplate, String submissionId) {
+        long deadline = System.currentTimeMillis() + PROVISIONING_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            ResponseEntity<String> status = restTemplate.getForEntity(
+                    getUrl("/v1/submission/" + submissionId + "/status"), String.class);
+            if (SubmissionStatus.OPEN.toString().equals(status.getBody())) {
+                return true;
+            }
+            if (!SubmissionStatus.PROVISIONING.toString().equals(status.getBody())) {
+                return false;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static SubmissionAccount getSubmissionAccount(String token) {
+        String accountNumber = token.substring(TOKEN_PREFIX.length());
+        return new SubmissionAccount("Webin-load-" + accountNumber, LoginMethod.WEBIN.getLoginType(), "Load",
+                "Test " + accountNumber, "load-" + accountNumber + "@example.org");
+    }
+
+    private String createMetadataJson() {
+        ObjectNode metadataRootNode = mapper.createObjectNode();
+        ObjectNode projectNode = metadataRootNode.putObject("project");
+        projectNode.put("title", "Load test project");
+        projectNode.put("description", "Project submitted by the load test");
+        projectNode.put("taxId", 9606);
+
+        ArrayNode filesArrayNode = metadataRootNode.putArray("files");
+        filesArrayNode.addObject().put("fileName", "file1.vcf").put("fileSize", FILE_SIZE);
+        filesArrayNode.addObject().put("fileName", "file2.vcf.gz").put("fileSize", FILE_SIZE * 2);
+
+        ArrayNode analysisArrayNode = metadataRootNode.putArray("analysis");
+        analysisArrayNode.addObject().put("analysisAlias", "A1").put("evidenceType", "allele_frequency");
+        metadataRootNode.put("$schema", "https://raw.githubusercontent.com/EBIvariation/eva-sub-cli/refs/tags/v0.5.1/eva_sub_cli/etc/eva_schema.json");
+        try {
+            return mapper.writeValueAsString(metadataRootNode);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return mapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String getUrl(String path) {
+        return "http://localhost:" + port + path;
+    }
+
+    private RestTemplate createRestTemplate() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(CONCURRENCY);
+        connectionManager.setDefaultMaxPerRoute(CONCURRENCY);
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(
+                HttpClientBuilder.create().setConnectionManager(connectionManager).build()));
+        // errors are counted, not thrown
+        restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            protected boolean hasError(int statusCode) {
+                return false;
+            }
+        });
+        return restTemplate;
+    }
+
+    private static GlobusTransferStandIn startGlobusStandIn() {
+        try {
+            GlobusTransferStandIn standIn = new GlobusTransferStandIn(SEED);
+            GlobusTransferStandIn.Latency latency = GlobusTransferStandIn.Latency.logNormal(GLOBUS_LATENCY_MEDIAN_MS,
+                    GLOBUS_LATENCY_SIGMA);
+            standIn.setLatency(GlobusTransferStandIn.Operation.MKDIR, latency);
+            standIn.setLatency(GlobusTransferStandIn.Operation.LS, latency);
+            if (GLOBUS_ERROR_RATE > 0) {
+                standIn.injectErrors(GlobusTransferStandIn.Operation.MKDIR, GLOBUS_ERROR_RATE, 503);
+                standIn.injectErrors(GlobusTransferStandIn.Operation.LS, GLOBUS_ERROR_RATE, 503);
+            }
+            return standIn;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class LatencyRecorder {
+
+        private final String name;
+
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<Long> errors = Collections.synchronizedList(new ArrayList<>());
+
+        private LatencyRecorder(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos, boolean successful) {
+            (successful ? latencies : errors).add(nanos);
+        }
+
+        private int getErrors() {
+            return errors.size();
+        }
+
+        private String summary(long elapsedNanos) {
+            List<Long> sorted;
+            synchronized (latencies) {
+                sorted = new ArrayList<>(latencies);
+            }
+            Collections.sort(sorted);
+            return String.format("%s: %d ok, %d failed, %.1f req/s, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, " +
+                            "max %.1f ms", name, sorted.size(), errors.size(),
+                    (sorted.size() + errors.size()) / (elapsedNanos / 1e9), percentile(sorted, 0.50),
+                    percentile(sorted, 0.95), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        }
+
+        private static double percentile(List<Long> sorted, double percentile) {
+            if (sorted.isEmpty()) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+            return sorted.get(Math.max(0, index)) / 1e6;
+        }
+    }
+}
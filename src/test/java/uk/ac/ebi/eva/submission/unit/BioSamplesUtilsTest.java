@@ -0,0 +1,166 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import uk.ac.ebi.eva.submission.entity.BioSampleTaxonomy;
+import uk.ac.ebi.eva.submission.exception.UpstreamUnavailableException;
+import uk.ac.ebi.eva.submission.repository.BioSampleTaxonomyRepository;
+import uk.ac.ebi.eva.submission.util.BioSamplesDownloader;
+import uk.ac.ebi.eva.submission.util.BioSamplesUtils;
+import uk.ac.ebi.eva.submission.util.Deadline;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BioSamplesUtilsTest {
+
+    private final BioSamplesDownloader bioSamplesDownloader = mock(BioSamplesDownloader.class);
+
+    private final BioSampleTaxonomyRepository bioSampleTaxonomyRepository = mock(BioSampleTaxonomyRepository.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CountDownLatch startedLookups = new CountDownLatch(2);
+
+    private final CountDownLatch cancelledLookups = new CountDownLatch(2);
+
+    private BioSamplesUtils bioSamplesUtils;
+
+    @AfterEach
+    public void tearDown() {
+        bioSamplesUtils.destroy();
+    }
+
+    @Test
+    public void testLookupsAreCancelledOnceAHumanSampleIsFound() throws Exception {
+        bioSamplesUtils = createBioSamplesUtils(true);
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA1"), any()))
+                .thenAnswer(invocation -> blockUntilCancelled());
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA2"), any())).thenAnswer(invocation -> {
+            startedLookups.await(5, TimeUnit.SECONDS);
+            return "{\"taxId\": 9606}";
+        });
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA3"), any()))
+                .thenAnswer(invocation -> blockUntilCancelled());
+
+        assertThat(bioSamplesUtils.isAnyHumanSample(Arrays.asList("SAMEA1", "SAMEA2", "SAMEA3"),
+                Deadline.inMillis(60000))).isTrue();
+        assertThat(cancelledLookups.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testSlowLookupsAreNotConsideredHuman() throws Exception {
+        bioSamplesUtils = createBioSamplesUtils(true);
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA1"), any())).thenReturn("{\"taxId\": 10090}");
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA2"), any()))
+                .thenAnswer(invocation -> blockUntilCancelled());
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA3"), any()))
+                .thenAnswer(invocation -> blockUntilCancelled());
+
+        assertThat(bioSamplesUtils.isAnyHumanSample(Arrays.asList("SAMEA1", "SAMEA2", "SAMEA3"),
+                Deadline.inMillis(200))).isFalse();
+        assertThat(cancelledLookups.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testSequentialLookupsStopAtTheFirstHumanSample() {
+        bioSamplesUtils = createBioSamplesUtils(false);
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA1"), any())).thenReturn("{\"taxId\": 9606}");
+
+        assertThat(bioSamplesUtils.isAnyHumanSample(Arrays.asList("SAMEA1", "SAMEA2"), Deadline.inMillis(60000)))
+                .isTrue();
+        verify(bioSamplesDownloader, never()).downloadSampleFromBioSamples(eq("SAMEA2"), any());
+    }
+
+    @Test
+    public void testTaxonomiesAreDownloadedOnce() {
+        bioSamplesUtils = createBioSamplesUtils(true);
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA1"), any())).thenReturn("{\"taxId\": 9606}");
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA2"), any()))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(bioSamplesUtils.getTaxIdFromBioSamples("SAMEA1", Deadline.inMillis(60000))).isEqualTo("9606");
+            assertThat(bioSamplesUtils.getTaxIdFromBioSamples("SAMEA2", Deadline.inMillis(60000))).isEmpty();
+        }
+
+        verify(bioSamplesDownloader, times(1)).downloadSampleFromBioSamples(eq("SAMEA1"), any());
+        verify(bioSamplesDownloader, times(1)).downloadSampleFromBioSamples(eq("SAMEA2"), any());
+        verify(bioSampleTaxonomyRepository).save(argThat(taxonomy -> taxonomy.getAccession().equals("SAMEA2")
+                && taxonomy.getTaxId().isEmpty()));
+        assertThat(meterRegistry.counter(BioSamplesUtils.LOOKUPS_METRIC, "result", "memory").count()).isEqualTo(4);
+    }
+
+    @Test
+    public void testStoredTaxonomiesAreRefreshedWhenDue() {
+        bioSamplesUtils = createBioSamplesUtils(true);
+        when(bioSampleTaxonomyRepository.findById("SAMEA1"))
+                .thenReturn(Optional.of(new BioSampleTaxonomy("SAMEA1", "9606", LocalDateTime.now().minusDays(1))));
+        when(bioSampleTaxonomyRepository.findById("SAMEA2"))
+                .thenReturn(Optional.of(new BioSampleTaxonomy("SAMEA2", "", LocalDateTime.now().minusDays(1))));
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA2"), any())).thenReturn("{\"taxId\": 10090}");
+
+        assertThat(bioSamplesUtils.getTaxIdFromBioSamples("SAMEA1", Deadline.inMillis(60000))).isEqualTo("9606");
+        assertThat(bioSamplesUtils.getTaxIdFromBioSamples("SAMEA2", Deadline.inMillis(60000))).isEqualTo("10090");
+
+        verify(bioSamplesDownloader, never()).downloadSampleFromBioSamples(eq("SAMEA1"), any());
+        verify(bioSampleTaxonomyRepository, times(1)).save(any());
+    }
+
+    @Test
+    public void testFailedDownloadsAreNotCached() {
+        bioSamplesUtils = createBioSamplesUtils(true);
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA1"), any()))
+                .thenThrow(new IllegalStateException("Connection refused"))
+                .thenReturn("{\"taxId\": 9606}");
+
+        assertThat(bioSamplesUtils.getTaxIdFromBioSamples("SAMEA1", Deadline.inMillis(60000))).isEmpty();
+        assertThat(bioSamplesUtils.getTaxIdFromBioSamples("SAMEA1", Deadline.inMillis(60000))).isEqualTo("9606");
+    }
+
+    @Test
+    public void testStoredTaxonomyIsUsedWhenBioSamplesIsUnavailable() {
+        bioSamplesUtils = createBioSamplesUtils(true);
+        when(bioSampleTaxonomyRepository.findById("SAMEA1"))
+                .thenReturn(Optional.of(new BioSampleTaxonomy("SAMEA1", "9606", LocalDateTime.now().minusDays(100))));
+        when(bioSamplesDownloader.downloadSampleFromBioSamples(eq("SAMEA1"), any()))
+                .thenThrow(new UpstreamUnavailableException("biosamples did not respond in time"));
+
+        assertThat(bioSamplesUtils.getTaxIdFromBioSamples("SAMEA1", Deadline.inMillis(60000))).isEqualTo("9606");
+        verify(bioSampleTaxonomyRepository, never()).save(any());
+    }
+
+    private BioSamplesUtils createBioSamplesUtils(boolean concurrentLookups) {
+        return new BioSamplesUtils(bioSamplesDownloader, bioSampleTaxonomyRepository, concurrentLookups, 5, 10, 100,
+                90, 24, meterRegistry);
+    }
+
+    private String blockUntilCancelled() {
+        startedLookups.countDown();
+        try {
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return "{\"taxId\": 9606}";
+        } catch (InterruptedException e) {
+            // as the retry backoff does when interrupted
+            cancelledLookups.countDown();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Lookup interrupted", e);
+        }
+    }
+}
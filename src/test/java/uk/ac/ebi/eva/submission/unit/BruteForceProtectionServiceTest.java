@@ -0,0 +1,81 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.eva.submission.controller.authentication.BruteForceProtectionService;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BruteForceProtectionServiceTest {
+
+    private static final String IP = "10.0.0.1";
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private final BruteForceProtectionService bruteForceProtectionService = new BruteForceProtectionService(now::get);
+
+    @Test
+    public void testBlockedAfterTooManyFailures() {
+        for (int i = 0; i < 9; i++) {
+            bruteForceProtectionService.recordFailedAttempt(IP);
+        }
+        assertThat(bruteForceProtectionService.isBlocked(IP)).isFalse();
+
+        bruteForceProtectionService.recordFailedAttempt(IP);
+        assertThat(bruteForceProtectionService.isBlocked(IP)).isTrue();
+        assertThat(bruteForceProtectionService.isBlocked("10.0.0.2")).isFalse();
+    }
+
+    @Test
+    public void testLockoutExpires() {
+        for (int i = 0; i < 10; i++) {
+            bruteForceProtectionService.recordFailedAttempt(IP);
+        }
+        assertThat(bruteForceProtectionService.isBlocked(IP)).isTrue();
+
+        now.addAndGet(15 * 60_000L + 1);
+        assertThat(bruteForceProtectionService.isBlocked(IP)).isFalse();
+
+        // failures before the lockout are not carried over
+        bruteForceProtectionService.recordFailedAttempt(IP);
+        assertThat(bruteForceProtectionService.isBlocked(IP)).isFalse();
+    }
+
+    @Test
+    public void testOldFailuresAgeOut() {
+        for (int i = 0; i < 9; i++) {
+            bruteForceProtectionService.recordFailedAttempt(IP);
+        }
+        now.addAndGet(20 * 60_000L);
+
+        bruteForceProtectionService.recordFailedAttempt(IP);
+        assertThat(bruteForceProtectionService.isBlocked(IP)).isFalse();
+    }
+
+    @Test
+    public void testSuccessClearsFailures() {
+        for (int i = 0; i < 9; i++) {
+            bruteForceProtectionService.recordFailedAttempt(IP);
+        }
+        bruteForceProtectionService.onAuthenticationSuccess(IP);
+
+        bruteForceProtectionService.recordFailedAttempt(IP);
+        assertThat(bruteForceProtectionService.isBlocked(IP)).isFalse();
+    }
+
+    @Test
+    public void testScanFromManyIpsIsBounded() {
+        // a scan from many more addresses than the table can hold, with one address trying repeatedly
+        for (int i = 0; i < 100_000; i++) {
+            String ip = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+            bruteForceProtectionService.recordFailedAttempt(ip);
+            if (i % 1000 == 0) {
+                bruteForceProtectionService.recordFailedAttempt(IP);
+            }
+        }
+        assertThat(bruteForceProtectionService.isBlocked(IP)).isTrue();
+        assertThat(bruteForceProtectionService.isBlocked("192.168.0.1")).isFalse();
+        assertThat(bruteForceProtectionService.isBlocked("10.0.0.5")).isFalse();
+    }
+}
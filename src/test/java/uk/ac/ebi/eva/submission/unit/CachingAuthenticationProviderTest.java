@@ -0,0 +1,82 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import uk.ac.ebi.eva.submission.controller.authentication.CachingAuthenticationProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CachingAuthenticationProviderTest {
+
+    private BCryptPasswordEncoder passwordEncoder;
+
+    private InMemoryUserDetailsManager userDetailsService;
+
+    private CachingAuthenticationProvider cachingAuthenticationProvider;
+
+    @BeforeEach
+    public void setUp() {
+        passwordEncoder = spy(new BCryptPasswordEncoder(4));
+        userDetailsService = new InMemoryUserDetailsManager(User.withUsername("admin")
+                .password(passwordEncoder.encode("password"))
+                .roles("ADMIN")
+                .build());
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(userDetailsService);
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
+        cachingAuthenticationProvider = new CachingAuthenticationProvider(daoAuthenticationProvider,
+                userDetailsService, 10, 300);
+    }
+
+    @Test
+    public void testSuccessfulVerificationIsCached() {
+        Authentication first = cachingAuthenticationProvider.authenticate(login("admin", "password"));
+        Authentication second = cachingAuthenticationProvider.authenticate(login("admin", "password"));
+
+        assertThat(first.isAuthenticated()).isTrue();
+        assertThat(second.isAuthenticated()).isTrue();
+        assertThat(second.getAuthorities()).isEqualTo(first.getAuthorities());
+        verify(passwordEncoder, times(1)).matches(any(), any());
+    }
+
+    @Test
+    public void testFailedVerificationIsNotCached() {
+        assertThrows(BadCredentialsException.class,
+                () -> cachingAuthenticationProvider.authenticate(login("admin", "wrong-password")));
+        assertThrows(BadCredentialsException.class,
+                () -> cachingAuthenticationProvider.authenticate(login("admin", "wrong-password")));
+
+        verify(passwordEncoder, times(2)).matches(any(), any());
+    }
+
+    @Test
+    public void testCacheIsDroppedWhenPasswordChanges() {
+        cachingAuthenticationProvider.authenticate(login("admin", "password"));
+
+        userDetailsService.updateUser(User.withUsername("admin")
+                .password(passwordEncoder.encode("new-password"))
+                .roles("ADMIN")
+                .build());
+
+        assertThrows(BadCredentialsException.class,
+                () -> cachingAuthenticationProvider.authenticate(login("admin", "password")));
+        assertThat(cachingAuthenticationProvider.authenticate(login("admin", "new-password")).isAuthenticated())
+                .isTrue();
+    }
+
+    private UsernamePasswordAuthenticationToken login(String username, String password) {
+        return new UsernamePasswordAuthenticationToken(username, password);
+    }
+}
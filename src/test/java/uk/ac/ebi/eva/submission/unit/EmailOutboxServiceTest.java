@@ -0,0 +1,157 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import uk.ac.ebi.eva.submission.entity.OutboxEmail;
+import uk.ac.ebi.eva.submission.model.OutboxEmailStatus;
+import uk.ac.ebi.eva.submission.repository.OutboxEmailRepository;
+import uk.ac.ebi.eva.submission.service.EmailOutboxService;
+import uk.ac.ebi.eva.submission.util.MailSender;
+
+import javax.mail.internet.MimeMessage;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EmailOutboxServiceTest {
+
+    private OutboxEmailRepository outboxEmailRepository;
+
+    private MailSender mailSender;
+
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private EmailOutboxService emailOutboxService;
+
+    @BeforeEach
+    public void setUp() {
+        outboxEmailRepository = mock(OutboxEmailRepository.class);
+        mailSender = mock(MailSender.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        emailOutboxService = new EmailOutboxService(outboxEmailRepository, mailSender, transactionManager,
+                meterRegistry);
+        ReflectionTestUtils.setField(emailOutboxService, "batchSize", 10);
+        ReflectionTestUtils.setField(emailOutboxService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(emailOutboxService, "retryDelaySeconds", 30);
+        ReflectionTestUtils.setField(emailOutboxService, "claimTimeoutSeconds", 300);
+    }
+
+    @Test
+    public void testQueuedEmailsAreSentInOneBatch() throws Exception {
+        OutboxEmail firstEmail = createEmail("user@webin.com", 0);
+        OutboxEmail secondEmail = createEmail("helpdesk@ebi.ac.uk", 0);
+        when(outboxEmailRepository.lockEmailsDue(eq(OutboxEmailStatus.PENDING.toString()), any(), eq(10)))
+                .thenReturn(Arrays.asList(firstEmail, secondEmail));
+        when(mailSender.createEmail(anyString(), anyString(), anyList(), anyString(), anyString()))
+                .thenAnswer(invocation -> mock(MimeMessage.class));
+        when(mailSender.sendEmails(anyList())).thenReturn(Collections.emptyMap());
+        when(outboxEmailRepository.countByStatus(OutboxEmailStatus.PENDING.toString())).thenReturn(0L);
+
+        emailOutboxService.dispatchPendingEmails();
+
+        verify(mailSender, times(1)).sendEmails(anyList());
+        assertThat(firstEmail.getStatus()).isEqualTo(OutboxEmailStatus.SENT.toString());
+        assertThat(secondEmail.getStatus()).isEqualTo(OutboxEmailStatus.SENT.toString());
+        assertThat(firstEmail.getSentTime()).isNotNull();
+        assertThat(meterRegistry.counter(EmailOutboxService.EMAILS_METRIC, "result", "sent").count()).isEqualTo(2);
+        assertThat(meterRegistry.get(EmailOutboxService.PENDING_METRIC).gauge().value()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFailedEmailsAreRetriedWithBackoffThenAbandoned() throws Exception {
+        OutboxEmail retriedEmail = createEmail("user@webin.com", 0);
+        OutboxEmail lastAttemptEmail = createEmail("other@webin.com", 2);
+        when(outboxEmailRepository.lockEmailsDue(eq(OutboxEmailStatus.PENDING.toString()), any(), anyInt()))
+                .thenReturn(Arrays.asList(retriedEmail, lastAttemptEmail));
+        when(mailSender.createEmail(anyString(), anyString(), anyList(), anyString(), anyString()))
+                .thenAnswer(invocation -> mock(MimeMessage.class));
+        when(mailSender.sendEmails(anyList())).thenAnswer(invocation -> {
+            List<MimeMessage> messages = invocation.getArgument(0);
+            Map<MimeMessage, Exception> failedMessages = new HashMap<>();
+            messages.forEach(message -> failedMessages.put(message, new MailSendException("Connection refused")));
+            return failedMessages;
+        });
+        when(outboxEmailRepository.countByStatus(OutboxEmailStatus.PENDING.toString())).thenReturn(1L);
+
+        LocalDateTime before = LocalDateTime.now();
+        emailOutboxService.dispatchPendingEmails();
+
+        assertThat(retriedEmail.getStatus()).isEqualTo(OutboxEmailStatus.PENDING.toString());
+        assertThat(retriedEmail.getAttempts()).isEqualTo(1);
+        assertThat(retriedEmail.getNextAttemptTime()).isAfterOrEqualTo(before.plusSeconds(30));
+        assertThat(retriedEmail.getLastError()).contains("Connection refused");
+        assertThat(lastAttemptEmail.getStatus()).isEqualTo(OutboxEmailStatus.FAILED.toString());
+        assertThat(meterRegistry.get(EmailOutboxService.PENDING_METRIC).gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEmailsAreClaimedBeforeTheyAreSent() throws Exception {
+        OutboxEmail email = createEmail("user@webin.com", 0);
+        when(outboxEmailRepository.lockEmailsDue(eq(OutboxEmailStatus.PENDING.toString()), any(), anyInt()))
+                .thenReturn(Collections.singletonList(email));
+        when(mailSender.createEmail(anyString(), anyString(), anyList(), anyString(), anyString()))
+                .thenAnswer(invocation -> mock(MimeMessage.class));
+        LocalDateTime before = LocalDateTime.now();
+        when(mailSender.sendEmails(anyList())).thenAnswer(invocation -> {
+            // the claim is committed, and postpones the email for the other instances
+            verify(transactionManager).commit(any());
+            assertThat(email.getNextAttemptTime()).isAfterOrEqualTo(before.plusSeconds(300));
+            return Collections.emptyMap();
+        });
+
+        emailOutboxService.dispatchPendingEmails();
+
+        InOrder inOrder = inOrder(outboxEmailRepository, transactionManager, mailSender);
+        inOrder.verify(outboxEmailRepository).saveAll(anyList());
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(mailSender).sendEmails(anyList());
+        inOrder.verify(outboxEmailRepository).saveAll(anyList());
+        assertThat(email.getStatus()).isEqualTo(OutboxEmailStatus.SENT.toString());
+    }
+
+    @Test
+    public void testScheduledDispatchCanBeDisabled() {
+        ReflectionTestUtils.setField(emailOutboxService, "enabled", false);
+
+        emailOutboxService.dispatchScheduled();
+
+        verify(outboxEmailRepository, never()).lockEmailsDue(anyString(), any(), anyInt());
+    }
+
+    private static OutboxEmail createEmail(String to, int attempts) {
+        OutboxEmail email = new OutboxEmail();
+        email.setFromAddress("eva-noreply@ebi.ac.uk");
+        email.setToAddress(to);
+        email.setSubject("Submission uploaded");
+        email.setBody("body");
+        email.setStatus(OutboxEmailStatus.PENDING.toString());
+        email.setAttempts(attempts);
+        email.setCreatedTime(LocalDateTime.now());
+        email.setNextAttemptTime(email.getCreatedTime());
+        return email;
+    }
+}
@@ -0,0 +1,61 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.eva.submission.util.EnaProjectXmlParser;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.DESCRIPTION;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TAXONOMY_ID;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TITLE;
+
+public class EnaProjectXmlParserTest {
+
+    @Test
+    void testParseProjectDetails_onlyReadsFieldsAtTheirPath() throws Exception {
+        String projectXml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<PROJECT_SET>" +
+                "<PROJECT accession=\"PRJEB12345\">" +
+                "<IDENTIFIERS><PRIMARY_ID>PRJEB12345</PRIMARY_ID></IDENTIFIERS>" +
+                "<TITLE>Variants &amp; genotypes</TITLE>" +
+                "<DESCRIPTION><![CDATA[Whole genome <sequencing>]]> of 10 samples</DESCRIPTION>" +
+                "<SUBMISSION_PROJECT>" +
+                "<SEQUENCING_PROJECT/>" +
+                "<ORGANISM><TAXON_ID>9913</TAXON_ID><SCIENTIFIC_NAME>Bos taurus</SCIENTIFIC_NAME></ORGANISM>" +
+                "</SUBMISSION_PROJECT>" +
+                "<PROJECT_ATTRIBUTES>" +
+                "<PROJECT_ATTRIBUTE><TAG>TITLE</TAG><VALUE>Not the title</VALUE></PROJECT_ATTRIBUTE>" +
+                "</PROJECT_ATTRIBUTES>" +
+                "</PROJECT>" +
+                "<PROJECT><TITLE>Second project</TITLE></PROJECT>" +
+                "</PROJECT_SET>";
+
+        Map<String, String> projectDetails = EnaProjectXmlParser.parseProjectDetails(projectXml);
+
+        assertEquals("Variants & genotypes", projectDetails.get(TITLE));
+        assertEquals("Whole genome <sequencing> of 10 samples", projectDetails.get(DESCRIPTION));
+        assertEquals("9913", projectDetails.get(TAXONOMY_ID));
+    }
+
+    @Test
+    void testParseProjectDetails_withMissingNodes_shouldReturnEmptyStrings() throws Exception {
+        Map<String, String> projectDetails = EnaProjectXmlParser.parseProjectDetails(
+                "<PROJECT_SET><PROJECT><NAME>Project</NAME></PROJECT></PROJECT_SET>");
+
+        assertEquals("", projectDetails.get(TITLE));
+        assertEquals("", projectDetails.get(DESCRIPTION));
+        assertEquals("", projectDetails.get(TAXONOMY_ID));
+    }
+
+    @Test
+    void testParseProjectDetails_withDoctype_shouldFail() {
+        String projectXml = "<?xml version=\"1.0\"?>" +
+                "<!DOCTYPE PROJECT_SET [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>" +
+                "<PROJECT_SET><PROJECT><TITLE>&xxe;</TITLE></PROJECT></PROJECT_SET>";
+
+        assertThrows(XMLStreamException.class, () -> EnaProjectXmlParser.parseProjectDetails(projectXml));
+    }
+}
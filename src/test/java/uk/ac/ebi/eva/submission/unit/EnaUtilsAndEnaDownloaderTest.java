@@ -1,22 +1,35 @@
 package uk.ac.ebi.eva.submission.unit;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
-import org.w3c.dom.Document;
+import uk.ac.ebi.eva.submission.entity.EnaProjectDetails;
+import uk.ac.ebi.eva.submission.exception.UpstreamUnavailableException;
+import uk.ac.ebi.eva.submission.repository.EnaProjectDetailsRepository;
+import uk.ac.ebi.eva.submission.util.Deadline;
 import uk.ac.ebi.eva.submission.util.EnaDownloader;
 import uk.ac.ebi.eva.submission.util.EnaUtils;
+import uk.ac.ebi.eva.submission.util.UpstreamCallExecutor;
 
+import java.time.LocalDateTime;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.Assert.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -24,8 +37,8 @@ import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionControl
 import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TAXONOMY_ID;
 import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TITLE;
 
-@SpringBootTest(classes = {EnaUtils.class, EnaDownloader.class})
-@EnableRetry
+@SpringBootTest(classes = {EnaUtils.class, EnaDownloader.class, UpstreamCallExecutor.class,
+        SimpleMeterRegistry.class}, properties = "upstream.retry.initialDelayMs=10")
 public class EnaUtilsAndEnaDownloaderTest {
     private static final String projectAccession = "PRJEB12345";
 
@@ -35,9 +48,17 @@ public class EnaUtilsAndEnaDownloaderTest {
     @Autowired
     private EnaDownloader enaDownloader;
 
-    @MockBean
+    @MockBean(name = "enaRestTemplate")
     private RestTemplate restTemplate;
 
+    @MockBean
+    private EnaProjectDetailsRepository enaProjectDetailsRepository;
+
+    @BeforeEach
+    void setUp() {
+        enaUtils.evictProjectDetailsCache();
+    }
+
     @Test
     void testGetProjectDetailsFromEna_withValidXml_shouldReturnParsedValues() {
         String xmlResponse = "<PROJECT_SET> " +
@@ -55,7 +76,7 @@ public class EnaUtilsAndEnaDownloaderTest {
         when(restTemplate.getForObject(ArgumentMatchers.contains(projectAccession), eq(String.class)))
                 .thenReturn(xmlResponse);
 
-        Map<String, String> projectDetails = enaUtils.getProjectDetailsFromEna(projectAccession);
+        Map<String, String> projectDetails = enaUtils.getProjectDetailsFromEna(projectAccession, deadline());
         assertEquals("Test Project", projectDetails.get(TITLE));
         assertEquals("Test Description", projectDetails.get(DESCRIPTION));
         assertEquals("9606", projectDetails.get(TAXONOMY_ID));
@@ -68,7 +89,7 @@ public class EnaUtilsAndEnaDownloaderTest {
         when(restTemplate.getForObject(ArgumentMatchers.contains(projectAccession), eq(String.class)))
                 .thenReturn(xmlResponse);
 
-        Map<String, String> projectDetails = enaUtils.getProjectDetailsFromEna(projectAccession);
+        Map<String, String> projectDetails = enaUtils.getProjectDetailsFromEna(projectAccession, deadline());
         assertEquals("", projectDetails.get(TITLE));
         assertEquals("", projectDetails.get(DESCRIPTION));
         assertEquals("", projectDetails.get(TAXONOMY_ID));
@@ -78,7 +99,7 @@ public class EnaUtilsAndEnaDownloaderTest {
     void testGetProjectDetailsFromEna_withRestTemplateException_shouldReturnEmptyMap() {
         when(restTemplate.getForObject(anyString(), eq(String.class))).thenThrow(new RuntimeException("API down"));
 
-        Map<String, String> projectDetails = enaUtils.getProjectDetailsFromEna(projectAccession);
+        Map<String, String> projectDetails = enaUtils.getProjectDetailsFromEna(projectAccession, deadline());
 
         assertEquals("", projectDetails.get(TITLE));
         assertEquals("", projectDetails.get(DESCRIPTION));
@@ -86,27 +107,107 @@ public class EnaUtilsAndEnaDownloaderTest {
     }
 
     @Test
-    void testDownloadXmlFromEnaRetriesOnFailure() {
+    void testDownloadProjectXmlRetriesOnFailure() {
         when(restTemplate.getForObject(anyString(), eq(String.class)))
                 .thenThrow(new RuntimeException("ENA service down"));
 
-        assertThrows(Exception.class, () -> enaDownloader.downloadXmlFromEna(projectAccession));
+        assertThrows(Exception.class, () -> enaDownloader.downloadProjectXml(projectAccession, deadline()));
 
         verify(restTemplate, times(5)).getForObject(anyString(), eq(String.class));
     }
 
     @Test
-    void testDownloadXmlFromEnaSucceedsAfterRetries() throws Exception {
+    void testDownloadProjectXmlSucceedsAfterRetries() {
         when(restTemplate.getForObject(anyString(), eq(String.class)))
                 .thenThrow(new RuntimeException("Temporary error"))
                 .thenThrow(new RuntimeException("Temporary error again"))
                 .thenReturn("<PROJECT_SET><PROJECT><TITLE>Test Project</TITLE></PROJECT></PROJECT_SET>");
 
-        Document doc = enaDownloader.downloadXmlFromEna(projectAccession);
+        String projectXml = enaDownloader.downloadProjectXml(projectAccession, deadline());
 
-        String title = doc.getElementsByTagName("TITLE").item(0).getTextContent();
-        assertEquals("Test Project", title);
+        assertEquals("<PROJECT_SET><PROJECT><TITLE>Test Project</TITLE></PROJECT></PROJECT_SET>", projectXml);
 
         verify(restTemplate, times(3)).getForObject(anyString(), eq(String.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetProjectDetailsFromEna_calledTwice_shouldDownloadOnce() {
+        String xmlResponse = "<PROJECT_SET><PROJECT><TITLE>Test Project</TITLE></PROJECT></PROJECT_SET>";
+        when(restTemplate.getForObject(ArgumentMatchers.contains(projectAccession), eq(String.class)))
+                .thenReturn(xmlResponse);
+
+        assertEquals("Test Project", enaUtils.getProjectDetailsFromEna(projectAccession, deadline()).get(TITLE));
+        assertEquals("Test Project", enaUtils.getProjectDetailsFromEna(projectAccession, deadline()).get(TITLE));
+
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(String.class));
+    }
+
+    @Test
+    void testGetProjectDetailsFromEna_withProjectNotFound_shouldCacheAndStoreEmptyDetails() {
+        EnaDownloader notFoundEnaDownloader = mock(EnaDownloader.class);
+        when(notFoundEnaDownloader.downloadProjectXml(eq(projectAccession), any()))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null));
+        EnaUtils persistentEnaUtils = new EnaUtils(notFoundEnaDownloader, enaProjectDetailsRepository, 10, true, 60,
+                5, new SimpleMeterRegistry());
+
+        assertEquals("", persistentEnaUtils.getProjectDetailsFromEna(projectAccession, deadline()).get(TITLE));
+        assertEquals("", persistentEnaUtils.getProjectDetailsFromEna(projectAccession, deadline()).get(TITLE));
+
+        verify(notFoundEnaDownloader, times(1)).downloadProjectXml(eq(projectAccession), any());
+        verify(enaProjectDetailsRepository).save(argThat(projectDetails ->
+                projectDetails.getProjectAccession().equals(projectAccession) && projectDetails.getTitle().isEmpty()));
+    }
+
+    @Test
+    void testGetProjectDetailsFromEna_withStoredDetails_shouldNotDownload() {
+        EnaDownloader mockEnaDownloader = mock(EnaDownloader.class);
+        when(enaProjectDetailsRepository.findById(projectAccession)).thenReturn(Optional.of(new EnaProjectDetails(
+                projectAccession, "Test Project", "Test Description", "9606", LocalDateTime.now().minusMinutes(10))));
+        EnaUtils persistentEnaUtils = new EnaUtils(mockEnaDownloader, enaProjectDetailsRepository, 10, true, 60,
+                5, new SimpleMeterRegistry());
+
+        Map<String, String> projectDetails = persistentEnaUtils.getProjectDetailsFromEna(projectAccession, deadline());
+
+        assertEquals("Test Project", projectDetails.get(TITLE));
+        assertEquals("9606", projectDetails.get(TAXONOMY_ID));
+        verify(mockEnaDownloader, never()).downloadProjectXml(anyString(), any());
+        verify(enaProjectDetailsRepository, never()).save(any());
+    }
+
+    @Test
+    void testGetProjectDetailsFromEna_withEnaUnavailable_shouldReturnExpiredStoredDetails() {
+        EnaDownloader unavailableEnaDownloader = mock(EnaDownloader.class);
+        when(unavailableEnaDownloader.downloadProjectXml(eq(projectAccession), any()))
+                .thenThrow(new UpstreamUnavailableException("ena did not respond in time"));
+        when(enaProjectDetailsRepository.findById(projectAccession)).thenReturn(Optional.of(new EnaProjectDetails(
+                projectAccession, "Test Project", "Test Description", "9606", LocalDateTime.now().minusDays(1))));
+        EnaUtils persistentEnaUtils = new EnaUtils(unavailableEnaDownloader, enaProjectDetailsRepository, 10, true, 60,
+                5, new SimpleMeterRegistry());
+
+        Map<String, String> projectDetails = persistentEnaUtils.getProjectDetailsFromEna(projectAccession, deadline());
+
+        assertEquals("Test Project", projectDetails.get(TITLE));
+        assertEquals("9606", projectDetails.get(TAXONOMY_ID));
+        verify(enaProjectDetailsRepository, never()).save(any());
+    }
+
+    @Test
+    void testGetProjectDetailsFromEna_withoutPersistentCache_shouldOnlyCacheInMemory() {
+        EnaDownloader mockEnaDownloader = mock(EnaDownloader.class);
+        when(mockEnaDownloader.downloadProjectXml(eq(projectAccession), any()))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null));
+        EnaUtils inMemoryEnaUtils = new EnaUtils(mockEnaDownloader, enaProjectDetailsRepository, 10, false, 60, 5,
+                new SimpleMeterRegistry());
+
+        assertEquals("", inMemoryEnaUtils.getProjectDetailsFromEna(projectAccession, deadline()).get(TITLE));
+        assertEquals("", inMemoryEnaUtils.getProjectDetailsFromEna(projectAccession, deadline()).get(TITLE));
+
+        verify(mockEnaDownloader, times(1)).downloadProjectXml(eq(projectAccession), any());
+        verify(enaProjectDetailsRepository, never()).findById(anyString());
+        verify(enaProjectDetailsRepository, never()).save(any());
+    }
+
+    private static Deadline deadline() {
+        return Deadline.inMillis(60000);
+    }
+}
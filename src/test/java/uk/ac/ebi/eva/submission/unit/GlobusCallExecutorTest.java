@@ -0,0 +1,162 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import uk.ac.ebi.eva.submission.exception.GlobusUnavailableException;
+import uk.ac.ebi.eva.submission.service.GlobusCallExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GlobusCallExecutorTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private GlobusCallExecutor globusCallExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        globusCallExecutor = new GlobusCallExecutor(1, 1, 5000, 3, 30000, meterRegistry, now::get);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        globusCallExecutor.destroy();
+    }
+
+    @Test
+    public void testCircuitOpensAfterRepeatedFailuresAndRecovers() {
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ResourceAccessException.class, () -> globusCallExecutor.call(() -> {
+                throw new ResourceAccessException("Connection timed out");
+            }, e -> false));
+        }
+        assertThat(globusCallExecutor.getState()).isEqualTo(GlobusCallExecutor.State.OPEN);
+
+        // fails fast without calling Globus
+        assertThrows(GlobusUnavailableException.class, () -> globusCallExecutor.call(() -> "listing", e -> false));
+        assertThat(meterRegistry.counter(GlobusCallExecutor.CALLS_METRIC, "result", "rejected").count())
+                .isEqualTo(1);
+
+        now.addAndGet(30000);
+        assertThat(globusCallExecutor.call(() -> "listing", e -> false)).isEqualTo("listing");
+        assertThat(globusCallExecutor.getState()).isEqualTo(GlobusCallExecutor.State.CLOSED);
+        assertThat(meterRegistry.counter(GlobusCallExecutor.TRANSITIONS_METRIC, "state", "half_open").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void testFailedTrialCallReopensCircuit() {
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ResourceAccessException.class, () -> globusCallExecutor.call(() -> {
+                throw new ResourceAccessException("Connection timed out");
+            }, e -> false));
+        }
+        now.addAndGet(30000);
+        assertThrows(ResourceAccessException.class, () -> globusCallExecutor.call(() -> {
+            throw new ResourceAccessException("Connection timed out");
+        }, e -> false));
+
+        assertThat(globusCallExecutor.getState()).isEqualTo(GlobusCallExecutor.State.OPEN);
+        assertThrows(GlobusUnavailableException.class, () -> globusCallExecutor.call(() -> "listing", e -> false));
+    }
+
+    @Test
+    public void testLateSuccessDoesNotCloseOpenCircuit() throws Exception {
+        GlobusCallExecutor executor = new GlobusCallExecutor(4, 4, 5000, 3, 30000, meterRegistry, now::get);
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch releaseCall = new CountDownLatch(1);
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slowCall = callers.submit(() -> executor.call(() -> {
+                callStarted.countDown();
+                try {
+                    releaseCall.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "listing";
+            }, e -> false));
+            assertThat(callStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                assertThrows(ResourceAccessException.class, () -> executor.call(() -> {
+                    throw new ResourceAccessException("Connection timed out");
+                }, e -> false));
+            }
+            assertThat(executor.getState()).isEqualTo(GlobusCallExecutor.State.OPEN);
+
+            // the call let through before the circuit opened is not a trial call
+            releaseCall.countDown();
+            assertThat(slowCall.get(5, TimeUnit.SECONDS)).isEqualTo("listing");
+            assertThat(executor.getState()).isEqualTo(GlobusCallExecutor.State.OPEN);
+            assertThat(meterRegistry.counter(GlobusCallExecutor.TRANSITIONS_METRIC, "state", "closed").count())
+                    .isEqualTo(0);
+        } finally {
+            releaseCall.countDown();
+            callers.shutdown();
+            executor.destroy();
+        }
+    }
+
+    @Test
+    public void testClientErrorsDoNotOpenCircuit() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(HttpClientErrorException.class, () -> globusCallExecutor.call(() -> {
+                throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+            }, e -> false));
+        }
+        assertThat(globusCallExecutor.getState()).isEqualTo(GlobusCallExecutor.State.CLOSED);
+    }
+
+    @Test
+    public void testCallsBeyondQueueAreRejected() throws Exception {
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch releaseCall = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            callers.submit(() -> globusCallExecutor.call(() -> {
+                callStarted.countDown();
+                try {
+                    releaseCall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "running";
+            }, e -> false));
+            callStarted.await();
+
+            // with one call running, only one more fits in the queue
+            Future<String> secondCall = callers.submit(() -> globusCallExecutor.call(() -> "second", e -> false));
+            Future<String> thirdCall = callers.submit(() -> globusCallExecutor.call(() -> "third", e -> false));
+            while (!secondCall.isDone() && !thirdCall.isDone()) {
+                Thread.sleep(10);
+            }
+            Future<String> rejectedCall = secondCall.isDone() ? secondCall : thirdCall;
+            ExecutionException exception = assertThrows(ExecutionException.class, rejectedCall::get);
+            assertThat(exception.getCause()).isInstanceOf(GlobusUnavailableException.class);
+
+            releaseCall.countDown();
+            Future<String> queuedCall = rejectedCall == secondCall ? thirdCall : secondCall;
+            assertThat(queuedCall.get()).isIn("second", "third");
+        } finally {
+            releaseCall.countDown();
+            callers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseActions;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+import uk.ac.ebi.eva.submission.service.GlobusCallExecutor;
+import uk.ac.ebi.eva.submission.service.GlobusDirectoryProvisioner;
+import uk.ac.ebi.eva.submission.service.GlobusTokenRefreshService;
+
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class GlobusDirectoryProvisionerTest {
+
+    private static final String ENDPOINT_URL = "https://transfer.api.globus.org/v0.10/operation/endpoint/endpoint-id";
+
+    private static final String MKDIR_URL = ENDPOINT_URL + "/mkdir";
+
+    private static final String SUBMISSION_DIRECTORY = "webin-1234_webin/submission-id";
+
+    private GlobusCallExecutor globusCallExecutor;
+
+    private MockRestServiceServer globus;
+
+    private GlobusDirectoryProvisioner globusDirectoryProvisioner;
+
+    @BeforeEach
+    public void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        globus = MockRestServiceServer.bindTo(restTemplate).build();
+        globusCallExecutor = new GlobusCallExecutor(2, 10, 5000, 5, 30000, new SimpleMeterRegistry());
+        globusDirectoryProvisioner = createGlobusDirectoryProvisioner(restTemplate, globusCallExecutor, 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        globusDirectoryProvisioner.destroy();
+        globusCallExecutor.destroy();
+    }
+
+    private GlobusDirectoryProvisioner createGlobusDirectoryProvisioner(RestTemplate restTemplate,
+                                                                       GlobusCallExecutor globusCallExecutor,
+                                                                       int listingParallelism) {
+        GlobusTokenRefreshService globusTokenRefreshService = mock(GlobusTokenRefreshService.class);
+        when(globusTokenRefreshService.getAccessToken()).thenReturn("access-token");
+        GlobusDirectoryProvisioner provisioner = new GlobusDirectoryProvisioner(globusTokenRefreshService,
+                restTemplate, globusCallExecutor, listingParallelism, 60000);
+        ReflectionTestUtils.setField(provisioner, "endpointId", "endpoint-id");
+        ReflectionTestUtils.setField(provisioner, "transferApiBaseUrl",
+                "https://transfer.api.globus.org/v0.10/operation/endpoint");
+        return provisioner;
+    }
+
+    @Test
+    public void testParentIsCreatedBeforeTheDirectory() {
+        expectMkdir("webin-1234_webin").andRespond(withStatus(HttpStatus.ACCEPTED));
+        expectMkdir(SUBMISSION_DIRECTORY).andRespond(withStatus(HttpStatus.ACCEPTED));
+
+        globusDirectoryProvisioner.createSubmissionDirectory(SUBMISSION_DIRECTORY);
+
+        globus.verify();
+    }
+
+    @Test
+    public void testExistingDirectoryIsNotAnError() {
+        // error returned by the Transfer API when the path already exists
+        expectMkdir("webin-1234_webin").andRespond(withStatus(HttpStatus.BAD_GATEWAY)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"code\": \"ExternalError.MkdirFailed.Exists\", " +
+                        "\"message\": \"Path already exists, Error (mkdir)\\nEndpoint: EVA submissions " +
+                        "(endpoint-id)\\nServer: 10.0.0.1:443\\nMessage: Path already exists\", " +
+                        "\"request_id\": \"AbCdEfGhI\", " +
+                        "\"resource\": \"/operation/endpoint/endpoint-id/mkdir\"}"));
+        expectMkdir(SUBMISSION_DIRECTORY).andRespond(withStatus(HttpStatus.ACCEPTED));
+
+        globusDirectoryProvisioner.createSubmissionDirectory(SUBMISSION_DIRECTORY);
+
+        globus.verify();
+    }
+
+    @Test
+    public void testOtherErrorsAreRethrown() {
+        expectMkdir("webin-1234_webin").andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+
+        assertThrows(HttpServerErrorException.ServiceUnavailable.class,
+                () -> globusDirectoryProvisioner.createSubmissionDirectory(SUBMISSION_DIRECTORY));
+
+        globus.verify();
+    }
+
+    @Test
+    public void testEveryPageOfTheListingIsRead() {
+        expectListing(SUBMISSION_DIRECTORY, 0, "{\"DATA\": [" + file("file1.vcf", 100) + ", " + file("file2.vcf", 200)
+                + "], \"has_next_page\": true}");
+        expectListing(SUBMISSION_DIRECTORY, 2, "{\"DATA\": [" + file("file3.vcf", 300)
+                + "], \"has_next_page\": false}");
+
+        Map<String, Long> fileSizes = globusDirectoryProvisioner.listSubmittedFileSizes(SUBMISSION_DIRECTORY);
+
+        assertThat(fileSizes).containsOnly(entry("file1.vcf", 100L), entry("file2.vcf", 200L),
+                entry("file3.vcf", 300L));
+        globus.verify();
+    }
+
+    @Test
+    public void testNestedDirectoriesAreListed() {
+        expectListing(SUBMISSION_DIRECTORY, 0, "{\"DATA\": [" + file("file1.vcf", 100) + ", " + directory("vcf")
+                + ", " + directory("fasta") + "], \"has_next_page\": false}");
+        expectListing(SUBMISSION_DIRECTORY + "/vcf", 0, "{\"DATA\": [" + file("file2.vcf", 200) + ", "
+                + directory("chr1") + "]}");
+        expectListing(SUBMISSION_DIRECTORY + "/fasta", 0, "{\"DATA\": [" + file("genome.fa", 300) + "]}");
+        expectListing(SUBMISSION_DIRECTORY + "/vcf/chr1", 0, "{\"DATA\": [" + file("file3.vcf", 400) + "]}");
+
+        Map<String, Long> fileSizes = globusDirectoryProvisioner.listSubmittedFileSizes(SUBMISSION_DIRECTORY);
+
+        assertThat(fileSizes).containsOnly(entry("file1.vcf", 100L), entry("file2.vcf", 200L),
+                entry("genome.fa", 300L), entry("file3.vcf", 400L));
+        globus.verify();
+    }
+
+    @Test
+    public void testParallelListingTakesASinglePlaceInThePool() {
+        RestTemplate restTemplate = new RestTemplate();
+        globus = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+        // a single thread and a single place in the queue
+        GlobusCallExecutor singleCallExecutor = new GlobusCallExecutor(1, 1, 5000, 5, 30000,
+                new SimpleMeterRegistry());
+        GlobusDirectoryProvisioner parallelProvisioner = createGlobusDirectoryProvisioner(restTemplate,
+                singleCallExecutor, 4);
+        try {
+            expectListing(SUBMISSION_DIRECTORY, 0, "{\"DATA\": [" + directory("vcf") + ", " + directory("fasta")
+                    + ", " + directory("tbi") + "]}");
+            expectListing(SUBMISSION_DIRECTORY + "/vcf", 0, "{\"DATA\": [" + file("file1.vcf", 100) + "]}");
+            expectListing(SUBMISSION_DIRECTORY + "/fasta", 0, "{\"DATA\": [" + file("genome.fa", 200) + "]}");
+            expectListing(SUBMISSION_DIRECTORY + "/tbi", 0, "{\"DATA\": [" + file("file1.vcf.tbi", 10) + "]}");
+
+            Map<String, Long> fileSizes = parallelProvisioner.listSubmittedFileSizes(SUBMISSION_DIRECTORY);
+
+            assertThat(fileSizes).containsOnly(entry("file1.vcf", 100L), entry("genome.fa", 200L),
+                    entry("file1.vcf.tbi", 10L));
+            globus.verify();
+        } finally {
+            parallelProvisioner.destroy();
+            singleCallExecutor.destroy();
+        }
+    }
+
+    @Test
+    public void testFileClosestToTheSubmissionDirectoryWinsOnANameClash() {
+        expectListing(SUBMISSION_DIRECTORY, 0, "{\"DATA\": [" + directory("old") + ", " + file("file1.vcf", 100)
+                + "]}");
+        expectListing(SUBMISSION_DIRECTORY + "/old", 0, "{\"DATA\": [" + file("file1.vcf", 50) + "]}");
+
+        Map<String, Long> fileSizes = globusDirectoryProvisioner.listSubmittedFileSizes(SUBMISSION_DIRECTORY);
+
+        assertThat(fileSizes).containsOnly(entry("file1.vcf", 100L));
+        globus.verify();
+    }
+
+    @Test
+    public void testMalformedListingIsAnError() {
+        expectListing(SUBMISSION_DIRECTORY, 0, "[\"not a listing\"]");
+
+        assertThrows(UncheckedIOException.class,
+                () -> globusDirectoryProvisioner.listSubmittedFileSizes(SUBMISSION_DIRECTORY));
+    }
+
+    @Test
+    public void testTruncatedListingIsAnError() {
+        expectListing(SUBMISSION_DIRECTORY, 0, "{\"DATA\": [" + file("file1.vcf", 100) + ", {\"name\": ");
+
+        assertThrows(UncheckedIOException.class,
+                () -> globusDirectoryProvisioner.listSubmittedFileSizes(SUBMISSION_DIRECTORY));
+    }
+
+    @Test
+    public void testMissingDirectoryCannotBeListed() {
+        globus.expect(requestTo(getListingUrl(SUBMISSION_DIRECTORY, 0)))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON)
+                        .body("{\"code\": \"ClientError.NotFound\"}"));
+
+        assertThat(globusDirectoryProvisioner.listSubmittedFileSizes(SUBMISSION_DIRECTORY)).isNull();
+    }
+
+    private void expectListing(String directory, int offset, String body) {
+        globus.expect(requestTo(getListingUrl(directory, offset)))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess(body, MediaType.APPLICATION_JSON));
+    }
+
+    private String getListingUrl(String directory, int offset) {
+        return ENDPOINT_URL + "/ls?path=" + directory + "&offset=" + offset + "&limit=1000";
+    }
+
+    private String file(String name, long size) {
+        return "{\"DATA_TYPE\": \"file\", \"name\": \"" + name + "\", \"type\": \"file\", \"size\": " + size
+                + ", \"permissions\": \"0644\"}";
+    }
+
+    private String directory(String name) {
+        return "{\"DATA_TYPE\": \"file\", \"name\": \"" + name + "\", \"type\": \"dir\", \"size\": 4096}";
+    }
+
+    private ResponseActions expectMkdir(String directory) {
+        return globus.expect(requestTo(MKDIR_URL))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().json("{\"DATA_TYPE\": \"mkdir\", \"path\": \"/" + directory + "\"}"));
+    }
+}
@@ -0,0 +1,144 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+import uk.ac.ebi.eva.submission.service.GlobusTokenRefreshService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GlobusTokenRefreshServiceTest {
+
+    private static final String TOKEN_ENDPOINT = "https://auth.globus.example.org/token";
+
+    private RestTemplate restTemplate;
+
+    private GlobusTokenRefreshService globusTokenRefreshService;
+
+    @BeforeEach
+    public void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        globusTokenRefreshService = new GlobusTokenRefreshService(restTemplate);
+        ReflectionTestUtils.setField(globusTokenRefreshService, "clientId", "clientId");
+        ReflectionTestUtils.setField(globusTokenRefreshService, "clientSecret", "clientSecret");
+        ReflectionTestUtils.setField(globusTokenRefreshService, "refreshToken", "refreshToken");
+        ReflectionTestUtils.setField(globusTokenRefreshService, "tokenEndpoint", TOKEN_ENDPOINT);
+    }
+
+    @Test
+    public void testTokenIsReusedUntilInvalidated() {
+        when(restTemplate.exchange(eq(TOKEN_ENDPOINT), eq(HttpMethod.POST), any(), eq(String.class)))
+                .thenReturn(tokenResponse("token1", 172800))
+                .thenReturn(tokenResponse("token2", 172800));
+
+        assertThat(globusTokenRefreshService.getAccessToken()).isEqualTo("token1");
+        assertThat(globusTokenRefreshService.getAccessToken()).isEqualTo("token1");
+
+        // invalidating a token that is no longer current has no effect
+        globusTokenRefreshService.invalidateAccessToken("token0");
+        assertThat(globusTokenRefreshService.getAccessToken()).isEqualTo("token1");
+
+        globusTokenRefreshService.invalidateAccessToken("token1");
+        assertThat(globusTokenRefreshService.getAccessToken()).isEqualTo("token2");
+        verify(restTemplate, times(2)).exchange(eq(TOKEN_ENDPOINT), eq(HttpMethod.POST), any(), eq(String.class));
+    }
+
+    @Test
+    public void testExpiringTokenIsRefreshedAhead() {
+        when(restTemplate.exchange(eq(TOKEN_ENDPOINT), eq(HttpMethod.POST), any(), eq(String.class)))
+                .thenReturn(tokenResponse("token1", 0))
+                .thenReturn(tokenResponse("token2", 172800));
+
+        globusTokenRefreshService.refreshToken();
+        globusTokenRefreshService.refreshTokenIfExpiringSoon();
+        assertThat(globusTokenRefreshService.getAccessToken()).isEqualTo("token2");
+
+        // a long lived token is left alone
+        globusTokenRefreshService.refreshTokenIfExpiringSoon();
+        verify(restTemplate, times(2)).exchange(eq(TOKEN_ENDPOINT), eq(HttpMethod.POST), any(), eq(String.class));
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneRefresh() throws Exception {
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch releaseRefresh = new CountDownLatch(1);
+        when(restTemplate.exchange(eq(TOKEN_ENDPOINT), eq(HttpMethod.POST), any(), eq(String.class)))
+                .thenAnswer(invocation -> {
+                    refreshStarted.countDown();
+                    releaseRefresh.await(5, TimeUnit.SECONDS);
+                    return tokenResponse("token1", 172800);
+                });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> tokens = new ArrayList<>();
+            tokens.add(executor.submit(globusTokenRefreshService::getAccessToken));
+            assertThat(refreshStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 7; i++) {
+                tokens.add(executor.submit(globusTokenRefreshService::getAccessToken));
+            }
+            releaseRefresh.countDown();
+            for (Future<String> token : tokens) {
+                assertThat(token.get(5, TimeUnit.SECONDS)).isEqualTo("token1");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(restTemplate, times(1)).exchange(eq(TOKEN_ENDPOINT), eq(HttpMethod.POST), any(), eq(String.class));
+    }
+
+    @Test
+    public void testConcurrentCallersGetTheErrorOfTheSharedRefresh() throws Exception {
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch releaseRefresh = new CountDownLatch(1);
+        when(restTemplate.exchange(eq(TOKEN_ENDPOINT), eq(HttpMethod.POST), any(), eq(String.class)))
+                .thenAnswer(invocation -> {
+                    refreshStarted.countDown();
+                    releaseRefresh.await(5, TimeUnit.SECONDS);
+                    throw HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", null,
+                            null, null);
+                });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> tokens = new ArrayList<>();
+            tokens.add(executor.submit(globusTokenRefreshService::getAccessToken));
+            assertThat(refreshStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 7; i++) {
+                tokens.add(executor.submit(globusTokenRefreshService::getAccessToken));
+            }
+            releaseRefresh.countDown();
+            for (Future<String> token : tokens) {
+                assertThatThrownBy(() -> token.get(5, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(HttpServerErrorException.class);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ResponseEntity<String> tokenResponse(String accessToken, long expiresIn) {
+        return new ResponseEntity<>("{\"access_token\": \"" + accessToken + "\", \"expires_in\": " + expiresIn + "}",
+                HttpStatus.OK);
+    }
+}
@@ -0,0 +1,175 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.service.LoginMethod;
+import uk.ac.ebi.eva.submission.service.LsriTokenService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LsriTokenServiceTest {
+
+    private static final String TOKEN_URL = "https://login.aai.lifescience-ri.eu/oidc/token";
+
+    private static final String USER_INFO_URL = "https://login.aai.lifescience-ri.eu/oidc/userinfo";
+
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+
+    private LsriTokenService lsriTokenService;
+
+    @BeforeEach
+    public void setUp() {
+        // polled every 50 ms, at most 2 device codes at a time, for 60 seconds at most
+        lsriTokenService = new LsriTokenService(restTemplate, 1, 50, 2, 60);
+        ReflectionTestUtils.setField(lsriTokenService, "lsriClientId", "lsriClientId");
+        ReflectionTestUtils.setField(lsriTokenService, "lsriClientSecret", "lsriClientSecret");
+        ReflectionTestUtils.setField(lsriTokenService, "tokenUrl", TOKEN_URL);
+        ReflectionTestUtils.setField(lsriTokenService, "userInfoUrl", USER_INFO_URL);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        lsriTokenService.destroy();
+    }
+
+    @Test
+    public void testUserInfoIsMappedToAccount() {
+        String userInfo = "{\"sub\": \"0123456789abcdef@lifescience-ri.eu\", \"name\": \"Jane Doe\", " +
+                "\"given_name\": \"Jane\", \"family_name\": \"Doe\", \"email\": \"jane.doe@example.org\", " +
+                "\"email_verified\": true, \"preferred_username\": \"jdoe\", " +
+                "\"eduperson_scoped_affiliation\": [\"member@example.org\"]}";
+        when(restTemplate.exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class)))
+                .thenReturn(new ResponseEntity<>(userInfo.getBytes(StandardCharsets.UTF_8), HttpStatus.OK));
+
+        SubmissionAccount submissionAccount = lsriTokenService.getLsriUserAccountFromToken("lsriUserToken");
+
+        assertThat(submissionAccount.getUserId()).isEqualTo("0123456789abcdef@lifescience-ri.eu");
+        assertThat(submissionAccount.getLoginType()).isEqualTo(LoginMethod.LSRI.getLoginType());
+        assertThat(submissionAccount.getFirstName()).isEqualTo("Jane");
+        assertThat(submissionAccount.getLastName()).isEqualTo("Doe");
+        assertThat(submissionAccount.getPrimaryEmail()).isEqualTo("jane.doe@example.org");
+    }
+
+    @Test
+    public void testTokenIsReturnedOnceApproved() throws Exception {
+        when(restTemplate.postForEntity(eq(TOKEN_URL), any(), eq(String.class)))
+                .thenThrow(badRequest("authorization_pending"))
+                .thenReturn(new ResponseEntity<>(HttpStatus.ACCEPTED))
+                .thenReturn(new ResponseEntity<>("{\"access_token\": \"lsriUserToken\"}", HttpStatus.OK));
+
+        CompletableFuture<String> token = lsriTokenService.pollForTokenAsync("deviceCode", 600);
+
+        assertThat(token.get(5, TimeUnit.SECONDS)).isEqualTo("lsriUserToken");
+        verify(restTemplate, times(3)).postForEntity(eq(TOKEN_URL), any(), eq(String.class));
+    }
+
+    @Test
+    public void testUnknownDeviceCodeIsNotPolledAgain() throws Exception {
+        when(restTemplate.postForEntity(eq(TOKEN_URL), any(), eq(String.class)))
+                .thenThrow(badRequest("invalid_grant"));
+
+        CompletableFuture<String> token = lsriTokenService.pollForTokenAsync("madeUpDeviceCode", 600);
+
+        assertThat(token.get(5, TimeUnit.SECONDS)).isNull();
+        Thread.sleep(200);
+        verify(restTemplate, times(1)).postForEntity(eq(TOKEN_URL), any(), eq(String.class));
+    }
+
+    @Test
+    public void testNumberOfPendingDeviceCodesIsBounded() {
+        when(restTemplate.postForEntity(eq(TOKEN_URL), any(), eq(String.class)))
+                .thenThrow(badRequest("authorization_pending"));
+
+        CompletableFuture<String> firstToken = lsriTokenService.pollForTokenAsync("deviceCode1", 600);
+        lsriTokenService.pollForTokenAsync("deviceCode2", 600);
+
+        // requests for a device code already polled share its result
+        assertThat(lsriTokenService.pollForTokenAsync("deviceCode1", 600)).isSameAs(firstToken);
+        assertThatThrownBy(() -> lsriTokenService.pollForTokenAsync("deviceCode3", 600))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    public void testConcurrentDeviceCodesDoNotExceedTheBound() throws Exception {
+        when(restTemplate.postForEntity(eq(TOKEN_URL), any(), eq(String.class)))
+                .thenThrow(badRequest("authorization_pending"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger rejected = new AtomicInteger();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> registrations = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String deviceCode = "deviceCode" + i;
+                registrations.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        lsriTokenService.pollForTokenAsync(deviceCode, 600);
+                    } catch (RejectedExecutionException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> registration : registrations) {
+                registration.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(rejected.get()).isEqualTo(6);
+    }
+
+    @Test
+    public void testCompletedDeviceCodeFreesItsPlace() throws Exception {
+        when(restTemplate.postForEntity(eq(TOKEN_URL), any(), eq(String.class)))
+                .thenThrow(badRequest("access_denied"))
+                .thenThrow(badRequest("authorization_pending"));
+
+        assertThat(lsriTokenService.pollForTokenAsync("deniedDeviceCode", 600).get(5, TimeUnit.SECONDS)).isNull();
+        lsriTokenService.pollForTokenAsync("deviceCode1", 600);
+        lsriTokenService.pollForTokenAsync("deviceCode2", 600);
+        assertThatThrownBy(() -> lsriTokenService.pollForTokenAsync("deviceCode3", 600))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    public void testPollingTimeIsCapped() {
+        assertThat(lsriTokenService.getPollingTimeInSeconds(30)).isEqualTo(30);
+        assertThat(lsriTokenService.getPollingTimeInSeconds(Integer.MAX_VALUE)).isEqualTo(60);
+        assertThat(lsriTokenService.getPollingTimeInSeconds(-1)).isEqualTo(0);
+    }
+
+    private HttpClientErrorException badRequest(String error) {
+        return HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null,
+                ("{\"error\": \"" + error + "\"}").getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import uk.ac.ebi.eva.submission.util.PersistentLookupCache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentLookupCacheTest {
+
+    private static final String LOOKUPS_METRIC = "test.lookups";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Map<String, PersistentLookupCache.StoredValue<String>> storedValues = new HashMap<>();
+
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    @Test
+    public void testValuesAreLookedUpInMemoryThenInTheTableThenDownloaded() {
+        storedValues.put("stored", new PersistentLookupCache.StoredValue<>("stored", "stored value",
+                LocalDateTime.now().minusMinutes(1)));
+        PersistentLookupCache<String> cache = createCache();
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(cache.get("stored", this::download, "")).isEqualTo("stored value");
+            assertThat(cache.get("new", this::download, "")).isEqualTo("downloaded new");
+        }
+
+        assertThat(downloads.get()).isEqualTo(1);
+        assertThat(storedValues.get("new").getValue()).isEqualTo("downloaded new");
+        assertThat(getLookups("memory")).isEqualTo(2);
+        assertThat(getLookups("database")).isEqualTo(1);
+        assertThat(getLookups("downloaded")).isEqualTo(1);
+    }
+
+    @Test
+    public void testLookupsCarryOnWhenTheDatabaseIsUnavailable() {
+        PersistentLookupCache<String> cache = new PersistentLookupCache<>("test value", 10,
+                key -> {
+                    throw new DataAccessResourceFailureException("Connection refused");
+                },
+                storedValue -> {
+                    throw new DataAccessResourceFailureException("Connection refused");
+                },
+                value -> Duration.ofHours(1), LOOKUPS_METRIC, meterRegistry);
+
+        assertThat(cache.get("new", this::download, "")).isEqualTo("downloaded new");
+        assertThat(cache.get("new", this::download, "")).isEqualTo("downloaded new");
+        assertThat(downloads.get()).isEqualTo(1);
+    }
+
+    private PersistentLookupCache<String> createCache() {
+        return new PersistentLookupCache<>("test value", 10, storedValues::get,
+                storedValue -> storedValues.put(storedValue.getKey(), storedValue),
+                value -> Duration.ofHours(1), LOOKUPS_METRIC, meterRegistry);
+    }
+
+    private String download(String key) {
+        downloads.incrementAndGet();
+        return "downloaded " + key;
+    }
+
+    private double getLookups(String result) {
+        return meterRegistry.counter(LOOKUPS_METRIC, "result", result).count();
+    }
+}
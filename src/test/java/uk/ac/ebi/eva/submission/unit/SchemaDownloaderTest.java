@@ -1,6 +1,7 @@
 package uk.ac.ebi.eva.submission.unit;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,10 +12,11 @@ import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Import;
-import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.web.client.RestTemplate;
 import uk.ac.ebi.eva.submission.repository.CallHomeEventRepository;
+import uk.ac.ebi.eva.submission.util.Deadline;
 import uk.ac.ebi.eva.submission.util.SchemaDownloader;
+import uk.ac.ebi.eva.submission.util.UpstreamCallExecutor;
 
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -23,9 +25,9 @@ import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.times;
 
-@SpringBootTest(classes = {SchemaDownloader.class, CacheConfig.class})
+@SpringBootTest(classes = {SchemaDownloader.class, UpstreamCallExecutor.class, SimpleMeterRegistry.class,
+        CacheConfig.class}, properties = "upstream.retry.initialDelayMs=10")
 @EnableCaching
-@EnableRetry
 @Import(CacheAutoConfiguration.class)
 class SchemaDownloaderTest {
 
@@ -35,7 +37,7 @@ class SchemaDownloaderTest {
     @Autowired
     private CacheManager cacheManager;
 
-    @MockBean
+    @MockBean(name = "githubRestTemplate")
     private RestTemplate restTemplate;
 
     @MockBean
@@ -53,9 +55,9 @@ class SchemaDownloaderTest {
     void testSchemaCachedAfterFirstCall() {
         String url = "https://raw.githubusercontent.com/some/schema.json";
 
-        schemaDownloader.loadSchemaFromGitHub(url);
-        schemaDownloader.loadSchemaFromGitHub(url);
-        schemaDownloader.loadSchemaFromGitHub(url);
+        schemaDownloader.loadSchemaFromGitHub(url, deadline());
+        schemaDownloader.loadSchemaFromGitHub(url, deadline());
+        schemaDownloader.loadSchemaFromGitHub(url, deadline());
 
         verify(restTemplate, times(1)).getForObject(url, String.class);
     }
@@ -64,12 +66,12 @@ class SchemaDownloaderTest {
     void testCacheEvictForcesRefetch() {
         String url = "https://raw.githubusercontent.com/some/schema.json";
 
-        schemaDownloader.loadSchemaFromGitHub(url);
-        schemaDownloader.loadSchemaFromGitHub(url);
+        schemaDownloader.loadSchemaFromGitHub(url, deadline());
+        schemaDownloader.loadSchemaFromGitHub(url, deadline());
 
         schemaDownloader.evictSchemaCache();
 
-        schemaDownloader.loadSchemaFromGitHub(url);
+        schemaDownloader.loadSchemaFromGitHub(url, deadline());
 
         verify(restTemplate, times(2)).getForObject(url, String.class);
     }
@@ -80,10 +82,10 @@ class SchemaDownloaderTest {
         String url1 = "https://raw.githubusercontent.com/schema-v1.json";
         String url2 = "https://raw.githubusercontent.com/schema-v2.json";
 
-        schemaDownloader.loadSchemaFromGitHub(url1);
-        schemaDownloader.loadSchemaFromGitHub(url1);
-        schemaDownloader.loadSchemaFromGitHub(url2);
-        schemaDownloader.loadSchemaFromGitHub(url2);
+        schemaDownloader.loadSchemaFromGitHub(url1, deadline());
+        schemaDownloader.loadSchemaFromGitHub(url1, deadline());
+        schemaDownloader.loadSchemaFromGitHub(url2, deadline());
+        schemaDownloader.loadSchemaFromGitHub(url2, deadline());
 
         verify(restTemplate, times(1)).getForObject(url1, String.class);
         verify(restTemplate, times(1)).getForObject(url2, String.class);
@@ -94,7 +96,7 @@ class SchemaDownloaderTest {
         String url = "https://raw.githubusercontent.com/some/schema.json";
         when(restTemplate.getForObject(eq(url), eq(String.class))).thenThrow(new RuntimeException("Github down"));
 
-        assertThrows(Exception.class, () -> schemaDownloader.loadSchemaFromGitHub(url));
+        assertThrows(Exception.class, () -> schemaDownloader.loadSchemaFromGitHub(url, deadline()));
 
         verify(restTemplate, times(5)).getForObject(eq(url), eq(String.class));
     }
@@ -104,8 +106,12 @@ class SchemaDownloaderTest {
         String url = "https://raw.githubusercontent.com/some/schema.json";
         when(restTemplate.getForObject(eq(url), eq(JsonNode.class))).thenThrow(new RuntimeException("Github down"));
 
-        assertThrows(Exception.class, () -> schemaDownloader.getLatestTag(url));
+        assertThrows(Exception.class, () -> schemaDownloader.getLatestTag(url, deadline()));
 
         verify(restTemplate, times(5)).getForObject(eq(url), eq(JsonNode.class));
     }
-}
\ No newline at end of file
+
+    private static Deadline deadline() {
+        return Deadline.inMillis(60000);
+    }
+}
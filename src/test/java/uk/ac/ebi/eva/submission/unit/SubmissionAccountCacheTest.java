@@ -0,0 +1,204 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.exception.UpstreamUnavailableException;
+import uk.ac.ebi.eva.submission.service.LoginMethod;
+import uk.ac.ebi.eva.submission.service.SubmissionAccountCache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SubmissionAccountCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final SubmissionAccount account = new SubmissionAccount("webinUserId", LoginMethod.WEBIN.getLoginType(),
+            "test_first_name", "test_last_name", "test_primary_email@email.com");
+
+    @Test
+    public void testSuccessfulLookupIsCached() {
+        SubmissionAccountCache cache = new SubmissionAccountCache(10, 300, 30, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, SubmissionAccount> authenticator = token -> {
+            calls.incrementAndGet();
+            return account;
+        };
+
+        assertThat(cache.getOrAuthenticate("opaqueToken", authenticator)).isEqualTo(account);
+        assertThat(cache.getOrAuthenticate("opaqueToken", authenticator)).isEqualTo(account);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailedLookupIsCached() {
+        SubmissionAccountCache cache = new SubmissionAccountCache(10, 300, 30, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, SubmissionAccount> authenticator = token -> {
+            calls.incrementAndGet();
+            return null;
+        };
+
+        assertThat(cache.getOrAuthenticate("invalidToken", authenticator)).isNull();
+        assertThat(cache.getOrAuthenticate("invalidToken", authenticator)).isNull();
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUnavailableUserInfoEndpointIsNotCached() {
+        SubmissionAccountCache cache = new SubmissionAccountCache(10, 300, 30, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, SubmissionAccount> authenticator = token -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new UpstreamUnavailableException("Could not call user info endpoint");
+            }
+            return account;
+        };
+
+        assertThatThrownBy(() -> cache.getOrAuthenticate("validToken", authenticator))
+                .isInstanceOf(UpstreamUnavailableException.class);
+        assertThat(cache.getOrAuthenticate("validToken", authenticator)).isEqualTo(account);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testExpiredJwtIsNotCached() {
+        SubmissionAccountCache cache = new SubmissionAccountCache(10, 300, 30, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, SubmissionAccount> authenticator = token -> {
+            calls.incrementAndGet();
+            return account;
+        };
+        String expiredToken = createJwt(System.currentTimeMillis() / 1000 - 60);
+
+        cache.getOrAuthenticate(expiredToken, authenticator);
+        cache.getOrAuthenticate(expiredToken, authenticator);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testValidJwtIsCached() {
+        SubmissionAccountCache cache = new SubmissionAccountCache(10, 300, 30, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, SubmissionAccount> authenticator = token -> {
+            calls.incrementAndGet();
+            return account;
+        };
+        String validToken = createJwt(System.currentTimeMillis() / 1000 + 3600);
+
+        cache.getOrAuthenticate(validToken, authenticator);
+        cache.getOrAuthenticate(validToken, authenticator);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        SubmissionAccountCache cache = new SubmissionAccountCache(2, 300, 30, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, SubmissionAccount> authenticator = token -> {
+            calls.incrementAndGet();
+            return account;
+        };
+
+        cache.getOrAuthenticate("token1", authenticator);
+        cache.getOrAuthenticate("token2", authenticator);
+        cache.getOrAuthenticate("token3", authenticator);
+        // token1 was the least recently used entry and has been evicted
+        cache.getOrAuthenticate("token1", authenticator);
+        assertThat(calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testConcurrentLookupsAreCoalesced() throws Exception {
+        SubmissionAccountCache cache = new SubmissionAccountCache(10, 300, 30, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        Function<String, SubmissionAccount> authenticator = token -> {
+            calls.incrementAndGet();
+            lookupStarted.countDown();
+            try {
+                releaseLookup.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return account;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SubmissionAccount> first = executor.submit(() -> cache.getOrAuthenticate("token", authenticator));
+            assertThat(lookupStarted.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<SubmissionAccount> second = executor.submit(() -> cache.getOrAuthenticate("token", authenticator));
+            // wait until the second lookup is blocked on the first one before letting it finish
+            while (meterRegistry.counter(SubmissionAccountCache.LOOKUPS_METRIC, "result", "coalesced").count() < 1) {
+                Thread.sleep(10);
+            }
+            releaseLookup.countDown();
+
+            assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo(account);
+            assertThat(second.get(10, TimeUnit.SECONDS)).isEqualTo(account);
+            assertThat(calls.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCoalescedLookupsFailWithTheLookupTheyWaitFor() throws Exception {
+        SubmissionAccountCache cache = new SubmissionAccountCache(10, 300, 30, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        Function<String, SubmissionAccount> authenticator = token -> {
+            if (calls.incrementAndGet() > 1) {
+                return account;
+            }
+            lookupStarted.countDown();
+            try {
+                releaseLookup.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new StackOverflowError();
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SubmissionAccount> first = executor.submit(() -> cache.getOrAuthenticate("token", authenticator));
+            assertThat(lookupStarted.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<SubmissionAccount> second = executor.submit(() -> cache.getOrAuthenticate("token", authenticator));
+            while (meterRegistry.counter(SubmissionAccountCache.LOOKUPS_METRIC, "result", "coalesced").count() < 1) {
+                Thread.sleep(10);
+            }
+            releaseLookup.countDown();
+
+            assertThatThrownBy(() -> first.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+            assertThatThrownBy(() -> second.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+            // the failed lookup is neither cached nor left in flight
+            assertThat(cache.getOrAuthenticate("token", authenticator)).isEqualTo(account);
+            assertThat(calls.get()).isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String createJwt(long exp) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"RS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+        String payload = encoder.encodeToString(("{\"sub\":\"webinUserId\",\"exp\":" + exp + "}")
+                .getBytes(StandardCharsets.UTF_8));
+        return header + "." + payload + ".signature";
+    }
+}
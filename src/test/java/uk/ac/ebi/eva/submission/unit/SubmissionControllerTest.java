@@ -1,17 +1,30 @@
 package uk.ac.ebi.eva.submission.unit;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController;
 import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.exception.UpstreamUnavailableException;
 import uk.ac.ebi.eva.submission.service.LoginMethod;
 import uk.ac.ebi.eva.submission.service.LsriTokenService;
+import uk.ac.ebi.eva.submission.service.SubmissionAccountCache;
 import uk.ac.ebi.eva.submission.service.WebinTokenService;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SubmissionControllerTest {
@@ -21,6 +34,9 @@ public class SubmissionControllerTest {
     @Mock
     private LsriTokenService lsriTokenService;
 
+    @Spy
+    private SubmissionAccountCache submissionAccountCache = new SubmissionAccountCache(100, 300, 30, new SimpleMeterRegistry());
+
     @InjectMocks
     private SubmissionController submissionController;
 
@@ -57,4 +73,67 @@ public class SubmissionControllerTest {
         assertThat(submissionAccount.getUserId()).isNotNull();
         assertThat(submissionAccount.getUserId()).isEqualTo(userId);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetUserIdIsCachedForSameToken() {
+        String userId = "webinUserId";
+        String token = "webinUserToken";
+        SubmissionAccount account = new SubmissionAccount(userId, LoginMethod.WEBIN.getLoginType(), "test_first_name",
+                "test_last_name", "testprimary_email@email.com");
+        when(webinTokenService.getWebinUserAccountFromToken(token)).thenReturn(account);
+
+        submissionController.getSubmissionAccount("Bearer " + token);
+        SubmissionAccount submissionAccount = submissionController.getSubmissionAccount("Bearer " + token);
+        assertThat(submissionAccount.getUserId()).isEqualTo(userId);
+        verify(webinTokenService, times(1)).getWebinUserAccountFromToken(token);
+    }
+
+    @Test
+    public void testLsriJwtIsNotSentToWebin() {
+        String userId = "lsriuser@lsri.com";
+        String token = createJwt("{\"iss\":\"https://lsri.example.org/oidc/\",\"aud\":\"lsriClientId\"}");
+        SubmissionAccount account = new SubmissionAccount(userId, LoginMethod.LSRI.getLoginType(), "test_first_name",
+                "test_last_name", "test_primary_email@email.com");
+        when(lsriTokenService.isLsriToken(any())).thenReturn(true);
+        when(lsriTokenService.getLsriUserAccountFromToken(token)).thenReturn(account);
+
+        SubmissionAccount submissionAccount = submissionController.getSubmissionAccount(token);
+        assertThat(submissionAccount.getUserId()).isEqualTo(userId);
+        verify(webinTokenService, never()).getWebinUserAccountFromToken(anyString());
+    }
+
+    @Test
+    public void testWebinJwtIsNotSentToLsri() {
+        String userId = "webinUserId";
+        String token = createJwt("{\"iss\":\"https://webin.example.org/auth\"}");
+        SubmissionAccount account = new SubmissionAccount(userId, LoginMethod.WEBIN.getLoginType(), "test_first_name",
+                "test_last_name", "test_primary_email@email.com");
+        when(webinTokenService.isWebinToken(any())).thenReturn(true);
+        when(webinTokenService.getWebinUserAccountFromToken(token)).thenReturn(null);
+
+        SubmissionAccount submissionAccount = submissionController.getSubmissionAccount(token);
+        assertThat(submissionAccount).isNull();
+        verify(lsriTokenService, never()).getLsriUserAccountFromToken(anyString());
+    }
+
+    @Test
+    public void testTokenIsNotRejectedWhenWebinIsUnavailable() {
+        String token = "opaqueUserToken";
+        when(webinTokenService.getWebinUserAccountFromToken(token))
+                .thenThrow(new UpstreamUnavailableException("Could not call user info endpoint"));
+        when(lsriTokenService.getLsriUserAccountFromToken(token)).thenReturn(null);
+
+        assertThatThrownBy(() -> submissionController.getSubmissionAccount(token))
+                .isInstanceOf(UpstreamUnavailableException.class);
+        assertThatThrownBy(() -> submissionController.getSubmissionAccount(token))
+                .isInstanceOf(UpstreamUnavailableException.class);
+        // the outcome was not cached
+        verify(webinTokenService, times(2)).getWebinUserAccountFromToken(token);
+    }
+
+    private String createJwt(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8)) + "." +
+                encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+}
@@ -0,0 +1,150 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import uk.ac.ebi.eva.submission.entity.Submission;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.exception.GlobusUnavailableException;
+import uk.ac.ebi.eva.submission.model.SubmissionStatus;
+import uk.ac.ebi.eva.submission.repository.SubmissionRepository;
+import uk.ac.ebi.eva.submission.service.GlobusDirectoryProvisioner;
+import uk.ac.ebi.eva.submission.service.SubmissionDirectoryProvisioningService;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SubmissionDirectoryProvisioningServiceTest {
+
+    private static final String SUBMISSION_ID = "submissionId";
+    private static final String DIRECTORY = "webinUserId/submissionId";
+
+    private GlobusDirectoryProvisioner globusDirectoryProvisioner;
+
+    private SubmissionRepository submissionRepository;
+
+    private SubmissionDirectoryProvisioningService provisioningService;
+
+    @BeforeEach
+    public void setUp() {
+        globusDirectoryProvisioner = mock(GlobusDirectoryProvisioner.class);
+        submissionRepository = mock(SubmissionRepository.class);
+        when(submissionRepository.updateStatus(anyString(), anyString(), anyString())).thenReturn(1);
+        when(submissionRepository.claimProvisioning(anyString(), any(), any())).thenReturn(1);
+        provisioningService = new SubmissionDirectoryProvisioningService(globusDirectoryProvisioner,
+                submissionRepository, 1, 1, 3, 1);
+        ReflectionTestUtils.setField(provisioningService, "claimTimeoutSeconds", 600);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        provisioningService.destroy();
+    }
+
+    @Test
+    public void testSubmissionIsOpenedOnceDirectoryIsCreated() {
+        doThrow(new ResourceAccessException("Globus unavailable"))
+                .doNothing()
+                .when(globusDirectoryProvisioner).createSubmissionDirectory(DIRECTORY);
+
+        provisioningService.provisionSubmissionDirectory(SUBMISSION_ID, DIRECTORY);
+
+        verify(submissionRepository, timeout(5000)).updateStatus(SUBMISSION_ID,
+                SubmissionStatus.PROVISIONING.toString(), SubmissionStatus.OPEN.toString());
+        verify(globusDirectoryProvisioner, times(2)).createSubmissionDirectory(DIRECTORY);
+    }
+
+    @Test
+    public void testSubmissionFailsWhenGlobusRefusesTheDirectory() {
+        doThrow(HttpClientErrorException.create(HttpStatus.FORBIDDEN, "Forbidden", null, null, null))
+                .when(globusDirectoryProvisioner).createSubmissionDirectory(DIRECTORY);
+
+        provisioningService.provisionSubmissionDirectory(SUBMISSION_ID, DIRECTORY);
+
+        verify(submissionRepository, timeout(5000)).updateStatus(SUBMISSION_ID,
+                SubmissionStatus.PROVISIONING.toString(), SubmissionStatus.FAILED.toString());
+        verify(submissionRepository, never()).releaseProvisioningClaim(anyString(), any());
+    }
+
+    @Test
+    public void testSubmissionIsLeftForTheSweepWhenGlobusIsUnavailable() throws InterruptedException {
+        doThrow(new GlobusUnavailableException("Globus is currently unavailable, please try again later"))
+                .when(globusDirectoryProvisioner).createSubmissionDirectory(DIRECTORY);
+
+        provisioningService.provisionSubmissionDirectory(SUBMISSION_ID, DIRECTORY);
+
+        ArgumentCaptor<LocalDateTime> claimTime = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(submissionRepository, timeout(5000)).releaseProvisioningClaim(eq(SUBMISSION_ID), claimTime.capture());
+        verify(submissionRepository).claimProvisioning(eq(SUBMISSION_ID), eq(claimTime.getValue()), any());
+        verify(globusDirectoryProvisioner, times(3)).createSubmissionDirectory(DIRECTORY);
+        provisioningService.destroy();
+        verify(submissionRepository, never()).updateStatus(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testSubmissionClaimedElsewhereIsNotProvisioned() throws InterruptedException {
+        when(submissionRepository.claimProvisioning(anyString(), any(), any())).thenReturn(0);
+
+        provisioningService.provisionSubmissionDirectory(SUBMISSION_ID, DIRECTORY);
+        provisioningService.destroy();
+
+        verify(globusDirectoryProvisioner, never()).createSubmissionDirectory(anyString());
+        verify(submissionRepository, never()).updateStatus(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testSubmissionIsLeftForTheSweepWhenTheQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(globusDirectoryProvisioner).createSubmissionDirectory(anyString());
+
+        provisioningService.provisionSubmissionDirectory("submission1", "webinUserId/submission1");
+        started.await(5, TimeUnit.SECONDS);
+        provisioningService.provisionSubmissionDirectory("submission2", "webinUserId/submission2");
+        // neither queued nor run by the calling thread
+        provisioningService.provisionSubmissionDirectory("submission3", "webinUserId/submission3");
+        release.countDown();
+        provisioningService.destroy();
+
+        verify(globusDirectoryProvisioner).createSubmissionDirectory("webinUserId/submission2");
+        verify(globusDirectoryProvisioner, never()).createSubmissionDirectory("webinUserId/submission3");
+    }
+
+    @Test
+    public void testStaleSubmissionsAreResumed() {
+        SubmissionAccount submissionAccount = new SubmissionAccount("webinUserId", "webin", "John", "Doe",
+                "john@doe.com");
+        Submission submission = new Submission(SUBMISSION_ID);
+        submission.setSubmissionAccount(submissionAccount);
+        when(submissionRepository.findStaleProvisioning(any())).thenReturn(Collections.singletonList(submission));
+
+        provisioningService.resumePendingProvisioning();
+
+        verify(globusDirectoryProvisioner, timeout(5000)).createSubmissionDirectory(
+                SubmissionDirectoryProvisioningService.getSubmissionDirectory(submissionAccount.getId(),
+                        SUBMISSION_ID));
+    }
+}
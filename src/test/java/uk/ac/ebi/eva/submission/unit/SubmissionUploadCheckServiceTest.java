@@ -0,0 +1,131 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.exception.MetadataFileInfoMismatchException;
+import uk.ac.ebi.eva.submission.exception.RequiredFieldsMissingException;
+import uk.ac.ebi.eva.submission.model.UploadCheckResult;
+import uk.ac.ebi.eva.submission.service.SubmissionService;
+import uk.ac.ebi.eva.submission.service.SubmissionUploadCheckService;
+import uk.ac.ebi.eva.submission.util.Deadline;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.DESCRIPTION;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TAXONOMY_ID;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TITLE;
+
+public class SubmissionUploadCheckServiceTest {
+
+    private final SubmissionAccount submissionAccount = new SubmissionAccount("webinUserId", "webin", "first", "last",
+            "user@webin.com");
+
+    private SubmissionService submissionService;
+
+    private SubmissionUploadCheckService submissionUploadCheckService;
+
+    @BeforeEach
+    public void setUp() {
+        submissionService = mock(SubmissionService.class);
+        submissionUploadCheckService = new SubmissionUploadCheckService(submissionService, 4, 10);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        submissionUploadCheckService.destroy();
+    }
+
+    @Test
+    public void testChecksRunConcurrently() {
+        ObjectNode metadataJson = createMetadataJson("PRJEB12345", null);
+        // each check only completes once all three have started
+        CountDownLatch allStarted = new CountDownLatch(3);
+        doAnswer(invocation -> awaitOthers(allStarted, null))
+                .when(submissionService).checkMetadataFileInfoMatchesWithUploadedFiles(any(), any(), any());
+        when(submissionService.checkAllRequiredParametersProvided(eq(metadataJson), any()))
+                .thenAnswer(invocation -> awaitOthers(allStarted, getProjectDetails("")));
+        when(submissionService.isHumanDataInSubmission(eq(metadataJson), eq(""), any()))
+                .thenAnswer(invocation -> awaitOthers(allStarted, true));
+
+        UploadCheckResult result = submissionUploadCheckService.checkUploadedSubmission(submissionAccount, "sub1",
+                metadataJson, Deadline.inMillis(60000));
+
+        assertThat(result.getProjectDetails().get(TITLE)).isEqualTo("title");
+        assertThat(result.isHumanData()).isTrue();
+    }
+
+    @Test
+    public void testFileErrorReportedBeforeProjectError() {
+        ObjectNode metadataJson = createMetadataJson(null, "9606");
+        CountDownLatch projectChecked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            // fails after the project check has failed
+            projectChecked.await(10, TimeUnit.SECONDS);
+            throw new MetadataFileInfoMismatchException("Files missing");
+        }).when(submissionService).checkMetadataFileInfoMatchesWithUploadedFiles(any(), any(), any());
+        when(submissionService.checkAllRequiredParametersProvided(eq(metadataJson), any())).thenAnswer(invocation -> {
+            projectChecked.countDown();
+            throw new RequiredFieldsMissingException("Project title missing");
+        });
+
+        MetadataFileInfoMismatchException exception = assertThrows(MetadataFileInfoMismatchException.class,
+                () -> submissionUploadCheckService.checkUploadedSubmission(submissionAccount, "sub1", metadataJson,
+                        Deadline.inMillis(60000)));
+        assertThat(exception.getMessage()).isEqualTo("Files missing");
+    }
+
+    @Test
+    public void testSamplesNotCheckedWhenTaxonomyProvided() {
+        ObjectNode metadataJson = createMetadataJson(null, "9606");
+        when(submissionService.checkAllRequiredParametersProvided(eq(metadataJson), any())).thenReturn(getProjectDetails("9606"));
+        when(submissionService.isHumanDataInSubmission(eq(metadataJson), eq("9606"), any())).thenReturn(true);
+
+        UploadCheckResult result = submissionUploadCheckService.checkUploadedSubmission(submissionAccount, "sub1",
+                metadataJson, Deadline.inMillis(60000));
+
+        assertThat(result.isHumanData()).isTrue();
+        verify(submissionService, never()).isHumanDataInSubmission(any(), eq(""), any());
+    }
+
+    private static <T> T awaitOthers(CountDownLatch allStarted, T result) throws InterruptedException {
+        allStarted.countDown();
+        assertThat(allStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        return result;
+    }
+
+    private static ObjectNode createMetadataJson(String projectAccession, String taxId) {
+        ObjectNode metadataJson = new ObjectMapper().createObjectNode();
+        ObjectNode projectNode = metadataJson.putObject("project");
+        if (projectAccession != null) {
+            projectNode.put("projectAccession", projectAccession);
+        }
+        if (taxId != null) {
+            projectNode.put("taxId", taxId);
+        }
+        return metadataJson;
+    }
+
+    private static Map<String, String> getProjectDetails(String taxId) {
+        Map<String, String> projectDetails = new HashMap<>();
+        projectDetails.put(TITLE, "title");
+        projectDetails.put(DESCRIPTION, "description");
+        projectDetails.put(TAXONOMY_ID, taxId);
+        return projectDetails;
+    }
+}
@@ -0,0 +1,273 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.ac.ebi.eva.submission.entity.Submission;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.entity.SubmissionUploadJob;
+import uk.ac.ebi.eva.submission.exception.MetadataFileInfoMismatchException;
+import uk.ac.ebi.eva.submission.model.SubmissionStatus;
+import uk.ac.ebi.eva.submission.model.SubmissionUploadJobDto;
+import uk.ac.ebi.eva.submission.model.UploadCheckResult;
+import uk.ac.ebi.eva.submission.model.UploadJobStatus;
+import uk.ac.ebi.eva.submission.repository.SubmissionAccountRepository;
+import uk.ac.ebi.eva.submission.repository.SubmissionRepository;
+import uk.ac.ebi.eva.submission.repository.SubmissionUploadJobRepository;
+import uk.ac.ebi.eva.submission.service.SubmissionService;
+import uk.ac.ebi.eva.submission.service.SubmissionUploadCheckService;
+import uk.ac.ebi.eva.submission.service.SubmissionUploadJobService;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.DESCRIPTION;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TAXONOMY_ID;
+import static uk.ac.ebi.eva.submission.controller.submissionws.SubmissionController.TITLE;
+
+public class SubmissionUploadJobServiceTest {
+
+    private static final String SUBMISSION_ID = "submissionId";
+
+    private final SubmissionAccount submissionAccount = new SubmissionAccount("webinUserId", "webin", "first",
+            "last", "user@webin.com");
+
+    private final AtomicReference<SubmissionUploadJob> savedJob = new AtomicReference<>();
+
+    private SubmissionService submissionService;
+
+    private SubmissionUploadCheckService submissionUploadCheckService;
+
+    private SubmissionRepository submissionRepository;
+
+    private SubmissionUploadJobRepository submissionUploadJobRepository;
+
+    private SubmissionUploadJobService submissionUploadJobService;
+
+    @BeforeEach
+    public void setUp() {
+        submissionService = mock(SubmissionService.class);
+        submissionUploadCheckService = mock(SubmissionUploadCheckService.class);
+        submissionRepository = mock(SubmissionRepository.class);
+        SubmissionAccountRepository submissionAccountRepository = mock(SubmissionAccountRepository.class);
+        submissionUploadJobRepository = mock(SubmissionUploadJobRepository.class);
+
+        Submission submission = new Submission(SUBMISSION_ID);
+        submission.setStatus(SubmissionStatus.OPEN.toString());
+        submission.setSubmissionAccount(submissionAccount);
+        when(submissionRepository.findBySubmissionId(SUBMISSION_ID)).thenReturn(submission);
+        when(submissionAccountRepository.findWithSecondaryEmailsById(submissionAccount.getId()))
+                .thenReturn(submissionAccount);
+        when(submissionUploadJobRepository.save(any())).thenAnswer(invocation -> {
+            savedJob.set(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(submissionUploadJobRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(savedJob.get()));
+        when(submissionUploadJobRepository.claimJob(anyString(), any())).thenReturn(1);
+        when(submissionUploadJobRepository.completeJob(anyString(), any(), anyString(), anyInt(), any(), any()))
+                .thenAnswer(invocation -> {
+                    SubmissionUploadJob job = savedJob.get();
+                    job.setStatus(invocation.getArgument(2));
+                    job.setResultCode(invocation.getArgument(3));
+                    job.setResultMessage(invocation.getArgument(4));
+                    job.setCompletedTime(invocation.getArgument(5));
+                    return 1;
+                });
+
+        submissionUploadJobService = new SubmissionUploadJobService(submissionService, submissionUploadCheckService,
+                submissionRepository, submissionAccountRepository, submissionUploadJobRepository, 1, 10);
+        ReflectionTestUtils.setField(submissionUploadJobService, "pendingTimeoutSeconds", 60);
+        ReflectionTestUtils.setField(submissionUploadJobService, "runningTimeoutSeconds", 1800);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        submissionUploadJobService.destroy();
+    }
+
+    @Test
+    public void testJobMarksSubmissionUploaded() {
+        ObjectNode metadataJson = createMetadataJson();
+        when(submissionUploadCheckService.checkUploadedSubmission(eq(submissionAccount), eq(SUBMISSION_ID),
+                eq(metadataJson), any()))
+                .thenReturn(new UploadCheckResult(getProjectDetails(), false));
+
+        SubmissionUploadJobDto uploadJob = submissionUploadJobService.submitUploadJob(SUBMISSION_ID, metadataJson,
+                false);
+        assertThat(uploadJob.getStatus()).isEqualTo(UploadJobStatus.PENDING.toString());
+
+        awaitJobCompletion();
+        verify(submissionRepository).findAndLockBySubmissionId(SUBMISSION_ID);
+        verify(submissionService).markSubmissionUploadedAndNotify(submissionAccount, SUBMISSION_ID, "title",
+                "description", metadataJson, false, false);
+        assertThat(savedJob.get().getStatus()).isEqualTo(UploadJobStatus.SUCCEEDED.toString());
+        assertThat(savedJob.get().getResultCode()).isEqualTo(200);
+    }
+
+    @Test
+    public void testJobRecordsFailedChecks() {
+        ObjectNode metadataJson = createMetadataJson();
+        when(submissionUploadCheckService.checkUploadedSubmission(eq(submissionAccount), eq(SUBMISSION_ID),
+                eq(metadataJson), any()))
+                .thenThrow(new MetadataFileInfoMismatchException("Files missing"));
+
+        submissionUploadJobService.submitUploadJob(SUBMISSION_ID, metadataJson, false);
+
+        awaitJobCompletion();
+        assertThat(savedJob.get().getStatus()).isEqualTo(UploadJobStatus.FAILED.toString());
+        assertThat(savedJob.get().getResultCode()).isEqualTo(400);
+        assertThat(savedJob.get().getResultMessage()).isEqualTo("Files missing");
+        verify(submissionService, never()).markSubmissionUploadedAndNotify(any(), anyString(), anyString(),
+                anyString(), any(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void testActiveJobIsReturnedInsteadOfANewOne() {
+        SubmissionUploadJob activeJob = new SubmissionUploadJob("jobId", SUBMISSION_ID);
+        activeJob.setStatus(UploadJobStatus.RUNNING.toString());
+        when(submissionUploadJobRepository.findFirstBySubmissionIdAndStatusIn(eq(SUBMISSION_ID), any()))
+                .thenReturn(activeJob);
+
+        SubmissionUploadJobDto uploadJob = submissionUploadJobService.submitUploadJob(SUBMISSION_ID,
+                createMetadataJson(), false);
+
+        assertThat(uploadJob.getJobId()).isEqualTo("jobId");
+        verify(submissionRepository).findAndLockBySubmissionId(SUBMISSION_ID);
+        verify(submissionUploadJobRepository, never()).save(any());
+    }
+
+    @Test
+    public void testOnlyStaleRunningJobsAreResumed() {
+        LocalDateTime before = LocalDateTime.now().minusSeconds(1800);
+
+        submissionUploadJobService.dispatchStalePendingJobs();
+
+        ArgumentCaptor<LocalDateTime> staleBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(submissionUploadJobRepository).requeueStaleRunningJobs(staleBefore.capture());
+        assertThat(staleBefore.getValue()).isBetween(before, LocalDateTime.now().minusSeconds(1800));
+    }
+
+    @Test
+    public void testJobClaimedElsewhereIsNotRun() throws InterruptedException {
+        when(submissionUploadJobRepository.claimJob(anyString(), any())).thenReturn(0);
+
+        submissionUploadJobService.submitUploadJob(SUBMISSION_ID, createMetadataJson(), false);
+        verify(submissionUploadJobRepository, timeout(5000)).claimJob(anyString(), any());
+        submissionUploadJobService.destroy();
+
+        verify(submissionUploadCheckService, never()).checkUploadedSubmission(any(), anyString(), any(), any());
+    }
+
+    @Test
+    public void testOutcomeOfARunThatLostItsClaimIsNotRecorded() {
+        ObjectNode metadataJson = createMetadataJson();
+        when(submissionUploadCheckService.checkUploadedSubmission(eq(submissionAccount), eq(SUBMISSION_ID),
+                eq(metadataJson), any()))
+                .thenThrow(new MetadataFileInfoMismatchException("Files missing"));
+        doReturn(0).when(submissionUploadJobRepository).completeJob(anyString(), any(), anyString(), anyInt(), any(),
+                any());
+
+        submissionUploadJobService.submitUploadJob(SUBMISSION_ID, metadataJson, false);
+        verify(submissionUploadJobRepository, timeout(5000)).completeJob(anyString(), any(), anyString(), anyInt(),
+                any(), any());
+        submissionUploadJobService.destroy();
+
+        verify(submissionUploadJobRepository, never()).completeRunningJob(anyString(), anyString(), anyInt(), any(),
+                any());
+    }
+
+    @Test
+    public void testSuccessOfARunThatLostItsClaimIsRecorded() {
+        ObjectNode metadataJson = createMetadataJson();
+        when(submissionUploadCheckService.checkUploadedSubmission(eq(submissionAccount), eq(SUBMISSION_ID),
+                eq(metadataJson), any()))
+                .thenReturn(new UploadCheckResult(getProjectDetails(), false));
+        doReturn(0).when(submissionUploadJobRepository).completeJob(anyString(), any(), anyString(), anyInt(), any(),
+                any());
+
+        submissionUploadJobService.submitUploadJob(SUBMISSION_ID, metadataJson, false);
+
+        verify(submissionUploadJobRepository, timeout(5000)).completeRunningJob(anyString(),
+                eq(UploadJobStatus.SUCCEEDED.toString()), eq(200), any(), any());
+    }
+
+    @Test
+    public void testQueuedJobIsNotQueuedAgain() {
+        ObjectNode metadataJson = createMetadataJson();
+        CountDownLatch checksStarted = new CountDownLatch(1);
+        CountDownLatch releaseChecks = new CountDownLatch(1);
+        when(submissionUploadCheckService.checkUploadedSubmission(eq(submissionAccount), eq(SUBMISSION_ID),
+                eq(metadataJson), any()))
+                .thenAnswer(invocation -> {
+                    checksStarted.countDown();
+                    releaseChecks.await();
+                    return new UploadCheckResult(getProjectDetails(), false);
+                });
+        SubmissionUploadJob pendingJob = new SubmissionUploadJob("pendingJobId", "otherSubmissionId");
+        when(submissionUploadJobRepository.findByStatusAndCreatedTimeBefore(eq(UploadJobStatus.PENDING.toString()),
+                any())).thenReturn(Collections.singletonList(pendingJob));
+
+        // the only worker is busy, so the pending job stays in the queue during both sweeps
+        submissionUploadJobService.submitUploadJob(SUBMISSION_ID, metadataJson, false);
+        assertThat(awaitQuietly(checksStarted)).isTrue();
+        submissionUploadJobService.dispatchStalePendingJobs();
+        submissionUploadJobService.dispatchStalePendingJobs();
+        releaseChecks.countDown();
+
+        verify(submissionUploadJobRepository, after(1000).times(1)).claimJob(eq("pendingJobId"), any());
+    }
+
+    private void awaitJobCompletion() {
+        verify(submissionUploadJobRepository, timeout(5000)).completeJob(anyString(), any(), anyString(), anyInt(),
+                any(), any());
+        assertThat(savedJob.get().getCompletedTime()).isNotNull();
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static ObjectNode createMetadataJson() {
+        ObjectNode metadataJson = new ObjectMapper().createObjectNode();
+        metadataJson.putObject("project").put("title", "title").put("description", "description");
+        metadataJson.putArray("analysis");
+        return metadataJson;
+    }
+
+    private static Map<String, String> getProjectDetails() {
+        Map<String, String> projectDetails = new HashMap<>();
+        projectDetails.put(TITLE, "title");
+        projectDetails.put(DESCRIPTION, "description");
+        projectDetails.put(TAXONOMY_ID, "");
+        return projectDetails;
+    }
+}
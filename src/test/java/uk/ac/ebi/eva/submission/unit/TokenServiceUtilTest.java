@@ -0,0 +1,79 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import uk.ac.ebi.eva.submission.exception.UpstreamUnavailableException;
+import uk.ac.ebi.eva.submission.model.WebinUserInfo;
+import uk.ac.ebi.eva.submission.service.TokenServiceUtil;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TokenServiceUtilTest {
+
+    private static final String USER_INFO_URL = "https://www.ebi.ac.uk/ena/submit/webin/auth/admin/submission-account";
+
+    private static final ObjectReader WEBIN_USER_INFO_READER = new ObjectMapper().readerFor(WebinUserInfo.class);
+
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+
+    @Test
+    public void testRejectedTokenReturnsNull() {
+        when(restTemplate.exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", null, null, null));
+
+        WebinUserInfo webinUserInfo = TokenServiceUtil.getUserInfo(restTemplate, "expiredToken", USER_INFO_URL,
+                WEBIN_USER_INFO_READER);
+        assertThat(webinUserInfo).isNull();
+    }
+
+    @Test
+    public void testMalformedRequestReturnsNull() {
+        when(restTemplate.exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null));
+
+        WebinUserInfo webinUserInfo = TokenServiceUtil.getUserInfo(restTemplate, "malformedToken", USER_INFO_URL,
+                WEBIN_USER_INFO_READER);
+        assertThat(webinUserInfo).isNull();
+    }
+
+    @Test
+    public void testRateLimitIsNotARejection() {
+        when(restTemplate.exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", null,
+                        null, null));
+
+        assertThatThrownBy(() -> TokenServiceUtil.getUserInfo(restTemplate, "validToken", USER_INFO_URL,
+                WEBIN_USER_INFO_READER)).isInstanceOf(UpstreamUnavailableException.class);
+    }
+
+    @Test
+    public void testServerErrorIsNotARejection() {
+        when(restTemplate.exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class)))
+                .thenThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", null,
+                        null, null));
+
+        assertThatThrownBy(() -> TokenServiceUtil.getUserInfo(restTemplate, "validToken", USER_INFO_URL,
+                WEBIN_USER_INFO_READER)).isInstanceOf(UpstreamUnavailableException.class);
+    }
+
+    @Test
+    public void testConnectionErrorIsNotARejection() {
+        when(restTemplate.exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class)))
+                .thenThrow(new ResourceAccessException("Read timed out"));
+
+        assertThatThrownBy(() -> TokenServiceUtil.getUserInfo(restTemplate, "validToken", USER_INFO_URL,
+                WEBIN_USER_INFO_READER)).isInstanceOf(UpstreamUnavailableException.class);
+    }
+}
@@ -0,0 +1,204 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import uk.ac.ebi.eva.submission.entity.Submission;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.entity.SubmissionUploadProgress;
+import uk.ac.ebi.eva.submission.repository.SubmissionRepository;
+import uk.ac.ebi.eva.submission.repository.SubmissionUploadProgressRepository;
+import uk.ac.ebi.eva.submission.service.GlobusDirectoryProvisioner;
+import uk.ac.ebi.eva.submission.service.UploadProgressService;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UploadProgressServiceTest {
+
+    private static final String SUBMISSION_ID = "submissionId";
+
+    private static final String DIRECTORY = "webinUserId_webin/submissionId";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private SubmissionRepository submissionRepository;
+
+    private SubmissionUploadProgressRepository submissionUploadProgressRepository;
+
+    private GlobusDirectoryProvisioner globusDirectoryProvisioner;
+
+    private UploadProgressService uploadProgressService;
+
+    @BeforeEach
+    public void setUp() {
+        submissionRepository = mock(SubmissionRepository.class);
+        submissionUploadProgressRepository = mock(SubmissionUploadProgressRepository.class);
+        globusDirectoryProvisioner = mock(GlobusDirectoryProvisioner.class);
+        uploadProgressService = new UploadProgressService(submissionRepository, submissionUploadProgressRepository,
+                globusDirectoryProvisioner, 1, 10);
+        ReflectionTestUtils.setField(uploadProgressService, "enabled", true);
+        ReflectionTestUtils.setField(uploadProgressService, "batchSize", 50);
+        ReflectionTestUtils.setField(uploadProgressService, "maxSnapshotAgeSeconds", 120);
+        ReflectionTestUtils.setField(uploadProgressService, "claimTimeoutSeconds", 600);
+
+        Submission submission = new Submission(SUBMISSION_ID);
+        submission.setSubmissionAccount(new SubmissionAccount("webinUserId", "webin", "John", "Doe",
+                "john@doe.com"));
+        when(submissionRepository.findOpenDueForUploadCheck(any(), any()))
+                .thenReturn(Collections.singletonList(submission));
+        when(submissionUploadProgressRepository.claimFirstCheck(anyString(), any(), any(), anyLong())).thenReturn(1);
+        when(submissionUploadProgressRepository.claimCheck(anyString(), any(), any())).thenReturn(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        uploadProgressService.destroy();
+    }
+
+    @Test
+    public void testFirstCheckCreatesASnapshot() {
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(DIRECTORY)).thenReturn(fileSizes(100L, 200L));
+
+        SubmissionUploadProgress progress = checkAndGetSavedProgress();
+
+        verify(submissionUploadProgressRepository).claimFirstCheck(eq(SUBMISSION_ID), any(), any(), eq(60L));
+        assertThat(progress.getFileCount()).isEqualTo(2);
+        assertThat(progress.getTotalBytes()).isEqualTo(300);
+        assertThat(progress.getCheckIntervalSeconds()).isEqualTo(60);
+        assertThat(progress.getNextCheckTime()).isEqualTo(progress.getLastCheckedTime().plusSeconds(60));
+    }
+
+    @Test
+    public void testIntervalDoublesWhileNothingChanges() {
+        SubmissionUploadProgress previous = previousProgress(fileSizes(100L, 200L), 1800);
+        LocalDateTime lastCheckedTime = previous.getLastCheckedTime();
+        LocalDateTime lastChangedTime = previous.getLastChangedTime();
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(DIRECTORY)).thenReturn(fileSizes(100L, 200L));
+
+        SubmissionUploadProgress progress = checkAndGetSavedProgress();
+
+        verify(submissionUploadProgressRepository).claimCheck(eq(SUBMISSION_ID), any(), any());
+        assertThat(progress.getCheckIntervalSeconds()).isEqualTo(3600);
+        assertThat(progress.getLastChangedTime()).isEqualTo(lastChangedTime);
+        assertThat(progress.getLastCheckedTime()).isAfter(lastCheckedTime);
+
+        // up to an hour
+        progress = checkAndGetSavedProgress();
+        assertThat(progress.getCheckIntervalSeconds()).isEqualTo(3600);
+    }
+
+    @Test
+    public void testChangedFilesAreCheckedAgainSoon() {
+        LocalDateTime lastCheckedTime = previousProgress(fileSizes(100L), 1800).getLastCheckedTime();
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(DIRECTORY)).thenReturn(fileSizes(100L, 200L));
+
+        SubmissionUploadProgress progress = checkAndGetSavedProgress();
+
+        assertThat(progress.getCheckIntervalSeconds()).isEqualTo(60);
+        assertThat(progress.getFileCount()).isEqualTo(2);
+        assertThat(progress.getTotalBytes()).isEqualTo(300);
+        assertThat(progress.getLastChangedTime()).isAfter(lastCheckedTime);
+    }
+
+    @Test
+    public void testSnapshotIsKeptWhenTheListingFails() {
+        LocalDateTime lastCheckedTime = previousProgress(fileSizes(100L), 120).getLastCheckedTime();
+        when(globusDirectoryProvisioner.listSubmittedFileSizes(DIRECTORY))
+                .thenThrow(new ResourceAccessException("Globus unavailable"));
+
+        SubmissionUploadProgress progress = checkAndGetSavedProgress();
+
+        assertThat(progress.getCheckIntervalSeconds()).isEqualTo(240);
+        assertThat(progress.getFileCount()).isEqualTo(1);
+        assertThat(progress.getLastCheckedTime()).isEqualTo(lastCheckedTime);
+    }
+
+    @Test
+    public void testSubmissionClaimedElsewhereIsNotChecked() {
+        previousProgress(fileSizes(100L), 120);
+        when(submissionUploadProgressRepository.claimCheck(anyString(), any(), any())).thenReturn(0);
+
+        uploadProgressService.checkOpenSubmissions();
+
+        verify(submissionUploadProgressRepository, timeout(5000)).claimCheck(eq(SUBMISSION_ID), any(), any());
+        uploadProgressService.destroy();
+        verify(globusDirectoryProvisioner, never()).listSubmittedFileSizes(anyString());
+        verify(submissionUploadProgressRepository, never()).save(any());
+    }
+
+    @Test
+    public void testSnapshotsOfClosedSubmissionsAreDeleted() {
+        when(submissionRepository.findOpenDueForUploadCheck(any(), any())).thenReturn(Collections.emptyList());
+
+        uploadProgressService.checkOpenSubmissions();
+
+        verify(submissionUploadProgressRepository).deleteOfClosedSubmissions();
+    }
+
+    @Test
+    public void testOnlyRecentSnapshotsAreUsed() {
+        SubmissionUploadProgress progress = previousProgress(fileSizes(100L), 120);
+        when(submissionUploadProgressRepository.findById(SUBMISSION_ID)).thenReturn(Optional.of(progress));
+
+        progress.setLastCheckedTime(LocalDateTime.now().minusSeconds(60));
+        assertThat(uploadProgressService.getRecentUploadedFileSizes(SUBMISSION_ID)).isEqualTo(fileSizes(100L));
+
+        progress.setLastCheckedTime(LocalDateTime.now().minusSeconds(180));
+        assertThat(uploadProgressService.getRecentUploadedFileSizes(SUBMISSION_ID)).isNull();
+    }
+
+    private SubmissionUploadProgress checkAndGetSavedProgress() {
+        ArgumentCaptor<SubmissionUploadProgress> saved = ArgumentCaptor.forClass(SubmissionUploadProgress.class);
+        clearInvocations(submissionUploadProgressRepository);
+        uploadProgressService.checkOpenSubmissions();
+        verify(submissionUploadProgressRepository, timeout(5000)).save(saved.capture());
+        SubmissionUploadProgress progress = saved.getValue();
+        when(submissionUploadProgressRepository.findAllById(anyIterable()))
+                .thenReturn(Collections.singletonList(progress));
+        return progress;
+    }
+
+    private SubmissionUploadProgress previousProgress(Map<String, Long> fileSizes, long checkIntervalSeconds) {
+        LocalDateTime lastCheckedTime = LocalDateTime.now().minusSeconds(checkIntervalSeconds);
+        SubmissionUploadProgress progress = new SubmissionUploadProgress(SUBMISSION_ID);
+        progress.setFileSizes(objectMapper.valueToTree(fileSizes));
+        progress.setFileCount(fileSizes.size());
+        progress.setTotalBytes(fileSizes.values().stream().mapToLong(Long::longValue).sum());
+        progress.setLastCheckedTime(lastCheckedTime);
+        progress.setLastChangedTime(lastCheckedTime.minusSeconds(checkIntervalSeconds));
+        progress.setCheckIntervalSeconds(checkIntervalSeconds);
+        progress.setNextCheckTime(LocalDateTime.now());
+        when(submissionUploadProgressRepository.findAllById(anyIterable()))
+                .thenReturn(Collections.singletonList(progress));
+        return progress;
+    }
+
+    private Map<String, Long> fileSizes(Long... sizes) {
+        Map<String, Long> fileSizes = new HashMap<>();
+        for (int i = 0; i < sizes.length; i++) {
+            fileSizes.put("file" + (i + 1) + ".vcf", sizes[i]);
+        }
+        return fileSizes;
+    }
+}
@@ -0,0 +1,170 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import uk.ac.ebi.eva.submission.exception.UpstreamUnavailableException;
+import uk.ac.ebi.eva.submission.util.Deadline;
+import uk.ac.ebi.eva.submission.util.UpstreamCallExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class UpstreamCallExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private UpstreamCallExecutor upstreamCallExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // 5 attempts, 100 ms backoff doubling up to 400 ms, 100 ms left at least for an attempt
+        upstreamCallExecutor = new UpstreamCallExecutor(2, 10, 5, 100, 2, 400, 100, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        upstreamCallExecutor.destroy();
+    }
+
+    @Test
+    public void testFailedAttemptsAreRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = upstreamCallExecutor.call("ena", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ResourceAccessException("Connection refused");
+            }
+            return "project";
+        }, Deadline.inMillis(5000));
+
+        assertThat(result).isEqualTo("project");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(getCalls("retry")).isEqualTo(2);
+        assertThat(getCalls("success")).isEqualTo(1);
+    }
+
+    @Test
+    public void testRetriesStopWhenTheDeadlineIsTooClose() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        // 100 + 200 ms of backoff fit in the deadline, the next 400 ms do not
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> upstreamCallExecutor.call("ena", () -> {
+            attempts.incrementAndGet();
+            throw new ResourceAccessException("Connection refused");
+        }, Deadline.inMillis(700))).isInstanceOf(ResourceAccessException.class);
+
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(700);
+        assertThat(getCalls("deadline_exceeded")).isEqualTo(1);
+    }
+
+    @Test
+    public void testClientErrorsAreNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> upstreamCallExecutor.call("biosamples", () -> {
+            attempts.incrementAndGet();
+            throw HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null);
+        }, Deadline.inMillis(5000))).isInstanceOf(HttpClientErrorException.NotFound.class);
+
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCallersDoNotWaitBeyondTheDeadline() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> upstreamCallExecutor.call("github", () -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "schema";
+        }, Deadline.inMillis(200))).isInstanceOf(UpstreamUnavailableException.class);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        // the attempt in progress is cancelled
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testSequentialCallsShareTheDeadlineOfTheRequest() {
+        AtomicInteger attempts = new AtomicInteger();
+        Deadline deadline = Deadline.inMillis(500);
+
+        // each call takes 400 ms, only the first one fits in the deadline of the request
+        long start = System.nanoTime();
+        assertThat(upstreamCallExecutor.call("ena", () -> sleep(400, attempts), deadline)).isEqualTo("done");
+        assertThatThrownBy(() -> upstreamCallExecutor.call("biosamples", () -> sleep(400, attempts), deadline))
+                .isInstanceOf(UpstreamUnavailableException.class);
+        assertThatThrownBy(() -> upstreamCallExecutor.call("biosamples", () -> sleep(400, attempts), deadline))
+                .isInstanceOf(UpstreamUnavailableException.class);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(800);
+        // the last call is not even attempted
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAsyncCallsFailAtTheDeadline() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> result = upstreamCallExecutor.callAsync("ena", () -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "project";
+        }, Deadline.inMillis(200));
+
+        assertThatThrownBy(() -> result.get(1, TimeUnit.SECONDS)).hasCauseInstanceOf(
+                UpstreamUnavailableException.class);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(getCalls("deadline_exceeded")).isEqualTo(1);
+    }
+
+    @Test
+    public void testCancellingCancelsTheNextRetry() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = upstreamCallExecutor.callAsync("ena", () -> {
+            attempts.incrementAndGet();
+            throw new ResourceAccessException("Connection refused");
+        }, Deadline.inMillis(5000));
+        Thread.sleep(50);
+        result.cancel(true);
+        Thread.sleep(300);
+
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    private static String sleep(long millis, AtomicInteger attempts) {
+        attempts.incrementAndGet();
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+        return "done";
+    }
+
+    private double getCalls(String result) {
+        return meterRegistry.counter(UpstreamCallExecutor.CALLS_METRIC, "upstream", "ena", "result", result).count();
+    }
+}
@@ -50,4 +50,13 @@ class UtilsTest {
         assertTrue(Utils.compareVersions("2.0.0", "v1.9.9") > 0);
         assertTrue(Utils.compareVersions("v1.10.0", "1.2.9") > 0);
     }
+
+    @Test
+    void testGetOptionalSetting() {
+        assertEquals("https://webin.example.org/jwks", Utils.getOptionalSetting("https://webin.example.org/jwks"));
+        assertEquals("", Utils.getOptionalSetting(""));
+        assertEquals("", Utils.getOptionalSetting(null));
+        // placeholder not replaced at build time
+        assertEquals("", Utils.getOptionalSetting("|webin.jwks-url|"));
+    }
 }
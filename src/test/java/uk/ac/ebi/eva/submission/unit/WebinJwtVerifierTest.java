@@ -0,0 +1,166 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import uk.ac.ebi.eva.submission.service.WebinJwtVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WebinJwtVerifierTest {
+    private static final String JWKS_URL = "https://webin.example.org/jwks";
+
+    private static final String ISSUER = "https://webin.example.org";
+
+    private static final String AUDIENCE = "eva-submission-ws";
+
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+    private KeyPair keyPair;
+
+    private RestTemplate restTemplate;
+
+    private WebinJwtVerifier webinJwtVerifier;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+        restTemplate = mock(RestTemplate.class);
+        webinJwtVerifier = new WebinJwtVerifier(restTemplate, JWKS_URL, ISSUER, AUDIENCE);
+    }
+
+    @Test
+    public void testValidTokenIsVerified() throws Exception {
+        when(restTemplate.getForObject(eq(JWKS_URL), eq(String.class))).thenReturn(createJwks("key1"));
+
+        JsonNode claims = webinJwtVerifier.verify(createJwt("key1", ISSUER, nowInSeconds() + 3600));
+
+        assertThat(claims).isNotNull();
+        assertThat(claims.get("sub").asText()).isEqualTo("Webin-12345");
+    }
+
+    @Test
+    public void testUnresolvedPlaceholderDisablesVerification() {
+        assertThat(new WebinJwtVerifier(restTemplate, "|webin.jwks-url|", "|webin.token-issuer|",
+                "|webin.token-audience|").isEnabled()).isFalse();
+        assertThat(new WebinJwtVerifier(restTemplate, "", "", "").isEnabled()).isFalse();
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() throws Exception {
+        when(restTemplate.getForObject(eq(JWKS_URL), eq(String.class))).thenReturn(createJwks("key1"));
+        String[] parts = createJwt("key1", ISSUER, nowInSeconds() + 3600).split("\\.");
+        String tamperedPayload = encoder.encodeToString(("{\"sub\":\"Webin-99999\",\"iss\":\"" + ISSUER
+                + "\",\"exp\":" + (nowInSeconds() + 3600) + "}").getBytes(StandardCharsets.UTF_8));
+
+        assertThat(webinJwtVerifier.verify(parts[0] + "." + tamperedPayload + "." + parts[2])).isNull();
+    }
+
+    @Test
+    public void testExpiredTokenIsRejected() throws Exception {
+        when(restTemplate.getForObject(eq(JWKS_URL), eq(String.class))).thenReturn(createJwks("key1"));
+
+        assertThat(webinJwtVerifier.verify(createJwt("key1", ISSUER, nowInSeconds() - 3600))).isNull();
+    }
+
+    @Test
+    public void testTokenFromOtherIssuerIsRejected() throws Exception {
+        when(restTemplate.getForObject(eq(JWKS_URL), eq(String.class))).thenReturn(createJwks("key1"));
+
+        assertThat(webinJwtVerifier.verify(createJwt("key1", "https://other.example.org", nowInSeconds() + 3600)))
+                .isNull();
+    }
+
+    @Test
+    public void testTokenForOtherAudienceIsRejected() throws Exception {
+        when(restTemplate.getForObject(eq(JWKS_URL), eq(String.class))).thenReturn(createJwks("key1"));
+
+        assertThat(webinJwtVerifier.verify(createJwt("key1", ISSUER, "\"other-service\"", nowInSeconds() + 3600)))
+                .isNull();
+        assertThat(webinJwtVerifier.verify(createJwt("key1", ISSUER, "[\"other-service\", \"" + AUDIENCE + "\"]",
+                nowInSeconds() + 3600))).isNotNull();
+    }
+
+    @Test
+    public void testKeysAreFetchedOnce() throws Exception {
+        when(restTemplate.getForObject(eq(JWKS_URL), eq(String.class))).thenReturn(createJwks("key1"));
+
+        webinJwtVerifier.verify(createJwt("key1", ISSUER, nowInSeconds() + 3600));
+        webinJwtVerifier.verify(createJwt("key1", ISSUER, nowInSeconds() + 3600));
+
+        verify(restTemplate, times(1)).getForObject(eq(JWKS_URL), eq(String.class));
+    }
+
+    @Test
+    public void testUnknownKeyIdDoesNotRefreshImmediately() throws Exception {
+        when(restTemplate.getForObject(eq(JWKS_URL), eq(String.class))).thenReturn(createJwks("key1"));
+
+        assertThat(webinJwtVerifier.verify(createJwt("key2", ISSUER, nowInSeconds() + 3600))).isNull();
+        assertThat(webinJwtVerifier.verify(createJwt("key2", ISSUER, nowInSeconds() + 3600))).isNull();
+
+        // keys were just loaded, an unknown key id must not trigger another fetch straight away
+        verify(restTemplate, times(1)).getForObject(eq(JWKS_URL), eq(String.class));
+    }
+
+    @Test
+    public void testUnavailableJwksThrows() throws Exception {
+        when(restTemplate.getForObject(eq(JWKS_URL), eq(String.class)))
+                .thenThrow(new ResourceAccessException("Connection refused"));
+
+        assertThrows(IllegalStateException.class,
+                () -> webinJwtVerifier.verify(createJwt("key1", ISSUER, nowInSeconds() + 3600)));
+    }
+
+    private long nowInSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private String createJwks(String kid) {
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+        return "{\"keys\":[{\"kty\":\"RSA\",\"use\":\"sig\",\"alg\":\"RS256\",\"kid\":\"" + kid + "\","
+                + "\"n\":\"" + encoder.encodeToString(toUnsignedBytes(publicKey.getModulus().toByteArray())) + "\","
+                + "\"e\":\"" + encoder.encodeToString(toUnsignedBytes(publicKey.getPublicExponent().toByteArray()))
+                + "\"}]}";
+    }
+
+    private byte[] toUnsignedBytes(byte[] bytes) {
+        if (bytes.length > 1 && bytes[0] == 0) {
+            byte[] unsigned = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+            return unsigned;
+        }
+        return bytes;
+    }
+
+    private String createJwt(String kid, String issuer, long exp) throws Exception {
+        return createJwt(kid, issuer, "\"" + AUDIENCE + "\"", exp);
+    }
+
+    private String createJwt(String kid, String issuer, String audience, long exp) throws Exception {
+        String header = encoder.encodeToString(("{\"alg\":\"RS256\",\"typ\":\"JWT\",\"kid\":\"" + kid + "\"}")
+                .getBytes(StandardCharsets.UTF_8));
+        String payload = encoder.encodeToString(("{\"sub\":\"Webin-12345\",\"iss\":\"" + issuer + "\","
+                + "\"aud\":" + audience + ",\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8));
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update((header + "." + payload).getBytes(StandardCharsets.US_ASCII));
+        return header + "." + payload + "." + encoder.encodeToString(signature.sign());
+    }
+}
@@ -0,0 +1,105 @@
+package uk.ac.ebi.eva.submission.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+import uk.ac.ebi.eva.submission.entity.SubmissionAccount;
+import uk.ac.ebi.eva.submission.service.LoginMethod;
+import uk.ac.ebi.eva.submission.service.WebinJwtVerifier;
+import uk.ac.ebi.eva.submission.service.WebinTokenService;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WebinTokenServiceTest {
+
+    private static final String USER_INFO_URL = "https://www.ebi.ac.uk/ena/submit/webin/auth/admin/submission-account";
+
+    private final WebinJwtVerifier webinJwtVerifier = mock(WebinJwtVerifier.class);
+
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+
+    private WebinTokenService webinTokenService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        webinTokenService = new WebinTokenService(webinJwtVerifier, restTemplate);
+        ReflectionTestUtils.setField(webinTokenService, "userInfoUrl", USER_INFO_URL);
+        ReflectionTestUtils.setField(webinTokenService, "tokenIssuer", "|webin.token-issuer|");
+        ReflectionTestUtils.setField(webinTokenService, "accountClaim", "sub");
+        ReflectionTestUtils.setField(webinTokenService, "contactCacheTtlSeconds", 3600L);
+        when(webinJwtVerifier.isEnabled()).thenReturn(true);
+        when(webinJwtVerifier.verify(any()))
+                .thenReturn(new ObjectMapper().readTree("{\"sub\": \"Webin-12345\", \"iss\": \"webin\"}"));
+    }
+
+    @Test
+    public void testContactDetailsOfVerifiedTokenAreCached() {
+        when(restTemplate.exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class)))
+                .thenReturn(userInfoResponse("Webin-12345"));
+
+        SubmissionAccount submissionAccount = webinTokenService.getWebinUserAccountFromToken("token1");
+        assertThat(submissionAccount.getUserId()).isEqualTo("Webin-12345");
+        assertThat(webinTokenService.getWebinUserAccountFromToken("token2")).isEqualTo(submissionAccount);
+        verify(restTemplate, times(1)).exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class));
+    }
+
+    @Test
+    public void testUserInfoOfAnotherAccountIsRejected() {
+        when(restTemplate.exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class)))
+                .thenReturn(userInfoResponse("Webin-99999"));
+
+        assertThat(webinTokenService.getWebinUserAccountFromToken("token1")).isNull();
+        // nothing was cached for the account of the token
+        assertThat(webinTokenService.getWebinUserAccountFromToken("token2")).isNull();
+        verify(restTemplate, times(2)).exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class));
+    }
+
+    @Test
+    public void testUserInfoWithUnknownFieldsIsMappedToAccount() {
+        when(webinJwtVerifier.isEnabled()).thenReturn(false);
+        String userInfo = "{\"submissionAccountId\": \"Webin-12345\", \"centerName\": \"Test Center\", " +
+                "\"suspended\": false, \"roles\": {\"SEQUENCE\": true}, \"created\": \"2020-01-01T00:00:00\", " +
+                "\"submissionContacts\": [" +
+                "{\"emailAddress\": \"second@example.org\", \"firstName\": \"John\", \"surname\": \"Smith\", " +
+                "\"mainContact\": false, \"telephoneNumber\": \"0123\"}, " +
+                "{\"emailAddress\": \"main@example.org\", \"firstName\": \"Jane\", \"surname\": \"Doe\", " +
+                "\"mainContact\": true, \"middleInitials\": \"A\", \"submissionAccountId\": \"Webin-12345\"}]}";
+        when(restTemplate.exchange(eq(USER_INFO_URL), eq(HttpMethod.GET), any(), eq(byte[].class)))
+                .thenReturn(new ResponseEntity<>(userInfo.getBytes(StandardCharsets.UTF_8), HttpStatus.OK));
+
+        SubmissionAccount submissionAccount = webinTokenService.getWebinUserAccountFromToken("opaqueToken");
+
+        assertThat(submissionAccount.getUserId()).isEqualTo("Webin-12345");
+        assertThat(submissionAccount.getLoginType()).isEqualTo(LoginMethod.WEBIN.getLoginType());
+        assertThat(submissionAccount.getFirstName()).isEqualTo("Jane");
+        assertThat(submissionAccount.getLastName()).isEqualTo("Doe");
+        assertThat(submissionAccount.getPrimaryEmail()).isEqualTo("main@example.org");
+        assertThat(submissionAccount.getSecondaryEmails()).containsExactly("second@example.org");
+    }
+
+    @Test
+    public void testUnresolvedIssuerPlaceholderIsIgnored() throws Exception {
+        assertThat(webinTokenService.isWebinToken(new ObjectMapper().readTree("{\"iss\": \"|webin.token-issuer|\"}")))
+                .isFalse();
+    }
+
+    private ResponseEntity<byte[]> userInfoResponse(String submissionAccountId) {
+        String body = "{\"submissionAccountId\": \"" + submissionAccountId + "\", \"submissionContacts\": ["
+                + "{\"emailAddress\": \"webin@example.org\", \"firstName\": \"Jane\", \"surname\": \"Doe\", "
+                + "\"mainContact\": true}]}";
+        return new ResponseEntity<>(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+    }
+}